@@ -170,6 +170,7 @@ public class Vars implements Loadable{
     public static WaveSpawner spawner;
     public static BlockIndexer indexer;
     public static Pathfinder pathfinder;
+    public static TargetScheduler targeting;
 
     public static Control control;
     public static Logic logic;
@@ -233,17 +234,18 @@ public class Vars implements Loadable{
         spawner = new WaveSpawner();
         indexer = new BlockIndexer();
         pathfinder = new Pathfinder();
+        targeting = new TargetScheduler();
 
         entities = new Entities();
         playerGroup = entities.add(Player.class).enableMapping();
         tileGroup = entities.add(TileEntity.class, false);
-        bulletGroup = entities.add(Bullet.class).enableMapping();
+        bulletGroup = entities.add(Bullet.class).enableMapping().useGrid(tilesize * 4);
         effectGroup = entities.add(EffectEntity.class, false);
         groundEffectGroup = entities.add(DrawTrait.class, false);
         puddleGroup = entities.add(Puddle.class).enableMapping();
         shieldGroup = entities.add(ShieldEntity.class, false);
         fireGroup = entities.add(Fire.class).enableMapping();
-        unitGroup = entities.add(BaseUnit.class).enableMapping();
+        unitGroup = entities.add(BaseUnit.class).enableMapping().useGrid(tilesize * 4);
 
         for(EntityGroup<?> group : entities.all()){
             group.setRemoveListener(entity -> {
@@ -22,6 +22,8 @@ import static mindustry.Vars.*;
 public class BlockIndexer{
     /** Size of one quadrant. */
     private final static int quadrantSize = 16;
+    /** Bit of a {@link #flagEntries} entry that is set for targetable buildings. */
+    private final static int buildingBit = 1 << 30;
 
     /** Set of all ores that are being scanned. */
     private final ObjectSet<Item> scanOres = new ObjectSet<>();
@@ -31,27 +33,39 @@ public class BlockIndexer{
     /** Maps each team ID to a quarant. A quadrant is a grid of bits, where each bit is set if and only if there is a block of that team in that quadrant. */
     private GridBits[] structQuadrants;
     /** Stores all damaged tile entities by team. */
-    private ObjectSet<Tile>[] damagedTiles = new ObjectSet[Team.all().length];
+    private TileSet[] damagedTiles = new TileSet[Team.all().length];
     /**All ores available on this map.*/
     private ObjectSet<Item> allOres = new ObjectSet<>();
     /**Stores teams that are present here as tiles.*/
     private ObjectSet<Team> activeTeams = new ObjectSet<>();
 
     /** Maps teams to a map of flagged tiles by type. */
-    private ObjectSet<Tile>[][] flagMap = new ObjectSet[Team.all().length][BlockFlag.all.length];
-    /** Maps tile positions to their last known tile index data. */
-    private IntMap<TileIndex> typeMap = new IntMap<>();
+    private TileSet[][] flagMap = new TileSet[Team.all().length][BlockFlag.all.length];
+    /** Maps teams to their targetable buildings. */
+    private TileSet[] buildingMap = new TileSet[Team.all().length];
+    /** Maps tile positions to the team ID and bits of the flags they were last indexed with; see {@link #flagEntry(Team, int)}. */
+    private IntIntMap flagEntries = new IntIntMap();
     /** Empty set used for returning. */
     private ObjectSet<Tile> emptySet = new ObjectSet<>();
     /** Array used for returning and reusing. */
     private Array<Tile> returnArray = new Array<>();
+    /** Positions of buildings in range of a query. */
+    private IntArray buildingPositions = new IntArray();
+    /** Positions of tiles that are no longer damaged. */
+    private IntArray removedPositions = new IntArray();
 
     public BlockIndexer(){
         Events.on(TileChangeEvent.class, event -> {
-            if(typeMap.get(event.tile.pos()) != null){
-                TileIndex index = typeMap.get(event.tile.pos());
-                for(BlockFlag flag : index.flags){
-                    getFlagged(index.team)[flag.ordinal()].remove(event.tile);
+            int entry = flagEntries.remove(event.tile.pos(), -1);
+            if(entry != -1){
+                TileSet[] flagged = flagMap[entry & 0xff];
+                for(int i = 0; i < flagged.length; i++){
+                    if((entry & (1 << (i + 8))) != 0){
+                        flagged[i].remove(event.tile);
+                    }
+                }
+                if((entry & buildingBit) != 0){
+                    buildingMap[entry & 0xff].remove(event.tile);
                 }
             }
             process(event.tile);
@@ -61,34 +75,42 @@ public class BlockIndexer{
         Events.on(WorldLoadEvent.class, event -> {
             scanOres.clear();
             scanOres.addAll(Item.getAllOres());
-            damagedTiles = new ObjectSet[Team.all().length];
-            flagMap = new ObjectSet[Team.all().length][BlockFlag.all.length];
+            damagedTiles = new TileSet[Team.all().length];
+            flagMap = new TileSet[Team.all().length][BlockFlag.all.length];
+            buildingMap = new TileSet[Team.all().length];
 
             for(int i = 0; i < flagMap.length; i++){
                 for(int j = 0; j < BlockFlag.all.length; j++){
-                    flagMap[i][j] = new ObjectSet<>();
+                    flagMap[i][j] = new TileSet(world.width(), world.height(), quadrantSize);
                 }
             }
 
-            typeMap.clear();
+            flagEntries.clear();
             allOres.clear();
             ores = null;
 
             //create bitset for each team type that contains each quadrant
             structQuadrants = new GridBits[Team.all().length];
 
-            for(int x = 0; x < world.width(); x++){
-                for(int y = 0; y < world.height(); y++){
-                    Tile tile = world.tile(x, y);
+            Tiles tiles = world.getTiles();
 
+            for(int i = 0; i < tiles.width * tiles.height; i++){
+                Tile tile = tiles.cached(i);
+
+                //tiles without views have no entity, so they are only indexed when flagged
+                if(tile != null || tiles.block(i).flags.size() > 0){
+                    tile = tiles.geti(i);
                     process(tile);
 
                     if(tile.entity != null && tile.entity.damaged()){
                         notifyTileDamaged(tile.entity);
                     }
-
-                    if(tile.drop() != null) allOres.add(tile.drop());
+                }else{
+                    activeTeams.add(tiles.getTeam(i));
                 }
+
+                Item drop = tiles.drop(i);
+                if(drop != null) allOres.add(drop);
             }
 
             for(int x = 0; x < quadWidth(); x++){
@@ -101,8 +123,29 @@ public class BlockIndexer{
         });
     }
 
-    private ObjectSet<Tile>[] getFlagged(Team team){
-        return flagMap[team.id];
+    private TileSet[] getFlagged(Team team){
+        return flagMap[Pack.u(team.id)];
+    }
+
+    private TileSet damagedSet(Team team){
+        int id = Pack.u(team.id);
+        if(damagedTiles[id] == null){
+            damagedTiles[id] = new TileSet(world.width(), world.height(), quadrantSize);
+        }
+        return damagedTiles[id];
+    }
+
+    private TileSet buildings(Team team){
+        int id = Pack.u(team.id);
+        if(buildingMap[id] == null){
+            buildingMap[id] = new TileSet(world.width(), world.height(), quadrantSize);
+        }
+        return buildingMap[id];
+    }
+
+    /** Packs a team and the bits of its flags into an entry of {@link #flagEntries}. */
+    private static int flagEntry(Team team, int flagBits){
+        return Pack.u(team.id) | (flagBits << 8);
     }
 
     private GridBits structQuadrant(Team t){
@@ -117,13 +160,14 @@ public class BlockIndexer{
     public void updateTeamIndex(Team team){
         if(structQuadrants == null) return;
 
+        Tiles tiles = world.getTiles();
+
         //go through every tile... ouch
         for(int x = 0; x < world.width(); x++){
             for(int y = 0; y < world.height(); y++){
-                Tile tile = world.tile(x, y);
-                if(tile.getTeam() == team){
-                    int quadrantX = tile.x / quadrantSize;
-                    int quadrantY = tile.y / quadrantSize;
+                if(tiles.getTeam(tiles.index(x, y)) == team){
+                    int quadrantX = x / quadrantSize;
+                    int quadrantY = y / quadrantSize;
                     structQuadrant(team).set(quadrantX, quadrantY);
                 }
             }
@@ -136,55 +180,68 @@ public class BlockIndexer{
     }
 
     /** Returns all damaged tiles by team. */
-    public ObjectSet<Tile> getDamaged(Team team){
-        returnArray.clear();
-
-        if(damagedTiles[team.id] == null){
-            damagedTiles[team.id] = new ObjectSet<>();
-        }
+    public TileSet getDamaged(Team team){
+        removedPositions.clear();
 
-        ObjectSet<Tile> set = damagedTiles[team.id];
+        TileSet set = damagedSet(team);
         for(Tile tile : set){
             if((tile.entity == null || tile.entity.getTeam() != team || !tile.entity.damaged()) || tile.block() instanceof BuildBlock){
-                returnArray.add(tile);
+                removedPositions.add(tile.pos());
             }
         }
 
-        for(Tile tile : returnArray){
-            set.remove(tile);
+        for(int i = 0; i < removedPositions.size; i++){
+            set.remove(removedPositions.get(i));
         }
 
         return set;
     }
 
-    /** Get all allied blocks with a flag. */
-    public ObjectSet<Tile> getAllied(Team team, BlockFlag type){
-        return flagMap[team.id][type.ordinal()];
+    /** Get all allied blocks with a flag. The returned set is a view of the index, and must not be modified. */
+    public TileSet getAllied(Team team, BlockFlag type){
+        return getFlagged(team)[type.ordinal()];
     }
 
-    /** Get all enemy blocks with a flag. */
+    /** Get all enemy blocks with a flag. This copies every tile; use {@link #findClosestFlag} or {@link #getAllied} with each enemy team where possible. */
     public Array<Tile> getEnemy(Team team, BlockFlag type){
         returnArray.clear();
         for(Team enemy : team.enemies()){
             if(state.teams.isActive(enemy)){
-                ObjectSet<Tile> set = getFlagged(enemy)[type.ordinal()];
-                if(set != null){
-                    for(Tile tile : set){
-                        returnArray.add(tile);
-                    }
+                for(Tile tile : getFlagged(enemy)[type.ordinal()]){
+                    returnArray.add(tile);
                 }
             }
         }
         return returnArray;
     }
 
-    public void notifyTileDamaged(TileEntity entity){
-        if(damagedTiles[(int)entity.getTeam().id] == null){
-            damagedTiles[(int)entity.getTeam().id] = new ObjectSet<>();
+    /** @return the closest block with a flag, either of this team or of its active enemies. */
+    public Tile findClosestFlag(Team team, BlockFlag type, boolean enemy, float x, float y){
+        if(!enemy){
+            return getAllied(team, type).findClosest(x, y);
         }
 
-        ObjectSet<Tile> set = damagedTiles[(int)entity.getTeam().id];
-        set.add(entity.tile);
+        Tile closest = null;
+        float dst = Float.MAX_VALUE;
+        for(Team other : team.enemies()){
+            if(!state.teams.isActive(other)) continue;
+
+            Tile tile = getFlagged(other)[type.ordinal()].findClosest(x, y, dst);
+            if(tile != null){
+                closest = tile;
+                dst = Mathf.dst2(x, y, tile.worldx(), tile.worldy());
+            }
+        }
+        return closest;
+    }
+
+    /** @return the closest damaged tile of a team. */
+    public Tile findClosestDamaged(Team team, float x, float y){
+        return getDamaged(team).findClosest(x, y);
+    }
+
+    public void notifyTileDamaged(TileEntity entity){
+        damagedSet(entity.getTeam()).add(entity.tile);
     }
 
     public TileEntity findEnemyTile(Team team, float x, float y, float range, Boolf<Tile> pred){
@@ -200,6 +257,44 @@ public class BlockIndexer{
         return null;
     }
 
+    /**
+     * Finds the closest targetable building of an enemy team in range, looking only at indexed buildings instead of every tile.
+     * @param usePriority whether buildings with a higher priority are preferred regardless of distance
+     */
+    public TileEntity findEnemyBuilding(Team team, float x, float y, float range, boolean usePriority){
+        TileEntity closest = null;
+        float closestDst = 0f, range2 = range * range;
+
+        for(Team enemy : activeTeams){
+            TileSet set = buildingMap[Pack.u(enemy.id)];
+            if(set == null || !team.isEnemy(enemy)) continue;
+
+            buildingPositions.clear();
+            //positions are not always the centers of large blocks, so search a bit further
+            set.within(x, y, range + tilesize * 2f, buildingPositions);
+
+            for(int i = 0; i < buildingPositions.size; i++){
+                Tile tile = world.tile(buildingPositions.get(i));
+                TileEntity e = tile.entity;
+                if(e == null || tile.getTeam() != enemy || !tile.block().targetable) continue;
+
+                float dst = Mathf.dst2(x, y, e.x, e.y);
+                if(dst >= range2) continue;
+
+                if(closest == null ||
+                    //higher priority blocks are always preferred
+                    (usePriority && e.block.priority.ordinal() > closest.block.priority.ordinal()) ||
+                    //otherwise, take the closer one of at least equal priority
+                    (dst < closestDst && (!usePriority || e.block.priority.ordinal() >= closest.block.priority.ordinal()))){
+                    closest = e;
+                    closestDst = dst;
+                }
+            }
+        }
+
+        return closest;
+    }
+
     public TileEntity findTile(Team team, float x, float y, float range, Boolf<Tile> pred){
         return findTile(team, x, y, range, pred, false);
     }
@@ -271,18 +366,24 @@ public class BlockIndexer{
     }
 
     private void process(Tile tile){
+        int bits = 0;
+
         if(tile.block().flags.size() > 0 && tile.getTeam() != Team.derelict){
-            ObjectSet<Tile>[] map = getFlagged(tile.getTeam());
+            TileSet[] map = getFlagged(tile.getTeam());
 
             for(BlockFlag flag : tile.block().flags){
+                map[flag.ordinal()].add(tile);
+                bits |= 1 << flag.ordinal();
+            }
+        }
 
-                ObjectSet<Tile> arr = map[flag.ordinal()];
-
-                arr.add(tile);
+        if(tile.entity != null && tile.block().targetable){
+            buildings(tile.getTeam()).add(tile);
+            bits |= buildingBit >> 8;
+        }
 
-                map[flag.ordinal()] = arr;
-            }
-            typeMap.put(tile.pos(), new TileIndex(tile.block().flags, tile.getTeam()));
+        if(bits != 0){
+            flagEntries.put(tile.pos(), flagEntry(tile.getTeam(), bits));
         }
         activeTeams.add(tile.getTeam());
 
@@ -335,9 +436,15 @@ public class BlockIndexer{
 
             bits.set(quadrantX, quadrantY, false);
 
+            Tiles tiles = world.getTiles();
+
             outer:
             for(int x = quadrantX * quadrantSize; x < world.width() && x < (quadrantX + 1) * quadrantSize; x++){
                 for(int y = quadrantY * quadrantSize; y < world.height() && y < (quadrantY + 1) * quadrantSize; y++){
+                    int index = tiles.index(x, y);
+                    //tiles without views have no entity, unless they are part of a multiblock
+                    if(tiles.cached(index) == null && !(tiles.block(index) instanceof BlockPart)) continue;
+
                     Tile result = world.ltile(x, y);
                     //when a targetable block is found, mark this quadrant as occupied and stop searching
                     if(result.entity != null && result.getTeam() == team){
@@ -369,16 +476,19 @@ public class BlockIndexer{
             ores.put(item, new ObjectSet<>());
         }
 
+        Tiles tiles = world.getTiles();
+
         for(int x = 0; x < world.width(); x++){
             for(int y = 0; y < world.height(); y++){
                 int qx = (x / quadrantSize);
                 int qy = (y / quadrantSize);
 
-                Tile tile = world.tile(x, y);
+                int index = tiles.index(x, y);
+                Item drop = tiles.drop(index);
 
                 //add position of quadrant to list when an ore is found
-                if(tile.drop() != null && scanOres.contains(tile.drop()) && tile.block() == Blocks.air){
-                    ores.get(tile.drop()).add(world.tile(
+                if(drop != null && scanOres.contains(drop) && tiles.block(index) == Blocks.air){
+                    ores.get(drop).add(world.tile(
                     //make sure to clamp quadrant middle position, since it might go off bounds
                     Mathf.clamp(qx * quadrantSize + quadrantSize / 2, 0, world.width() - 1),
                     Mathf.clamp(qy * quadrantSize + quadrantSize / 2, 0, world.height() - 1)));
@@ -386,14 +496,4 @@ public class BlockIndexer{
             }
         }
     }
-
-    private class TileIndex{
-        public final EnumSet<BlockFlag> flags;
-        public final Team team;
-
-        public TileIndex(EnumSet<BlockFlag> flags, Team team){
-            this.flags = flags;
-            this.team = team;
-        }
-    }
 }
@@ -4,6 +4,7 @@ import arc.*;
 import mindustry.annotations.Annotations.*;
 import arc.struct.*;
 import arc.func.*;
+import arc.math.*;
 import arc.math.geom.*;
 import arc.util.*;
 import arc.util.ArcAnnotate.*;
@@ -11,9 +12,14 @@ import arc.util.async.*;
 import mindustry.game.EventType.*;
 import mindustry.game.*;
 import mindustry.gen.*;
+import mindustry.net.Administration.*;
 import mindustry.world.*;
 import mindustry.world.meta.*;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
 import static mindustry.Vars.*;
 
 public class Pathfinder implements Runnable{
@@ -21,9 +27,17 @@ public class Pathfinder implements Runnable{
     private static final int updateFPS = 60;
     private static final int updateInterval = 1000 / updateFPS;
     private static final int impassable = -1;
+    /** size of one cluster in hierarchical mode, in tiles */
+    private static final int clusterSize = 32;
+    /** time after which the refined weights of a cluster that is no longer in use are discarded, in milliseconds */
+    private static final long clusterExpiry = 60 * 1000;
 
-    /** tile data, see PathTileStruct */
-    private int[][] tiles;
+    /** tile data, see PathTileStruct; indexed by y * wwidth + x */
+    private int[] tiles = {};
+    /** cached world size */
+    private int wwidth, wheight;
+    /** whether new flow fields are hierarchical, see ClusterData */
+    private boolean hierarchical;
     /** unordered array of path data for iteration only. DO NOT iterate ot access this in the main thread.*/
     private Array<PathData> list = new Array<>();
     /** Maps teams + flags to a valid path to get to that flag for that team. */
@@ -34,21 +48,53 @@ public class Pathfinder implements Runnable{
     private TaskQueue queue = new TaskQueue();
     /** current pathfinding thread */
     private @Nullable Thread thread;
+    /** pool used to update multiple flow fields concurrently; null if only one thread is used. */
+    private @Nullable ForkJoinPool pool;
+    /** tasks submitted to the pool during this update. Pathfinding thread only. */
+    private Array<ForkJoinTask<?>> tasks = new Array<>();
+    /** maximum time each flow field may be updated for during this update, in nanoseconds. */
+    private long fieldUpdateTime;
+    /** scratch queue of indices to invalidate during a repair. Pathfinding thread only. */
+    private IntQueue invalidQueue = new IntQueue();
+    /** scratch array of indices invalidated during a repair. Pathfinding thread only. */
+    private IntArray invalidated = new IntArray();
+    /** number of tasks applying tile changes that have been posted to the pathfinding thread, but not run yet. */
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    /** tile indices and packed data of tiles that have changed and were not applied yet, stored as pairs. Must be synchronized on! */
+    private final IntArray changedTiles = new IntArray();
+    /** copy of the changed tiles that are being applied. Pathfinding thread only. */
+    private final IntArray applyingTiles = new IntArray();
+    /** tile indices of the changed tiles that are being applied. Pathfinding thread only. */
+    private final IntArray changedIndices = new IntArray();
+    /** scratch array for the targets of a path. Main thread only. */
+    private final IntArray tmpTargets = new IntArray();
+    /** adds a tile to the changed tiles; only called while synchronized on them. */
+    private final Cons<Tile> addChanged = t -> {
+        if(t.x < wwidth && t.y < wheight){
+            changedTiles.add(t.y * wwidth + t.x);
+            changedTiles.add(packTile(t));
+        }
+    };
+    /** task that applies the changed tiles, posted to the pathfinding thread. */
+    private final Runnable applyChanges = this::applyChanges;
 
     public Pathfinder(){
         Events.on(WorldLoadEvent.class, event -> {
             stop();
 
             //reset and update internal tile array
-            tiles = new int[world.width()][world.height()];
+            wwidth = world.width();
+            wheight = world.height();
+            tiles = new int[wwidth * wheight];
+            hierarchical = Config.clusteredPathfindingArea.num() > 0 && wwidth * wheight >= Config.clusteredPathfindingArea.num();
             pathMap = new PathData[Team.all().length][PathTarget.all.length];
             created = new GridBits(Team.all().length, PathTarget.all.length);
             list = new Array<>();
 
-            for(int x = 0; x < world.width(); x++){
-                for(int y = 0; y < world.height(); y++){
-                    tiles[x][y] = packTile(world.rawTile(x, y));
-                }
+            //both arrays are indexed by x + y * width, so tiles are packed straight from the world arrays
+            Tiles data = world.getTiles();
+            for(int i = 0; i < tiles.length; i++){
+                tiles[i] = PathTile.get(data.cost(i), data.teamID(i), (byte)0, !data.solid(i) && data.floor(i).drownTime <= 0f);
             }
 
             //special preset which may help speed things up; this is optional
@@ -64,58 +110,181 @@ public class Pathfinder implements Runnable{
 
     /** Packs a tile into its internal representation. */
     private int packTile(Tile tile){
-        return PathTile.get(tile.cost, tile.getTeamID(), (byte)0, !tile.solid() && tile.floor().drownTime <= 0f);
+        return PathTile.get(tile.cost(), tile.getTeamID(), (byte)0, !tile.solid() && tile.floor().drownTime <= 0f);
     }
 
     /** Starts or restarts the pathfinding thread. */
     private void start(){
         stop();
+        int threads = Config.pathfinderThreads.num();
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
         thread = Threads.daemon(this);
     }
 
-    /** Stops the pathfinding thread. */
-    private void stop(){
+    /** Stops the pathfinding thread and waits for it to exit. Any queued tasks are discarded. */
+    public void stop(){
         if(thread != null){
             thread.interrupt();
+            try{
+                thread.join();
+            }catch(InterruptedException ignored){
+            }
             thread = null;
         }
+        if(pool != null){
+            pool.shutdownNow();
+            pool = null;
+        }
         queue.clear();
+        synchronized(changedTiles){
+            changedTiles.clear();
+        }
+        pendingChanges.set(0);
+    }
+
+    /** @return whether all tile changes so far have been applied to the flow fields, which may not have converged yet. */
+    public boolean changesApplied(){
+        return pendingChanges.get() == 0;
+    }
+
+    /**
+     * Runs all queued tasks and updates every flow field until it has converged, on the calling thread.
+     * The pathfinding thread must not be running when this is called.
+     */
+    public void flush(){
+        queue.run();
+        for(PathData data : list){
+            updateFrontier(data, -1);
+        }
+    }
+
+    /**
+     * @return the time in milliseconds that the last search or repair of a flow field took to converge,
+     * or -1 if this field does not exist or has never converged.
+     */
+    public float convergenceTime(Team team, PathTarget target){
+        PathData data = pathMap[team.id][target.ordinal()];
+        return data == null || data.lastConvergence < 0 ? -1f : data.lastConvergence / 1000000f;
     }
 
     public int debugValue(Team team, int x, int y){
-        if(pathMap[team.id][PathTarget.enemyCores.ordinal()] == null) return 0;
-        return pathMap[team.id][PathTarget.enemyCores.ordinal()].weights[x][y];
+        return debugValue(team, PathTarget.enemyCores, x, y);
+    }
+
+    public int debugValue(Team team, PathTarget target, int x, int y){
+        if(pathMap[team.id][target.ordinal()] == null) return 0;
+        return weight(pathMap[team.id][target.ordinal()], x, y, false);
+    }
+
+    /**
+     * @return the weight of a position in a flow field.
+     * @param request whether to request refinement of this position's cluster, if the field is hierarchical
+     */
+    private int weight(PathData data, int x, int y, boolean request){
+        return data.clusters == null ? data.weights[y * wwidth + x] : data.clusters.weight(x, y, request);
     }
 
-    /** Update a tile in the internal pathfinding grid. Causes a complete pathfinding reclaculation. */
+    /**
+     * Update a tile in the internal pathfinding grid.
+     * If the targets of a path have changed, this causes a complete recalculation of that path;
+     * otherwise, only the part of the flow field that depends on this tile is repaired.
+     */
     public void updateTile(Tile tile){
         if(net.client()) return;
 
-        int x = tile.x, y = tile.y;
-
-        tile.getLinkedTiles(t -> {
-            if(Structs.inBounds(t.x, t.y, tiles)){
-                tiles[t.x][t.y] = packTile(t);
+        //targets are only recalculated when a core or rally point may have been placed or removed.
+        //this happens before the change is posted, so the pathfinding thread sees new targets together with the tiles
+        if(affectsTargets(tile)){
+            //can't iterate through array so use the map, which should not lead to problems
+            for(PathData[] arr : pathMap){
+                for(PathData path : arr){
+                    if(path != null){
+                        tmpTargets.clear();
+                        path.target.getTargets(path.team, tmpTargets);
+                        synchronized(path.targets){
+                            if(!tmpTargets.equals(path.targets)){
+                                path.targets.clear();
+                                path.targets.addAll(tmpTargets);
+                                path.targetsChanged = true;
+                            }
+                        }
+                    }
+                }
             }
-        });
+        }
+
+        //the tile grid is only written to on the pathfinding thread, while no fields are being updated.
+        //changes are collected until the pathfinding thread applies them, so only the first one posts a task
+        boolean post;
+        synchronized(changedTiles){
+            boolean empty = changedTiles.size == 0;
+            tile.getLinkedTiles(addChanged);
+            post = empty && changedTiles.size > 0;
+        }
+
+        if(post){
+            pendingChanges.incrementAndGet();
+            queue.post(applyChanges);
+        }
+    }
+
+    /** @return whether a change of this tile may change the targets of a flow field, because it is or was a core or rally point. Main thread only. */
+    private boolean affectsTargets(Tile tile){
+        if(tile.block().flags.contains(BlockFlag.core) || tile.block().flags.contains(BlockFlag.rally)){
+            return true;
+        }
 
-        //can't iterate through array so use the map, which should not lead to problems
+        //a target that was removed is no longer indexed, but still in the targets of its paths
+        int pos = tile.pos();
         for(PathData[] arr : pathMap){
             for(PathData path : arr){
                 if(path != null){
                     synchronized(path.targets){
-                        path.targets.clear();
-                        path.target.getTargets(path.team, path.targets);
+                        if(path.targets.contains(pos)){
+                            return true;
+                        }
                     }
                 }
             }
         }
+        return false;
+    }
+
+    /** Applies all changed tiles to the grid, then repairs or recalculates every flow field. Pathfinding thread only. */
+    private void applyChanges(){
+        applyingTiles.clear();
+        synchronized(changedTiles){
+            applyingTiles.addAll(changedTiles);
+            changedTiles.clear();
+        }
+
+        changedIndices.clear();
+        for(int i = 0; i < applyingTiles.size; i += 2){
+            tiles[applyingTiles.get(i)] = applyingTiles.get(i + 1);
+            changedIndices.add(applyingTiles.get(i));
+        }
 
-        queue.post(() -> {
-            for(PathData data : list){
-                updateTargets(data, x, y);
+        for(PathData data : list){
+            boolean reset;
+            synchronized(data.targets){
+                reset = data.targetsChanged;
+                data.targetsChanged = false;
             }
-        });
+
+            if(data.clusters != null){
+                if(reset){
+                    data.clusters.updateTargets();
+                }else{
+                    data.clusters.tilesChanged(changedIndices);
+                }
+            }else if(reset){
+                updateTargets(data);
+            }else{
+                repair(data, changedIndices);
+            }
+        }
+
+        pendingChanges.decrementAndGet();
     }
 
     /** Thread implementation. */
@@ -127,9 +296,25 @@ public class Pathfinder implements Runnable{
 
                 queue.run();
 
-                //total update time no longer than maxUpdate
-                for(PathData data : list){
-                    updateFrontier(data, maxUpdate / list.size);
+                if(pool == null || list.size <= 1){
+                    //total update time no longer than maxUpdate
+                    for(PathData data : list){
+                        updateFrontier(data, maxUpdate / list.size);
+                    }
+                }else{
+                    //fields only write to their own data, so they can be updated concurrently; the tile grid is read-only here
+                    fieldUpdateTime = maxUpdate * Math.min(pool.getParallelism(), list.size) / list.size;
+                    tasks.clear();
+
+                    for(PathData data : list){
+                        if(data.frontier.size > 0 || data.clusters != null){
+                            tasks.add(pool.submit(data.updater));
+                        }
+                    }
+
+                    for(ForkJoinTask<?> task : tasks){
+                        task.join();
+                    }
                 }
 
                 try{
@@ -161,8 +346,7 @@ public class Pathfinder implements Runnable{
             return tile;
         }
 
-        int[][] values = data.weights;
-        int value = values[tile.x][tile.y];
+        int value = weight(data, tile.x, tile.y, true);
 
         Tile current = null;
         int tl = 0;
@@ -172,10 +356,12 @@ public class Pathfinder implements Runnable{
             Tile other = world.tile(dx, dy);
             if(other == null) continue;
 
-            if(values[dx][dy] < value && (current == null || values[dx][dy] < tl) && !other.solid() && other.floor().drownTime <= 0 &&
+            int otherValue = weight(data, dx, dy, true);
+
+            if(otherValue < value && (current == null || otherValue < tl) && !other.solid() && other.floor().drownTime <= 0 &&
             !(point.x != 0 && point.y != 0 && (world.solid(tile.x + point.x, tile.y) || world.solid(tile.x, tile.y + point.y)))){ //diagonal corner trap
                 current = other;
-                tl = values[dx][dy];
+                tl = otherValue;
             }
         }
 
@@ -185,31 +371,29 @@ public class Pathfinder implements Runnable{
     }
 
     /** @return whether a tile can be passed through by this team. Pathfinding thread only.*/
-    private boolean passable(int x, int y, Team team){
-        int tile = tiles[x][y];
-        return PathTile.passable(tile) || (PathTile.team(tile) != team.id && PathTile.team(tile) != (int)Team.derelict.id);
+    private boolean passable(int index, int team){
+        int tile = tiles[index];
+        return PathTile.passable(tile) || (PathTile.team(tile) != team && PathTile.team(tile) != (int)Team.derelict.id);
     }
 
     /**
-     * Clears the frontier, increments the search and sets up all flow sources.
-     * This only occurs for active teams.
+     * @return the index of the neighbor of a tile index in a specific direction (0-3, see Geometry.d4),
+     * or -1 if this neighbor is out of bounds. Does not allocate.
      */
-    private void updateTargets(PathData path, int x, int y){
-        if(!Structs.inBounds(x, y, path.weights)) return;
-
-        if(path.weights[x][y] == 0){
-            //this was a previous target
-            path.frontier.clear();
-        }else if(!path.frontier.isEmpty()){
-            //skip if this path is processing
-            return;
-        }
-
-        //assign impassability to the tile
-        if(!passable(x, y, path.team)){
-            path.weights[x][y] = impassable;
+    private int neighbor(int index, int direction){
+        switch(direction){
+            case 0: return index % wwidth == wwidth - 1 ? -1 : index + 1;
+            case 1: return index / wwidth == wheight - 1 ? -1 : index + wwidth;
+            case 2: return index % wwidth == 0 ? -1 : index - 1;
+            default: return index / wwidth == 0 ? -1 : index - wwidth;
         }
+    }
 
+    /**
+     * Clears the frontier, increments the search and sets up all flow sources.
+     * This only occurs for active teams.
+     */
+    private void updateTargets(PathData path){
         //increment search, clear frontier
         path.search++;
         path.frontier.clear();
@@ -218,13 +402,92 @@ public class Pathfinder implements Runnable{
             //add targets
             for(int i = 0; i < path.targets.size; i++){
                 int pos = path.targets.get(i);
-                int tx = Pos.x(pos), ty = Pos.y(pos);
+                int index = Pos.y(pos) * wwidth + Pos.x(pos);
 
-                path.weights[tx][ty] = 0;
-                path.searches[tx][ty] = (short)path.search;
-                path.frontier.addFirst(pos);
+                path.weights[index] = 0;
+                path.searches[index] = path.search;
+                path.frontier.addFirst(index);
             }
         }
+
+        beginSearch(path);
+    }
+
+    /**
+     * Locally repairs a flow field after the specified tiles have changed.
+     * Every tile whose weight may have been derived through a changed tile is invalidated,
+     * after which the valid tiles bordering the invalidated region are re-added to the frontier.
+     * Work is proportional to the size of the affected region, not the size of the map.
+     * Pathfinding thread only.
+     */
+    private void repair(PathData path, IntArray changed){
+        invalidated.clear();
+        invalidQueue.clear();
+
+        for(int i = 0; i < changed.size; i++){
+            int index = changed.get(i);
+            if(valid(path, index) && path.weights[index] != 0){
+                invalidate(path, index);
+            }
+        }
+
+        //invalidate all tiles that have a weight derived from an invalidated tile
+        while(invalidQueue.size > 0){
+            int index = invalidQueue.removeLast();
+            int weight = path.weights[index];
+
+            for(int d = 0; d < 4; d++){
+                int other = neighbor(index, d);
+
+                if(other != -1 && valid(path, other) && path.weights[other] != 0 && path.weights[other] >= weight + PathTile.cost(tiles[other])){
+                    invalidate(path, other);
+                }
+            }
+        }
+
+        for(int i = 0; i < invalidated.size; i++){
+            path.weights[invalidated.get(i)] = impassable;
+        }
+
+        //re-propagate from the border of the invalidated region, and into the changed tiles
+        for(int i = 0; i < invalidated.size; i++){
+            addValidNeighbors(path, invalidated.get(i));
+        }
+
+        for(int i = 0; i < changed.size; i++){
+            addValidNeighbors(path, changed.get(i));
+        }
+
+        beginSearch(path);
+    }
+
+    /** Records the time at which a field started changing, if it has work queued and had previously converged. */
+    private void beginSearch(PathData path){
+        if(path.searchStart == 0 && path.frontier.size > 0){
+            path.searchStart = Time.nanos();
+        }
+    }
+
+    /** Marks a tile as not visited in the current search, queueing it for invalidation. */
+    private void invalidate(PathData path, int index){
+        path.searches[index] = (short)(path.search - 1);
+        invalidQueue.addFirst(index);
+        invalidated.add(index);
+    }
+
+    /** Adds all neighbors of a tile index that have a valid weight to the frontier. */
+    private void addValidNeighbors(PathData path, int index){
+        for(int d = 0; d < 4; d++){
+            int other = neighbor(index, d);
+            if(other != -1 && valid(path, other)){
+                path.frontier.addFirst(other);
+            }
+        }
+    }
+
+    /** @return whether this tile index has been reached by the current search. */
+    private boolean valid(PathData path, int index){
+        return path.searches[index] == path.search && path.weights[index] != impassable;
     }
 
     private void preloadPath(Team team, PathTarget target){
@@ -234,7 +497,7 @@ public class Pathfinder implements Runnable{
     /** Created a new flowfield that aims to get to a certain target for a certain team.
      * Pathfinding thread only. */
     private PathData createPath(Team team, PathTarget target, IntArray targets){
-        PathData path = new PathData(team, target, world.width(), world.height());
+        PathData path = new PathData(team, target, wwidth, wheight, hierarchical);
 
         list.add(path);
         pathMap[team.id][target.ordinal()] = path;
@@ -245,60 +508,85 @@ public class Pathfinder implements Runnable{
             path.targets.addAll(targets);
         }
 
-        //fill with impassables by default
-        for(int x = 0; x < world.width(); x++){
-            for(int y = 0; y < world.height(); y++){
-                path.weights[x][y] = impassable;
-            }
+        if(path.clusters != null){
+            path.clusters.rebuild();
+            return path;
         }
 
+        //fill with impassables by default
+        Arrays.fill(path.weights, impassable);
+
         //add targets
         for(int i = 0; i < path.targets.size; i++){
             int pos = path.targets.get(i);
-            path.weights[Pos.x(pos)][Pos.y(pos)] = 0;
-            path.frontier.addFirst(pos);
+            int index = Pos.y(pos) * wwidth + Pos.x(pos);
+            path.weights[index] = 0;
+            path.searches[index] = path.search;
+            path.frontier.addFirst(index);
         }
 
+        path.searchStart = Time.nanos();
+
         return path;
     }
 
-    /** Update the frontier for a path. Pathfinding thread only. */
+    /** Update the frontier for a path. Pathfinding thread or pool only; only writes to the data of this path. */
     private void updateFrontier(PathData path, long nsToRun){
+        if(path.clusters != null){
+            path.clusters.update(nsToRun);
+            return;
+        }
+
         long start = Time.nanos();
+        int[] weights = path.weights;
+        short[] searches = path.searches;
+        short search = path.search;
+        int team = path.team.id;
+        int total = wwidth * wheight;
 
         while(path.frontier.size > 0 && (nsToRun < 0 || Time.timeSinceNanos(start) <= nsToRun)){
-            Tile tile = world.tile(path.frontier.removeLast());
-            if(tile == null || path.weights == null) return; //something went horribly wrong, bail
-            int cost = path.weights[tile.x][tile.y];
+            int index = path.frontier.removeLast();
+            if(index < 0 || index >= weights.length) return; //something went horribly wrong, bail
+            int cost = weights[index];
 
             //pathfinding overflowed for some reason, time to bail. the next block update will handle this, hopefully
-            if(path.frontier.size >= world.width() * world.height()){
+            if(path.frontier.size >= total){
                 path.frontier.clear();
                 return;
             }
 
             if(cost != impassable){
-                for(Point2 point : Geometry.d4){
+                for(int d = 0; d < 4; d++){
+                    int other = neighbor(index, d);
+                    if(other == -1) continue;
 
-                    int dx = tile.x + point.x, dy = tile.y + point.y;
-                    Tile other = world.tile(dx, dy);
+                    int otherCost = PathTile.cost(tiles[other]);
 
-                    if(other != null && (path.weights[dx][dy] > cost + other.cost || path.searches[dx][dy] < path.search) && passable(dx, dy, path.team)){
-                        if(other.cost < 0) throw new IllegalArgumentException("Tile cost cannot be negative! " + other);
-                        path.frontier.addFirst(Pos.get(dx, dy));
-                        path.weights[dx][dy] = cost + other.cost;
-                        path.searches[dx][dy] = (short)path.search;
+                    if((weights[other] > cost + otherCost || searches[other] != search) && passable(other, team)){
+                        if(otherCost < 0) throw new IllegalArgumentException("Tile cost cannot be negative! " + world.tile(other % wwidth, other / wwidth));
+                        path.frontier.addFirst(other);
+                        weights[other] = cost + otherCost;
+                        searches[other] = search;
                     }
                 }
             }
         }
+
+        if(path.frontier.size == 0 && path.searchStart != 0){
+            path.lastConvergence = Time.timeSinceNanos(path.searchStart);
+            path.searchStart = 0;
+        }
     }
 
     /** A path target defines a set of targets for a path.*/
     public enum PathTarget{
         enemyCores((team, out) -> {
-            for(Tile other : indexer.getEnemy(team, BlockFlag.core)){
-                out.add(other.pos());
+            for(Team enemy : team.enemies()){
+                if(!state.teams.isActive(enemy)) continue;
+
+                for(Tile other : indexer.getAllied(enemy, BlockFlag.core)){
+                    out.add(other.pos());
+                }
             }
 
             //spawn points are also enemies.
@@ -335,24 +623,410 @@ public class Pathfinder implements Runnable{
         final Team team;
         /** Flag that is being targeted. */
         final PathTarget target;
-        /** costs of getting to a specific tile */
-        final int[][] weights;
-        /** search IDs of each position - the highest, most recent search is prioritized and overwritten */
-        final short[][] searches;
-        /** search frontier, these are Pos objects */
+        /** costs of getting to a specific tile, indexed by y * width + x; null if hierarchical */
+        final int[] weights;
+        /** search IDs of each tile index - the most recent search is prioritized and overwritten; null if hierarchical */
+        final short[] searches;
+        /** cluster data used instead of full-size weights, if hierarchical */
+        final @Nullable ClusterData clusters;
+        /** search frontier, these are tile indices */
         final IntQueue frontier = new IntQueue();
         /** all target positions; these positions have a cost of 0, and must be synchronized on! */
         final IntArray targets = new IntArray();
+        /** whether the targets have changed since the last update, requiring a full recalculation. Must be synchronized on targets! */
+        boolean targetsChanged;
         /** current search ID */
-        int search = 1;
+        short search = 1;
+        /** time at which the current search or repair started, in nanoseconds; 0 if the field has converged */
+        long searchStart;
+        /** time the last search or repair took to converge, in nanoseconds; -1 if it never has */
+        volatile long lastConvergence = -1;
+        /** updates this field for the current maximum update time; used for submitting to the pool */
+        final Runnable updater = () -> updateFrontier(this, fieldUpdateTime);
 
-        PathData(Team team, PathTarget target, int width, int height){
+        PathData(Team team, PathTarget target, int width, int height, boolean hierarchical){
             this.team = team;
             this.target = target;
 
-            this.weights = new int[width][height];
-            this.searches = new short[width][height];
-            this.frontier.ensureCapacity((width + height) * 3);
+            if(hierarchical){
+                this.weights = null;
+                this.searches = null;
+                this.clusters = new ClusterData(this);
+            }else{
+                this.weights = new int[width * height];
+                this.searches = new short[width * height];
+                this.clusters = null;
+                this.frontier.ensureCapacity((width + height) * 3);
+            }
+        }
+    }
+
+    /**
+     * Hierarchical representation of a flow field, used on large maps instead of full-size weights.
+     * The map is partitioned into square clusters, which are connected through portals on their borders.
+     * An abstract search over the portal graph determines the cost from every portal to the targets;
+     * full weights are then only computed inside clusters that are requested by units, seeded with the costs of their portals.
+     * Until a cluster is refined, its weights are estimated from the costs of its portals.
+     * Pathfinding thread or pool only, unless specified otherwise.
+     */
+    class ClusterData{
+        final PathData path;
+        final int clustersX, clustersY;
+        /** tile indices of the portals of each cluster */
+        final IntArray[] portals;
+        /** costs between the portals of each cluster, indexed by from * portals + to; Integer.MAX_VALUE if unreachable */
+        final int[][] portalCosts;
+        /** refined weights of each cluster, indexed by local y * clusterSize + local x; null if not refined. Read by the main thread. */
+        final AtomicReferenceArray<int[]> weights;
+        /** whether the refined weights of each cluster are outdated */
+        final boolean[] dirty;
+        /** last time each cluster was requested by the main thread, in milliseconds; 0 if not in use */
+        final AtomicLongArray requested;
+        /**
+         * tile indices and abstract costs of the reachable portals and targets of each cluster, stored as pairs.
+         * Replaced as a whole after every abstract search, so the main thread can read it to estimate weights.
+         */
+        volatile int[][] estimates;
+        /** abstract cost of getting from each portal to the targets, keyed by tile index */
+        final IntIntMap costs = new IntIntMap();
+        /** tile indices of all targets, copied at the last search */
+        final IntArray targets = new IntArray();
+        /** scratch weights of a single cluster */
+        final int[] local = new int[clusterSize * clusterSize];
+        /** frontier for floods within a cluster */
+        final IntQueue queue = new IntQueue();
+        /** frontier for the abstract search, these are tile indices of portals */
+        final IntQueue abstractQueue = new IntQueue();
+        /** clusters affected by a tile change */
+        final IntSet affected = new IntSet();
+        /** scratch array for building estimates */
+        final IntArray entries = new IntArray();
+
+        ClusterData(PathData path){
+            this.path = path;
+            this.clustersX = Mathf.ceil((float)wwidth / clusterSize);
+            this.clustersY = Mathf.ceil((float)wheight / clusterSize);
+
+            int total = clustersX * clustersY;
+            this.portals = new IntArray[total];
+            this.portalCosts = new int[total][];
+            this.weights = new AtomicReferenceArray<>(total);
+            this.dirty = new boolean[total];
+            this.requested = new AtomicLongArray(total);
+            this.estimates = new int[total][0];
+
+            for(int i = 0; i < total; i++){
+                portals[i] = new IntArray();
+            }
+        }
+
+        /**
+         * @return the weight of a position, or an estimate if its cluster has not been refined yet. Main thread only.
+         * @param request whether to mark this cluster as in use, refining it on the next update
+         */
+        int weight(int x, int y, boolean request){
+            int cx = x / clusterSize, cy = y / clusterSize, cluster = cy * clustersX + cx;
+            if(request){
+                requested.set(cluster, Time.millis());
+            }
+            int[] values = weights.get(cluster);
+            return values == null ? estimate(cluster, x, y) : values[(y - cy * clusterSize) * clusterSize + (x - cx * clusterSize)];
+        }
+
+        /**
+         * @return the lowest cost of reaching a target through one of the portals of a cluster, plus the distance to that portal;
+         * impassable if no target can be reached from this cluster. Leads units towards the best portal until the cluster is refined.
+         * Main thread only.
+         */
+        int estimate(int cluster, int x, int y){
+            int[] values = estimates[cluster];
+            int result = impassable;
+
+            for(int i = 0; i < values.length; i += 2){
+                int index = values[i], cost = values[i + 1] + Math.abs(index % wwidth - x) + Math.abs(index / wwidth - y);
+                if(result == impassable || cost < result){
+                    result = cost;
+                }
+            }
+            return result;
+        }
+
+        /** Rebuilds all portals and the abstract search. */
+        void rebuild(){
+            for(int i = 0; i < portals.length; i++){
+                findPortals(i);
+            }
+            for(int i = 0; i < portals.length; i++){
+                updatePortalCosts(i);
+            }
+            updateTargets();
+        }
+
+        /** Rebuilds the portals around the specified tile indices, then re-runs the abstract search. */
+        void tilesChanged(IntArray changed){
+            affected.clear();
+            for(int i = 0; i < changed.size; i++){
+                int cluster = clusterOf(changed.get(i));
+                int cx = cluster % clustersX, cy = cluster / clustersX;
+                //portals on the borders of this cluster are shared with its neighbors
+                affected.add(cluster);
+                if(cx > 0) affected.add(cluster - 1);
+                if(cx < clustersX - 1) affected.add(cluster + 1);
+                if(cy > 0) affected.add(cluster - clustersX);
+                if(cy < clustersY - 1) affected.add(cluster + clustersX);
+            }
+
+            IntSet.IntSetIterator it = affected.iterator();
+            while(it.hasNext){
+                findPortals(it.next());
+            }
+
+            it = affected.iterator();
+            while(it.hasNext){
+                updatePortalCosts(it.next());
+            }
+
+            updateTargets();
+        }
+
+        /** Runs the abstract search from the current targets and marks all refined clusters as outdated. */
+        void updateTargets(){
+            long start = Time.nanos();
+
+            targets.clear();
+            synchronized(path.targets){
+                for(int i = 0; i < path.targets.size; i++){
+                    int pos = path.targets.get(i);
+                    targets.add(Pos.y(pos) * wwidth + Pos.x(pos));
+                }
+            }
+
+            costs.clear();
+            abstractQueue.clear();
+
+            //the cost from each portal to targets in the same cluster
+            for(int i = 0; i < targets.size; i++){
+                int target = targets.get(i), cluster = clusterOf(target);
+                Arrays.fill(local, Integer.MAX_VALUE);
+                local[localIndex(cluster, target)] = 0;
+                queue.addFirst(target);
+                flood(cluster);
+
+                IntArray ports = portals[cluster];
+                for(int j = 0; j < ports.size; j++){
+                    relax(ports.get(j), local[localIndex(cluster, ports.get(j))]);
+                }
+            }
+
+            while(abstractQueue.size > 0){
+                int portal = abstractQueue.removeLast();
+                int cost = costs.get(portal, Integer.MAX_VALUE);
+                int cluster = clusterOf(portal);
+
+                //move to other portals of this cluster
+                IntArray ports = portals[cluster];
+                int from = ports.indexOf(portal), count = ports.size;
+                for(int to = 0; to < count; to++){
+                    relax(ports.get(to), cost, portalCosts[cluster][from * count + to]);
+                }
+
+                //move across the border into a neighboring cluster
+                for(int d = 0; d < 4; d++){
+                    int other = neighbor(portal, d);
+                    if(other != -1 && clusterOf(other) != cluster && passable(other, path.team.id) && portals[clusterOf(other)].contains(other)){
+                        relax(other, cost, PathTile.cost(tiles[other]));
+                    }
+                }
+            }
+
+            Arrays.fill(dirty, true);
+            publishEstimates();
+            path.lastConvergence = Time.timeSinceNanos(start);
+        }
+
+        /** Copies the costs of all portals and targets found by the abstract search into a new estimate array. */
+        void publishEstimates(){
+            int[][] result = new int[portals.length][];
+
+            for(int cluster = 0; cluster < portals.length; cluster++){
+                entries.clear();
+
+                IntArray ports = portals[cluster];
+                for(int i = 0; i < ports.size; i++){
+                    int portal = ports.get(i), cost = costs.get(portal, Integer.MAX_VALUE);
+                    if(cost != Integer.MAX_VALUE){
+                        entries.add(portal);
+                        entries.add(cost);
+                    }
+                }
+
+                for(int i = 0; i < targets.size; i++){
+                    if(clusterOf(targets.get(i)) == cluster){
+                        entries.add(targets.get(i));
+                        entries.add(0);
+                    }
+                }
+
+                result[cluster] = entries.toArray();
+            }
+
+            estimates = result;
+        }
+
+        /** Refines clusters that are in use and outdated, and discards clusters that are no longer in use. */
+        void update(long nsToRun){
+            long start = Time.nanos(), time = Time.millis();
+
+            for(int i = 0; i < weights.length() && (nsToRun < 0 || Time.timeSinceNanos(start) <= nsToRun); i++){
+                long last = requested.get(i);
+                if(last == 0) continue;
+
+                if(time - last > clusterExpiry){
+                    //if the main thread requested this cluster again in the meantime, it is kept
+                    if(requested.compareAndSet(i, last, 0)){
+                        weights.set(i, null);
+                    }
+                }else if(weights.get(i) == null || dirty[i]){
+                    refine(i);
+                }
+            }
+        }
+
+        /** Computes full weights for a cluster, starting from the costs of its portals and any targets inside it. */
+        void refine(int cluster){
+            Arrays.fill(local, Integer.MAX_VALUE);
+
+            IntArray ports = portals[cluster];
+            for(int i = 0; i < ports.size; i++){
+                int portal = ports.get(i), cost = costs.get(portal, Integer.MAX_VALUE);
+                if(cost != Integer.MAX_VALUE){
+                    local[localIndex(cluster, portal)] = cost;
+                    queue.addFirst(portal);
+                }
+            }
+
+            for(int i = 0; i < targets.size; i++){
+                int target = targets.get(i);
+                if(clusterOf(target) == cluster){
+                    local[localIndex(cluster, target)] = 0;
+                    queue.addFirst(target);
+                }
+            }
+
+            flood(cluster);
+
+            //copy into a new array, so the main thread never sees partial results
+            int[] result = new int[local.length];
+            for(int i = 0; i < result.length; i++){
+                result[i] = local[i] == Integer.MAX_VALUE ? impassable : local[i];
+            }
+
+            weights.set(cluster, result);
+            dirty[cluster] = false;
+        }
+
+        /** Finds portals on all borders of a cluster. Each entrance, a run of passable tiles on both sides of a border, gets a portal in its middle. */
+        void findPortals(int cluster){
+            IntArray out = portals[cluster];
+            out.clear();
+
+            int cx = cluster % clustersX, cy = cluster / clustersX;
+            int x = cx * clusterSize, y = cy * clusterSize;
+            int w = Math.min(clusterSize, wwidth - x), h = Math.min(clusterSize, wheight - y);
+
+            if(cx > 0) findEntrances(out, y * wwidth + x, wwidth, h, -1);
+            if(cx < clustersX - 1) findEntrances(out, y * wwidth + x + w - 1, wwidth, h, 1);
+            if(cy > 0) findEntrances(out, y * wwidth + x, 1, w, -wwidth);
+            if(cy < clustersY - 1) findEntrances(out, (y + h - 1) * wwidth + x, 1, w, wwidth);
+
+            portalCosts[cluster] = null;
+        }
+
+        /**
+         * Adds the middle tile of every entrance along one border to the output.
+         * @param start index of the first border tile inside the cluster
+         * @param step offset between consecutive border tiles
+         * @param length number of tiles along the border
+         * @param across offset from a border tile to the tile on the other side of the border
+         */
+        void findEntrances(IntArray out, int start, int step, int length, int across){
+            int team = path.team.id, run = 0;
+
+            for(int i = 0; i <= length; i++){
+                int index = start + i * step;
+                if(i < length && passable(index, team) && passable(index + across, team)){
+                    run++;
+                }else if(run > 0){
+                    int portal = start + (i - run + run / 2) * step;
+                    if(!out.contains(portal)){
+                        out.add(portal);
+                    }
+                    run = 0;
+                }
+            }
+        }
+
+        /** Computes the costs between every pair of portals in a cluster. */
+        void updatePortalCosts(int cluster){
+            IntArray ports = portals[cluster];
+            int count = ports.size;
+            int[] result = new int[count * count];
+
+            for(int from = 0; from < count; from++){
+                Arrays.fill(local, Integer.MAX_VALUE);
+                local[localIndex(cluster, ports.get(from))] = 0;
+                queue.addFirst(ports.get(from));
+                flood(cluster);
+
+                for(int to = 0; to < count; to++){
+                    result[from * count + to] = local[localIndex(cluster, ports.get(to))];
+                }
+            }
+
+            portalCosts[cluster] = result;
+        }
+
+        /** Floods the tile indices in the queue through one cluster, writing weights into the local array. */
+        void flood(int cluster){
+            int team = path.team.id;
+
+            while(queue.size > 0){
+                int index = queue.removeLast();
+                int cost = local[localIndex(cluster, index)];
+
+                for(int d = 0; d < 4; d++){
+                    int other = neighbor(index, d);
+                    if(other == -1 || clusterOf(other) != cluster) continue;
+
+                    int l = localIndex(cluster, other), otherCost = cost + PathTile.cost(tiles[other]);
+                    if(otherCost < local[l] && passable(other, team)){
+                        local[l] = otherCost;
+                        queue.addFirst(other);
+                    }
+                }
+            }
+        }
+
+        void relax(int portal, int cost, int edge){
+            if(cost != Integer.MAX_VALUE && edge != Integer.MAX_VALUE){
+                relax(portal, cost + edge);
+            }
+        }
+
+        void relax(int portal, int cost){
+            if(cost < costs.get(portal, Integer.MAX_VALUE)){
+                costs.put(portal, cost);
+                abstractQueue.addFirst(portal);
+            }
+        }
+
+        int clusterOf(int index){
+            return (index / wwidth / clusterSize) * clustersX + (index % wwidth) / clusterSize;
+        }
+
+        int localIndex(int cluster, int index){
+            int cx = cluster % clustersX, cy = cluster / clustersX;
+            return (index / wwidth - cy * clusterSize) * clusterSize + (index % wwidth - cx * clusterSize);
         }
     }
 
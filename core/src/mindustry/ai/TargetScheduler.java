@@ -0,0 +1,103 @@
+package mindustry.ai;
+
+import arc.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.game.EventType.*;
+
+/**
+ * Spreads retargeting of units and turrets across frames.
+ * Entities that are due to retarget are queued, and only a limited amount of them is allowed to retarget each frame,
+ * so entities that were created at the same time (e.g. a wave) do not all retarget on the same frames.
+ * Entities that have lost their target are queued before all others, and do not wait for their interval.
+ */
+public class TargetScheduler{
+    /** Maximum amount of frames an entity should wait in the queue; the budget is raised if the queue is longer than this allows. */
+    private static final int maxDelay = 10;
+
+    /** Amount of entities that are allowed to retarget each frame. */
+    public int budget = 40;
+
+    private final Queue<Ticket> urgent = new Queue<>(), queue = new Queue<>();
+    private long frame;
+    private int lastGranted;
+
+    public TargetScheduler(){
+        Events.on(WorldLoadEvent.class, e -> clear());
+    }
+
+    /** Grants retargeting to queued entities. Call once per frame, before entities are updated. */
+    public void update(){
+        frame++;
+
+        int grants = Math.max(budget, (urgent.size + queue.size) / maxDelay);
+        lastGranted = 0;
+
+        while(lastGranted < grants && (urgent.size > 0 || queue.size > 0)){
+            Ticket ticket = urgent.size > 0 ? urgent.removeFirst() : queue.removeFirst();
+            //tickets that lost their target while queued are in both queues, and may have already been granted
+            if(!ticket.queued) continue;
+            ticket.queued = false;
+            ticket.urgent = false;
+            ticket.granted = frame;
+            lastGranted++;
+        }
+    }
+
+    /**
+     * Call every frame from the entity that owns the ticket.
+     * @param interval minimum amount of ticks between retargets
+     * @param hasTarget whether the entity currently has a valid target
+     * @return whether the entity should retarget now.
+     */
+    public boolean poll(Ticket ticket, float interval, boolean hasTarget){
+        boolean lost = ticket.hadTarget && !hasTarget;
+        ticket.hadTarget = hasTarget;
+
+        if(ticket.granted == frame){
+            ticket.granted = -1;
+            ticket.last = Time.time();
+            return true;
+        }
+
+        float elapsed = Time.time() - ticket.last;
+        //time goes backwards when it is reset on world load
+        if(lost && !ticket.urgent){
+            ticket.queued = ticket.urgent = true;
+            urgent.addLast(ticket);
+        }else if(!ticket.queued && (elapsed >= interval || elapsed < 0)){
+            ticket.queued = true;
+            queue.addLast(ticket);
+        }
+
+        return false;
+    }
+
+    /** @return the amount of entities waiting to retarget. */
+    public int queueDepth(){
+        return urgent.size + queue.size;
+    }
+
+    /** @return the amount of entities that were allowed to retarget in the last frame. */
+    public int lastGranted(){
+        return lastGranted;
+    }
+
+    public void clear(){
+        for(Ticket ticket : urgent){
+            ticket.queued = ticket.urgent = false;
+        }
+        for(Ticket ticket : queue){
+            ticket.queued = ticket.urgent = false;
+        }
+        urgent.clear();
+        queue.clear();
+    }
+
+    /** Retargeting state of a single entity. */
+    public static class Ticket{
+        float last = -Float.MAX_VALUE / 2f;
+        long granted = -1;
+        boolean queued, urgent, hadTarget;
+    }
+}
@@ -0,0 +1,199 @@
+package mindustry.ai;
+
+import arc.math.*;
+import arc.struct.*;
+import mindustry.world.*;
+
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * A set of tiles stored as packed positions, bucketed by area for closest-tile queries.
+ * Iterating does not copy anything; like other Arc collections, at most two iterators can be in use at once.
+ */
+public class TileSet implements Iterable<Tile>{
+    private final IntArray positions = new IntArray();
+    /** maps positions to their index in the position array */
+    private final IntIntMap indices = new IntIntMap();
+    private final int bucketSize, width, height;
+    /** positions in each bucket; allocated when the first tile is added */
+    private IntArray[] buckets;
+    private final TileSetIterator iterator1 = new TileSetIterator(), iterator2 = new TileSetIterator();
+    private boolean alternate;
+
+    public int size;
+
+    /**
+     * @param width width of the world in tiles
+     * @param height height of the world in tiles
+     * @param bucketSize size of a bucket in tiles
+     */
+    public TileSet(int width, int height, int bucketSize){
+        this.bucketSize = bucketSize;
+        this.width = Math.max(Mathf.ceil(width / (float)bucketSize), 1);
+        this.height = Math.max(Mathf.ceil(height / (float)bucketSize), 1);
+    }
+
+    /** @return whether the tile was not already in this set. */
+    public boolean add(Tile tile){
+        int pos = tile.pos();
+        if(indices.containsKey(pos)) return false;
+
+        indices.put(pos, positions.size);
+        positions.add(pos);
+        size = positions.size;
+
+        if(buckets == null){
+            buckets = new IntArray[width * height];
+        }
+
+        int bucket = bucket(tile.x, tile.y);
+        if(buckets[bucket] == null){
+            buckets[bucket] = new IntArray(false, 4);
+        }
+        buckets[bucket].add(pos);
+        return true;
+    }
+
+    /** @return whether the tile was in this set. */
+    public boolean remove(Tile tile){
+        return remove(tile.pos());
+    }
+
+    /** @return whether the position was in this set. */
+    public boolean remove(int pos){
+        int index = indices.remove(pos, -1);
+        if(index == -1) return false;
+
+        //move the last position into the freed index
+        int last = positions.pop();
+        if(index < positions.size){
+            positions.set(index, last);
+            indices.put(last, index);
+        }
+        size = positions.size;
+
+        buckets[bucket(Pos.x(pos), Pos.y(pos))].removeValue(pos);
+        return true;
+    }
+
+    public boolean contains(Tile tile){
+        return indices.containsKey(tile.pos());
+    }
+
+    public void clear(){
+        positions.clear();
+        indices.clear();
+        if(buckets != null){
+            Arrays.fill(buckets, null);
+        }
+        size = 0;
+    }
+
+    public Tile first(){
+        if(size == 0) throw new IllegalStateException("TileSet is empty.");
+        return world.tile(positions.first());
+    }
+
+    public Tile get(int index){
+        return world.tile(positions.get(index));
+    }
+
+    /**
+     * Finds the closest tile in this set, searching buckets in rings around the position.
+     * @param maxDst2 only tiles closer than the square root of this, in world units, are returned
+     * @return the closest tile, or null if there are none.
+     */
+    public Tile findClosest(float x, float y, float maxDst2){
+        if(size == 0) return null;
+
+        int tx = Mathf.clamp((int)(x / tilesize) / bucketSize, 0, width - 1), ty = Mathf.clamp((int)(y / tilesize) / bucketSize, 0, height - 1);
+        int maxRing = Math.max(width, height);
+        float bucketWorldSize = bucketSize * tilesize;
+        int closest = -1;
+        float closestDst = maxDst2;
+
+        for(int ring = 0; ring <= maxRing; ring++){
+            //every tile in this ring is at least this far away, so stop once that is further than the closest tile
+            float minDst = Math.max(ring - 1, 0) * bucketWorldSize;
+            if(minDst * minDst > closestDst) break;
+
+            for(int bx = tx - ring; bx <= tx + ring; bx++){
+                for(int by = ty - ring; by <= ty + ring; by++){
+                    //only visit the edges of the ring
+                    if(bx < 0 || by < 0 || bx >= width || by >= height || (Math.abs(bx - tx) != ring && Math.abs(by - ty) != ring)) continue;
+
+                    IntArray bucket = buckets[bx + by * width];
+                    if(bucket == null) continue;
+
+                    for(int i = 0; i < bucket.size; i++){
+                        int pos = bucket.get(i);
+                        float dst = Mathf.dst2(x, y, Pos.x(pos) * tilesize, Pos.y(pos) * tilesize);
+                        if(dst < closestDst){
+                            closestDst = dst;
+                            closest = pos;
+                        }
+                    }
+                }
+            }
+        }
+
+        return closest == -1 ? null : world.tile(closest);
+    }
+
+    /** Adds the positions of all tiles within a range to the output array. */
+    public void within(float x, float y, float range, IntArray out){
+        if(size == 0) return;
+
+        float range2 = range * range;
+        int minx = Mathf.clamp((int)((x - range) / tilesize) / bucketSize, 0, width - 1), miny = Mathf.clamp((int)((y - range) / tilesize) / bucketSize, 0, height - 1);
+        int maxx = Mathf.clamp((int)((x + range) / tilesize) / bucketSize, 0, width - 1), maxy = Mathf.clamp((int)((y + range) / tilesize) / bucketSize, 0, height - 1);
+
+        for(int by = miny; by <= maxy; by++){
+            for(int bx = minx; bx <= maxx; bx++){
+                IntArray bucket = buckets[bx + by * width];
+                if(bucket == null) continue;
+
+                for(int i = 0; i < bucket.size; i++){
+                    int pos = bucket.get(i);
+                    if(Mathf.dst2(x, y, Pos.x(pos) * tilesize, Pos.y(pos) * tilesize) < range2){
+                        out.add(pos);
+                    }
+                }
+            }
+        }
+    }
+
+    /** @return the closest tile in this set, or null if there are none. */
+    public Tile findClosest(float x, float y){
+        return findClosest(x, y, Float.MAX_VALUE);
+    }
+
+    @Override
+    public Iterator<Tile> iterator(){
+        //alternate between iterators, so that two loops over this set can be nested
+        TileSetIterator iterator = (alternate = !alternate) ? iterator1 : iterator2;
+        iterator.index = 0;
+        return iterator;
+    }
+
+    private int bucket(int x, int y){
+        return Mathf.clamp(x / bucketSize, 0, width - 1) + Mathf.clamp(y / bucketSize, 0, height - 1) * width;
+    }
+
+    private class TileSetIterator implements Iterator<Tile>{
+        int index;
+
+        @Override
+        public boolean hasNext(){
+            return index < size;
+        }
+
+        @Override
+        public Tile next(){
+            if(index >= size) throw new NoSuchElementException();
+            return world.tile(positions.get(index++));
+        }
+    }
+}
@@ -15,6 +15,7 @@ import mindustry.entities.type.*;
 import mindustry.game.EventType.WorldLoadEvent;
 import mindustry.game.SpawnGroup;
 import mindustry.world.Tile;
+import mindustry.world.Tiles;
 
 import static mindustry.Vars.*;
 
@@ -123,10 +124,12 @@ public class WaveSpawner{
         flySpawns.clear();
         groundSpawns.clear();
 
+        Tiles tiles = world.getTiles();
+
         for(int x = 0; x < world.width(); x++){
             for(int y = 0; y < world.height(); y++){
 
-                if(world.tile(x, y).overlay() == Blocks.spawn){
+                if(tiles.overlay(tiles.index(x, y)) == Blocks.spawn){
                     addSpawns(x, y);
                 }
             }
@@ -4,6 +4,7 @@ import arc.*;
 import arc.graphics.*;
 import arc.graphics.g2d.*;
 import arc.math.*;
+import arc.struct.*;
 import arc.util.*;
 import mindustry.*;
 import mindustry.ctype.ContentList;
@@ -130,13 +131,15 @@ public class Mechs implements ContentList{
                 if(player.timer.get(Player.timerAbility, healReload)){
                     wasHealed = false;
 
-                    Units.nearby(player.getTeam(), player.x, player.y, healRange, unit -> {
+                    Array<Unit> units = UnitQuery.get().nearby(player.getTeam(), player.x, player.y, healRange);
+                    for(int i = 0; i < units.size; i++){
+                        Unit unit = units.get(i);
                         if(unit.health < unit.maxHealth()){
                             Effects.effect(Fx.heal, unit);
                             wasHealed = true;
                         }
                         unit.healBy(healAmount);
-                    });
+                    }
 
                     if(wasHealed){
                         Effects.effect(Fx.healWave, player);
@@ -234,6 +234,7 @@ public class Logic implements ApplicationListener{
                 }
 
                 if(!state.isEditor()){
+                    targeting.update();
                     unitGroup.update();
                     puddleGroup.update();
                     shieldGroup.update();
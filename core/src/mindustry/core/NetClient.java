@@ -56,6 +56,8 @@ public class NetClient implements ApplicationListener{
     /** Byte stream for reading in snapshots. */
     private ReusableByteInStream byteStream = new ReusableByteInStream();
     private DataInputStream dataStream = new DataInputStream(byteStream);
+    /** Decodes delta compressed entity snapshots. */
+    private EntityDeltas.Decoder deltas = new EntityDeltas.Decoder();
 
     public NetClient(){
 
@@ -123,7 +125,7 @@ public class NetClient implements ApplicationListener{
 
         net.handleClient(WorldStream.class, data -> {
             Log.info("Recieved world data: {0} bytes.", data.stream.available());
-            NetworkIO.loadWorld(new InflaterInputStream(data.stream));
+            NetworkIO.loadWorld(data.stream);
 
             finishConnecting();
         });
@@ -330,6 +332,7 @@ public class NetClient implements ApplicationListener{
     public static void onWorldDataBegin(){
         entities.clear();
         netClient.removed.clear();
+        netClient.deltas.clear();
         logic.reset();
 
         net.setClientLoaded(false);
@@ -356,17 +359,26 @@ public class NetClient implements ApplicationListener{
     }
 
     @Remote(variants = Variant.one, priority = PacketPriority.low, unreliable = true)
-    public static void onEntitySnapshot(byte groupID, short amount, short dataLen, byte[] data){
+    public static void onEntitySnapshot(byte groupID, int seq, short amount, short dataLen, byte[] data){
         try{
             netClient.byteStream.setBytes(net.decompressSnapshot(data, dataLen));
             DataInputStream input = netClient.dataStream;
 
             EntityGroup group = entities.get(groupID);
+            //packets are only acknowledged if every state could be decoded, so that they can be used as baselines
+            boolean complete = true;
 
             //go through each entity
             for(int j = 0; j < amount; j++){
                 int id = input.readInt();
                 byte typeID = input.readByte();
+                DataInput state = netClient.deltas.read(input, seq, id);
+
+                //baseline of this state is missing, skip it; the server is told to send the full state again
+                if(state == null){
+                    complete = false;
+                    continue;
+                }
 
                 SyncTrait entity = group == null ? null : (SyncTrait)group.getByID(id);
                 boolean add = false, created = false;
@@ -387,7 +399,7 @@ public class NetClient implements ApplicationListener{
                 }
 
                 //read the entity
-                entity.read(input);
+                entity.read(state);
 
                 if(created && entity.getInterpolator() != null && entity.getInterpolator().target != null){
                     //set initial starting position
@@ -402,6 +414,31 @@ public class NetClient implements ApplicationListener{
                     netClient.addRemovedEntity(entity.getID());
                 }
             }
+
+            if(complete){
+                netClient.deltas.received(seq);
+            }
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Remote(variants = Variant.one, priority = PacketPriority.low)
+    public static void onEntitiesRemoved(byte groupID, short amount, byte[] data){
+        try{
+            netClient.byteStream.setBytes(data);
+            DataInputStream input = netClient.dataStream;
+
+            EntityGroup group = entities.get(groupID);
+
+            for(int i = 0; i < amount; i++){
+                int id = input.readInt();
+                //never remove the local player
+                if(group != null && id != player.id){
+                    group.removeByID(id);
+                }
+                netClient.deltas.remove(id);
+            }
         }catch(IOException e){
             throw new RuntimeException(e);
         }
@@ -501,6 +538,7 @@ public class NetClient implements ApplicationListener{
     private void reset(){
         net.setClientLoaded(false);
         removed.clear();
+        deltas.clear();
         timeoutTime = 0f;
         connecting = true;
         quietReset = false;
@@ -562,6 +600,14 @@ public class NetClient implements ApplicationListener{
             Core.camera.width * viewScale, Core.camera.height * viewScale);
         }
 
+        if(deltas.hasAcks()){
+            Call.onEntitySnapshotAck(deltas.latest(), deltas.pollAcks());
+        }
+
+        if(deltas.hasMissing()){
+            Call.onEntitySnapshotMissing(deltas.pollMissing());
+        }
+
         if(timer.get(1, 60)){
             Call.onPing(Time.millis());
         }
@@ -38,9 +38,17 @@ public class NetServer implements ApplicationListener{
     private final static int maxSnapshotSize = 430, timerBlockSync = 0;
     private final static float serverSyncTime = 12, blockSyncTime = 60 * 8;
     private final static Vec2 vector = new Vec2();
-    private final static Rect viewport = new Rect();
+    private final static Rect viewport = new Rect(), farViewport = new Rect();
     /** If a player goes away of their server-side coordinates by this distance, they get teleported back. */
     private final static float correctDist = 16f;
+    /** Entities within this distance of a player's view are synced every snapshot, if interest management is enabled. */
+    private final static float viewMargin = tilesize * 12f;
+    /** Entities outside of a player's view are synced once every this many snapshots, if interest management is enabled. */
+    private final static int farSyncInterval = 8;
+    /** Entities farther than this from a player's view are not synced at all and removed from the client, if interest management is enabled. */
+    private final static float farMargin = tilesize * 60f;
+    /** Maximum amount of entity removals sent in one packet. */
+    private final static int maxRemovals = 100;
 
     public final Administration admins = new Administration();
     public final CommandHandler clientCommands = new CommandHandler("/");
@@ -74,6 +82,16 @@ public class NetServer implements ApplicationListener{
     private ReusableByteOutStream syncStream = new ReusableByteOutStream();
     /** Data stream for writing player sync data to. */
     private DataOutputStream dataStream = new DataOutputStream(syncStream);
+    /** Stream for writing the state of a single entity to, before it is delta compressed. */
+    private ReusableByteOutStream entityStream = new ReusableByteOutStream();
+    /** Data stream for writing entity state to. */
+    private DataOutputStream entityData = new DataOutputStream(entityStream);
+    /** IDs of synced entities that have been removed; used for sending removals. */
+    private IntArray removedEntities = new IntArray();
+    /** Compressed map section of the world data, shared by all joining players. Does not contain tile entity state. */
+    private byte[] worldCache;
+    /** World version that the cached map data was written in; see {@link World#version()}. */
+    private int worldCacheVersion = -1;
 
     public NetServer(){
 
@@ -466,8 +484,9 @@ public class NetServer implements ApplicationListener{
 
     public void sendWorldData(Player player){
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        DeflaterOutputStream def = new FastDeflaterOutputStream(stream);
-        NetworkIO.writeWorld(player, def);
+        NetworkIO.writeWorld(player, worldMapData(), stream);
+        player.con.syncedEntities.clear();
+        player.con.deltas.clear();
         WorldStream data = new WorldStream();
         data.stream = new ByteArrayInputStream(stream.toByteArray());
         player.con.sendStream(data);
@@ -475,6 +494,18 @@ public class NetServer implements ApplicationListener{
         Log.debug("Packed {0} compressed bytes of world data.", stream.size());
     }
 
+    /** @return the compressed map section of the world data. This is only written again if tiles have changed. */
+    private byte[] worldMapData(){
+        //tile change events are posted, so the world version is checked instead to never send tiles that don't match the tile entities
+        if(worldCache == null || worldCacheVersion != world.version()){
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            NetworkIO.writeMap(stream);
+            worldCache = stream.toByteArray();
+            worldCacheVersion = world.version();
+        }
+        return worldCache;
+    }
+
     public static void onDisconnect(Player player, String reason){
         //singleplayer multiplayer wierdness
         if(player.con == null){
@@ -595,6 +626,20 @@ public class NetServer implements ApplicationListener{
         connection.lastRecievedClientTime = Time.millis();
     }
 
+    @Remote(targets = Loc.client, unreliable = true)
+    public static void onEntitySnapshotAck(Player player, int latest, byte[] received){
+        if(player.con == null) return;
+
+        player.con.deltas.ack(latest, received);
+    }
+
+    @Remote(targets = Loc.client, unreliable = true)
+    public static void onEntitySnapshotMissing(Player player, byte[] ids){
+        if(player.con == null) return;
+
+        player.con.deltas.missing(ids);
+    }
+
     @Remote(targets = Loc.client, called = Loc.server)
     public static void onAdminRequest(Player player, Player other, AdminAction action){
 
@@ -680,6 +725,11 @@ public class NetServer implements ApplicationListener{
         }
     }
 
+    @Override
+    public void dispose(){
+        admins.flush();
+    }
+
     /** Should only be used on the headless backend. */
     public void openServer(){
         try{
@@ -745,7 +795,13 @@ public class NetServer implements ApplicationListener{
         //write basic state data.
         Call.onStateSnapshot(player.con, state.wavetime, state.wave, state.enemies, (short)stateBytes.length, net.compressSnapshot(stateBytes));
 
-        viewport.setSize(player.con.viewWidth, player.con.viewHeight).setCenter(player.con.viewX, player.con.viewY);
+        NetConnection con = player.con;
+        viewport.setSize(con.viewWidth + viewMargin * 2f, con.viewHeight + viewMargin * 2f).setCenter(con.viewX, con.viewY);
+        farViewport.setSize(con.viewWidth + farMargin * 2f, con.viewHeight + farMargin * 2f).setCenter(con.viewX, con.viewY);
+        boolean interest = Config.interestManagement.bool();
+        //entities outside the view are only synced periodically
+        boolean syncFar = !interest || con.snapshotsSent++ % farSyncInterval == 0;
+        boolean delta = Config.deltaSnapshots.bool();
 
         //check for syncable groups
         for(EntityGroup<?> group : entities.all()){
@@ -759,24 +815,35 @@ public class NetServer implements ApplicationListener{
             syncStream.reset();
 
             int sent = 0;
+            int seq = delta ? con.deltas.begin() : EntityDeltas.unsequenced;
 
             for(Entity entity :  group.all()){
                 SyncTrait sync = (SyncTrait)entity;
                 if(!sync.isSyncing()) continue;
 
-                //write all entities now
-                dataStream.writeInt(entity.getID()); //write id
-                dataStream.writeByte(sync.getTypeID().id); //write type ID
-                sync.write(dataStream); //write entity
+                //players are always synced, as they are few and needed for the player list
+                if(interest && group != playerGroup && !(syncFar ? farViewport : viewport).contains(entity.getX(), entity.getY())) continue;
+
+                con.syncedEntities.put(entity.getID(), group.getID());
+
+                //write entity state, then write it as a delta against what the client has; unchanged entities are skipped
+                entityStream.reset();
+                sync.write(entityData);
+                entityData.flush();
+
+                if(!con.deltas.write(dataStream, seq, entity.getID(), sync.getTypeID().id, entityStream.getBytes(), entityStream.size(), delta)){
+                    continue;
+                }
 
                 sent++;
 
                 if(syncStream.size() > maxSnapshotSize){
                     dataStream.close();
                     byte[] syncBytes = syncStream.toByteArray();
-                    Call.onEntitySnapshot(player.con, (byte)group.getID(), (short)sent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
+                    Call.onEntitySnapshot(player.con, (byte)group.getID(), seq, (short)sent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
                     sent = 0;
                     syncStream.reset();
+                    seq = delta ? con.deltas.begin() : EntityDeltas.unsequenced;
                 }
             }
 
@@ -784,9 +851,60 @@ public class NetServer implements ApplicationListener{
                 dataStream.close();
 
                 byte[] syncBytes = syncStream.toByteArray();
-                Call.onEntitySnapshot(player.con, (byte)group.getID(), (short)sent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
+                Call.onEntitySnapshot(player.con, (byte)group.getID(), seq, (short)sent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
+            }
+        }
+
+        writeEntityRemovals(player, interest);
+    }
+
+    /**
+     * Notifies a player of entities that have been synced to them, but have since been removed or moved far outside of their view.
+     * Those entities are sent in full again if they come back into view.
+     */
+    private void writeEntityRemovals(Player player, boolean interest) throws IOException{
+        IntIntMap synced = player.con.syncedEntities;
+        removedEntities.clear();
+
+        for(IntIntMap.Entry entry : synced.entries()){
+            EntityGroup<?> group = entities.get(entry.value);
+            Entity entity = group.getByID(entry.key);
+            if(entity == null || (interest && group != playerGroup && !farViewport.contains(entity.getX(), entity.getY()))){
+                removedEntities.add(entry.key);
             }
         }
+
+        if(removedEntities.isEmpty()) return;
+
+        for(EntityGroup<?> group : entities.all()){
+            syncStream.reset();
+            int sent = 0;
+
+            for(int i = 0; i < removedEntities.size; i++){
+                int id = removedEntities.get(i);
+                if(synced.get(id, -1) != group.getID()) continue;
+
+                dataStream.writeInt(id);
+                sent++;
+
+                if(sent >= maxRemovals){
+                    dataStream.close();
+                    Call.onEntitiesRemoved(player.con, (byte)group.getID(), (short)sent, syncStream.toByteArray());
+                    sent = 0;
+                    syncStream.reset();
+                }
+            }
+
+            if(sent > 0){
+                dataStream.close();
+                Call.onEntitiesRemoved(player.con, (byte)group.getID(), (short)sent, syncStream.toByteArray());
+            }
+        }
+
+        for(int i = 0; i < removedEntities.size; i++){
+            synced.remove(removedEntities.get(i), -1);
+            player.con.deltas.remove(removedEntities.get(i));
+        }
     }
 
     String fixName(String name){
@@ -13,7 +13,6 @@ import mindustry.game.Teams.*;
 import mindustry.io.*;
 import mindustry.maps.*;
 import mindustry.maps.filters.*;
-import mindustry.maps.filters.GenerateFilter.*;
 import mindustry.maps.generators.*;
 import mindustry.type.*;
 import mindustry.world.*;
@@ -25,14 +24,21 @@ public class World{
     public final Context context = new Context();
 
     private Map currentMap;
-    private Tile[][] tiles;
+    private Tiles tiles;
 
     private boolean generating, invalidMap;
+    /** Incremented when a map starts loading and when a tile changes, without waiting for posted events. */
+    private int version;
 
     public World(){
 
     }
 
+    /** @return a number that changes whenever any tile of the world may have changed. */
+    public int version(){
+        return version;
+    }
+
     public boolean isInvalidMap(){
         return invalidMap;
     }
@@ -67,11 +73,11 @@ public class World{
     }
 
     public int width(){
-        return tiles == null ? 0 : tiles.length;
+        return tiles == null ? 0 : tiles.width;
     }
 
     public int height(){
-        return tiles == null ? 0 : tiles[0].length;
+        return tiles == null ? 0 : tiles.height;
     }
 
     public int unitWidth(){
@@ -91,8 +97,7 @@ public class World{
         if(tiles == null){
             return null;
         }
-        if(!Structs.inBounds(x, y, tiles)) return null;
-        return tiles[x][y];
+        return tiles.get(x, y);
     }
 
     public @Nullable Tile ltile(int x, int y){
@@ -102,7 +107,7 @@ public class World{
     }
 
     public Tile rawTile(int x, int y){
-        return tiles[x][y];
+        return tiles.getn(x, y);
     }
 
     public @Nullable Tile tileWorld(float x, float y){
@@ -117,35 +122,34 @@ public class World{
         return Math.round(coord / tilesize);
     }
 
-    public Tile[][] getTiles(){
+    public Tiles getTiles(){
         return tiles;
     }
 
     private void clearTileEntities(){
-        for(int x = 0; x < tiles.length; x++){
-            for(int y = 0; y < tiles[0].length; y++){
-                if(tiles[x][y] != null && tiles[x][y].entity != null){
-                    tiles[x][y].entity.remove();
-                }
+        for(int i = 0; i < tiles.width * tiles.height; i++){
+            Tile tile = tiles.cached(i);
+            if(tile != null && tile.entity != null){
+                tile.entity.remove();
             }
         }
     }
 
     /**
-     * Resizes the tile array to the specified size and returns the resulting tile array.
+     * Creates an empty tile array of the specified size and returns it.
      * Only use for loading saves!
      */
-    public Tile[][] createTiles(int width, int height){
-        if(tiles != null){
-            clearTileEntities();
+    public Tiles createTiles(int width, int height){
+        return createTiles(new Tiles(width, height));
+    }
 
-            if(tiles.length != width || tiles[0].length != height){
-                tiles = new Tile[width][height];
-            }
-        }else{
-            tiles = new Tile[width][height];
+    /** Replaces the tile array with one that creates a different kind of tile, and returns it. */
+    public Tiles createTiles(Tiles tiles){
+        if(this.tiles != null){
+            clearTileEntities();
         }
 
+        this.tiles = tiles;
         return tiles;
     }
 
@@ -155,6 +159,7 @@ public class World{
      */
     public void beginMapLoad(){
         generating = true;
+        version++;
     }
 
     /**
@@ -164,14 +169,13 @@ public class World{
     public void endMapLoad(){
         prepareTiles(tiles);
 
-        for(int x = 0; x < tiles.length; x++){
-            for(int y = 0; y < tiles[0].length; y++){
-                Tile tile = tiles[x][y];
-                tile.updateOcclusion();
+        //tiles without views have no entities, so they only need their occlusion updated
+        for(int i = 0; i < tiles.width * tiles.height; i++){
+            tiles.updateOcclusion(i);
+            Tile tile = tiles.cached(i);
 
-                if(tile.entity != null){
-                    tile.entity.updateProximity();
-                }
+            if(tile != null && tile.entity != null){
+                tile.entity.updateProximity();
             }
         }
 
@@ -179,7 +183,7 @@ public class World{
             addDarkness(tiles);
         }
 
-        entities.all().each(group -> group.resize(-finalWorldBounds, -finalWorldBounds, tiles.length * tilesize + finalWorldBounds * 2, tiles[0].length * tilesize + finalWorldBounds * 2));
+        entities.all().each(group -> group.resize(-finalWorldBounds, -finalWorldBounds, tiles.width * tilesize + finalWorldBounds * 2, tiles.height * tilesize + finalWorldBounds * 2));
 
         generating = false;
         Events.fire(new WorldLoadEvent());
@@ -259,6 +263,7 @@ public class World{
     }
 
     public void notifyChanged(Tile tile){
+        version++;
         if(!generating){
             Core.app.post(() -> Events.fire(new TileChangeEvent(tile)));
         }
@@ -297,27 +302,27 @@ public class World{
         }
     }
 
-    public void addDarkness(Tile[][] tiles){
-        byte[][] dark = new byte[tiles.length][tiles[0].length];
-        byte[][] writeBuffer = new byte[tiles.length][tiles[0].length];
+    public void addDarkness(Tiles tiles){
+        int width = tiles.width, height = tiles.height;
+        byte[][] dark = new byte[width][height];
+        byte[][] writeBuffer = new byte[width][height];
 
         byte darkIterations = 4;
-        for(int x = 0; x < tiles.length; x++){
-            for(int y = 0; y < tiles[0].length; y++){
-                Tile tile = tiles[x][y];
-                if(tile.isDarkened()){
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                if(isDarkened(tiles, x, y)){
                     dark[x][y] = darkIterations;
                 }
             }
         }
 
         for(int i = 0; i < darkIterations; i++){
-            for(int x = 0; x < tiles.length; x++){
-                for(int y = 0; y < tiles[0].length; y++){
+            for(int x = 0; x < width; x++){
+                for(int y = 0; y < height; y++){
                     boolean min = false;
                     for(Point2 point : Geometry.d4){
                         int newX = x + point.x, newY = y + point.y;
-                        if(Structs.inBounds(newX, newY, tiles) && dark[newX][newY] < dark[x][y]){
+                        if(tiles.in(newX, newY) && dark[newX][newY] < dark[x][y]){
                             min = true;
                             break;
                         }
@@ -326,51 +331,52 @@ public class World{
                 }
             }
 
-            for(int x = 0; x < tiles.length; x++){
-                System.arraycopy(writeBuffer[x], 0, dark[x], 0, tiles[0].length);
+            for(int x = 0; x < width; x++){
+                System.arraycopy(writeBuffer[x], 0, dark[x], 0, height);
             }
         }
 
-        for(int x = 0; x < tiles.length; x++){
-            for(int y = 0; y < tiles[0].length; y++){
-                Tile tile = tiles[x][y];
-                if(tile.isDarkened()){
-                    tiles[x][y].rotation(dark[x][y]);
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                if(isDarkened(tiles, x, y)){
+                    tiles.rotation(tiles.index(x, y), dark[x][y]);
                 }
                 if(dark[x][y] == 4){
                     boolean full = true;
                     for(Point2 p : Geometry.d4){
                         int px = p.x + x, py = p.y + y;
-                        if(Structs.inBounds(px, py, tiles) && !(tiles[px][py].isDarkened() && dark[px][py] == 4)){
+                        if(tiles.in(px, py) && !(isDarkened(tiles, px, py) && dark[px][py] == 4)){
                             full = false;
                             break;
                         }
                     }
 
-                    if(full) tiles[x][y].rotation(5);
+                    if(full) tiles.rotation(tiles.index(x, y), 5);
                 }
             }
         }
     }
 
+    /** Same as {@link Tile#isDarkened()}, without creating the tile. */
+    private boolean isDarkened(Tiles tiles, int x, int y){
+        Block block = tiles.block(tiles.index(x, y));
+        return block.solid && !block.synthetic() && block.fillsTile;
+    }
+
     /**
      * 'Prepares' a tile array by:<br>
      * - setting up multiblocks<br>
      * - updating occlusion<br>
      * Usually used before placing structures on a tile array.
      */
-    public void prepareTiles(Tile[][] tiles){
+    public void prepareTiles(Tiles tiles){
 
         //find multiblocks
         IntArray multiblocks = new IntArray();
 
-        for(int x = 0; x < tiles.length; x++){
-            for(int y = 0; y < tiles[0].length; y++){
-                Tile tile = tiles[x][y];
-
-                if(tile.block().isMultiblock()){
-                    multiblocks.add(tile.pos());
-                }
+        for(int i = 0; i < tiles.width * tiles.height; i++){
+            if(tiles.block(i).isMultiblock()){
+                multiblocks.add(Pos.get(i % tiles.width, i / tiles.width));
             }
         }
 
@@ -381,8 +387,8 @@ public class World{
             int x = Pos.x(pos);
             int y = Pos.y(pos);
 
-            Block result = tiles[x][y].block();
-            Team team = tiles[x][y].getTeam();
+            Block result = tiles.getn(x, y).block();
+            Team team = tiles.getn(x, y).getTeam();
 
             int offsetx = -(result.size - 1) / 2;
             int offsety = -(result.size - 1) / 2;
@@ -409,7 +415,12 @@ public class World{
     private class Context implements WorldContext{
         @Override
         public Tile tile(int x, int y){
-            return tiles[x][y];
+            return tiles.getn(x, y);
+        }
+
+        @Override
+        public Tiles tiles(){
+            return tiles;
         }
 
         @Override
@@ -418,8 +429,8 @@ public class World{
         }
 
         @Override
-        public Tile create(int x, int y, int floorID, int overlayID, int wallID){
-            return (tiles[x][y] = new Tile(x, y, floorID, overlayID, wallID));
+        public void create(int x, int y, int floorID, int overlayID, int wallID){
+            tiles.create(x, y, floorID, overlayID, wallID);
         }
 
         @Override
@@ -450,25 +461,29 @@ public class World{
         public void end(){
             Array<GenerateFilter> filters = map.filters();
             if(!filters.isEmpty()){
-                //input for filter queries
-                GenerateInput input = new GenerateInput();
+                FilterPipeline pipeline = new FilterPipeline(width(), height());
+                pipeline.replaceSynthetic = false;
+
+                for(int x = 0; x < width(); x++){
+                    for(int y = 0; y < height(); y++){
+                        int index = tiles.index(x, y);
+                        pipeline.set(x, y, tiles.floor(index), tiles.block(index), tiles.overlay(index));
+                    }
+                }
 
-                for(GenerateFilter filter : filters){
-                    input.begin(filter, width(), height(), (x, y) -> tiles[x][y]);
+                //actually apply the filters
+                pipeline.apply(filters);
 
-                    //actually apply the filter
-                    for(int x = 0; x < width(); x++){
-                        for(int y = 0; y < height(); y++){
-                            Tile tile = rawTile(x, y);
-                            input.apply(x, y, tile.floor(), tile.block(), tile.overlay());
-                            filter.apply(input);
+                for(int x = 0; x < width(); x++){
+                    for(int y = 0; y < height(); y++){
+                        int index = tiles.index(x, y);
+                        Block block = pipeline.block(x, y);
 
-                            tile.setFloor((Floor)input.floor);
-                            tile.setOverlay(input.ore);
+                        tiles.setFloor(index, (Floor)pipeline.floor(x, y));
+                        tiles.setOverlay(index, pipeline.overlay(x, y));
 
-                            if(!tile.block().synthetic() && !input.block.synthetic()){
-                                tile.setBlock(input.block);
-                            }
+                        if(!tiles.block(index).synthetic() && !block.synthetic()){
+                            tiles.setBlock(index, block);
                         }
                     }
                 }
@@ -1,12 +1,12 @@
 package mindustry.editor;
 
-import mindustry.content.Blocks;
 import mindustry.core.GameState.State;
 import mindustry.editor.DrawOperation.OpType;
 import mindustry.game.Team;
 import mindustry.gen.TileOp;
 import mindustry.world.Block;
 import mindustry.world.Tile;
+import mindustry.world.Tiles;
 import mindustry.world.blocks.*;
 import mindustry.world.modules.*;
 
@@ -16,8 +16,8 @@ import static mindustry.Vars.ui;
 //TODO somehow remove or replace this class with a more flexible solution
 public class EditorTile extends Tile{
 
-    public EditorTile(int x, int y, int floor, int overlay, int wall){
-        super(x, y, floor, overlay, wall);
+    public EditorTile(Tiles tiles, int x, int y){
+        super(tiles, x, y);
     }
 
     @Override
@@ -29,15 +29,15 @@ public class EditorTile extends Tile{
 
         if(type instanceof OverlayFloor){
             //don't place on liquids
-            if(!floor.isLiquid){
+            if(!floor().isLiquid){
                 setOverlayID(type.id);
             }
             return;
         }
 
-        if(floor == type && overlayID() == 0) return;
+        if(floorID() == type.id && overlayID() == 0) return;
         if(overlayID() != 0) op(OpType.overlay, overlayID());
-        if(floor != type) op(OpType.floor, floor.id);
+        if(floorID() != type.id) op(OpType.floor, floorID());
         super.setFloor(type);
     }
 
@@ -48,10 +48,10 @@ public class EditorTile extends Tile{
             return;
         }
 
-        if(block == type) return;
-        op(OpType.block, block.id);
-        if(rotation != 0) op(OpType.rotation, rotation);
-        if(team != 0) op(OpType.team, team);
+        if(blockID() == type.id) return;
+        op(OpType.block, blockID());
+        if(rotation() != 0) op(OpType.rotation, rotation());
+        if(getTeamID() != 0) op(OpType.team, getTeamID());
         super.setBlock(type);
     }
 
@@ -103,9 +103,9 @@ public class EditorTile extends Tile{
             return;
         }
 
-        if(floor.isLiquid) return;
+        if(floor().isLiquid) return;
         if(overlayID() == overlay) return;
-        op(OpType.overlay, this.overlay.id);
+        op(OpType.overlay, overlayID());
         super.setOverlayID(overlay);
     }
 
@@ -128,14 +128,6 @@ public class EditorTile extends Tile{
 
         entity = null;
 
-        if(block == null){
-            block = Blocks.air;
-        }
-
-        if(floor == null){
-            floor = (Floor)Blocks.air;
-        }
-
         Block block = block();
 
         if(block.hasEntity()){
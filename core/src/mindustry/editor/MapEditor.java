@@ -70,13 +70,13 @@ public class MapEditor{
 
     //adds missing blockparts
     public void checkLinkedTiles(){
-        Tile[][] tiles = world.getTiles();
+        Tiles tiles = world.getTiles();
 
         //clear block parts first
         for(int x = 0; x < width(); x++){
             for(int y = 0; y < height(); y++){
-                if(tiles[x][y].block() instanceof BlockPart){
-                    tiles[x][y].setBlock(Blocks.air);
+                if(tiles.getn(x, y).block() instanceof BlockPart){
+                    tiles.getn(x, y).setBlock(Blocks.air);
                 }
             }
         }
@@ -84,8 +84,8 @@ public class MapEditor{
         //set up missing blockparts
         for(int x = 0; x < width(); x++){
             for(int y = 0; y < height(); y++){
-                if(tiles[x][y].block().isMultiblock()){
-                    tiles[x][y].set(tiles[x][y].block(), tiles[x][y].getTeam());
+                if(tiles.getn(x, y).block().isMultiblock()){
+                    tiles.getn(x, y).set(tiles.getn(x, y).block(), tiles.getn(x, y).getTeam());
                 }
             }
         }
@@ -97,17 +97,27 @@ public class MapEditor{
         loading = false;
     }
 
-    /** Creates a 2-D array of EditorTiles with stone as the floor block. */
+    /** Creates a tile array of EditorTiles with stone as the floor block. */
     private void createTiles(int width, int height){
-        Tile[][] tiles = world.createTiles(width, height);
+        Tiles tiles = world.createTiles(editorTiles(width, height));
 
         for(int x = 0; x < width; x++){
             for(int y = 0; y < height; y++){
-                tiles[x][y] = new EditorTile(x, y, Blocks.stone.id, (short)0, (short)0);
+                tiles.create(x, y, Blocks.stone.id, (short)0, (short)0);
             }
         }
     }
 
+    /** @return an empty tile array that creates EditorTiles. */
+    private static Tiles editorTiles(int width, int height){
+        return new Tiles(width, height){
+            @Override
+            protected Tile newTile(int x, int y){
+                return new EditorTile(this, x, y);
+            }
+        };
+    }
+
     public Map createMap(Fi file){
         return new Map(file, width(), height(), new StringMap(tags), true);
     }
@@ -119,7 +129,7 @@ public class MapEditor{
         tags = new StringMap();
     }
 
-    public Tile[][] tiles(){
+    public Tiles tiles(){
         return world.getTiles();
     }
 
@@ -245,20 +255,18 @@ public class MapEditor{
     public void resize(int width, int height){
         clearOp();
 
-        Tile[][] previous = world.getTiles();
+        Tiles previous = world.getTiles();
         int offsetX = -(width - width()) / 2, offsetY = -(height - height()) / 2;
         loading = true;
 
-        Tile[][] tiles = world.createTiles(width, height);
+        Tiles tiles = world.createTiles(editorTiles(width, height));
         for(int x = 0; x < width; x++){
             for(int y = 0; y < height; y++){
                 int px = offsetX + x, py = offsetY + y;
-                if(Structs.inBounds(px, py, previous.length, previous[0].length)){
-                    tiles[x][y] = previous[px][py];
-                    tiles[x][y].x = (short)x;
-                    tiles[x][y].y = (short)y;
+                if(previous.in(px, py)){
+                    tiles.copy(x, y, previous, px, py);
                 }else{
-                    tiles[x][y] = new EditorTile(x, y, Blocks.stone.id, (short)0, (short)0);
+                    tiles.create(x, y, Blocks.stone.id, (short)0, (short)0);
                 }
             }
         }
@@ -312,14 +320,19 @@ public class MapEditor{
             return world.tile(x, y);
         }
 
+        @Override
+        public Tiles tiles(){
+            return world.getTiles();
+        }
+
         @Override
         public void resize(int width, int height){
-            world.createTiles(width, height);
+            world.createTiles(editorTiles(width, height));
         }
 
         @Override
-        public Tile create(int x, int y, int floorID, int overlayID, int wallID){
-            return (tiles()[x][y] = new EditorTile(x, y, floorID, overlayID, wallID));
+        public void create(int x, int y, int floorID, int overlayID, int wallID){
+            tiles().create(x, y, floorID, overlayID, wallID);
         }
 
         @Override
@@ -17,7 +17,6 @@ import mindustry.gen.*;
 import mindustry.graphics.*;
 import mindustry.io.*;
 import mindustry.maps.filters.*;
-import mindustry.maps.filters.GenerateFilter.*;
 import mindustry.ui.*;
 import mindustry.ui.dialogs.*;
 import mindustry.world.*;
@@ -37,7 +36,6 @@ public class MapGenerateDialog extends FloatingDialog{
 
     private Pixmap pixmap;
     private Texture texture;
-    private GenerateInput input = new GenerateInput();
     private Array<GenerateFilter> filters = new Array<>();
     private int scaling = mobile ? 3 : 1;
     private Table filterTable;
@@ -45,17 +43,9 @@ public class MapGenerateDialog extends FloatingDialog{
     private AsyncExecutor executor = new AsyncExecutor(1);
     private AsyncResult<Void> result;
     private boolean generating;
-    private GenTile returnTile = new GenTile();
 
-    private GenTile[][] buffer1, buffer2;
+    private FilterPipeline buffer;
     private Cons<Array<GenerateFilter>> applier;
-    private CachedTile ctile = new CachedTile(){
-        //nothing.
-        @Override
-        protected void changed(){
-
-        }
-    };
 
     /** @param applied whether or not to use the applied in-game mode. */
     public MapGenerateDialog(MapEditor editor, boolean applied){
@@ -107,43 +97,30 @@ public class MapGenerateDialog extends FloatingDialog{
 
     /** Applies the specified filters to the editor. */
     public void applyToEditor(Array<GenerateFilter> filters){
-        //writeback buffer
-        GenTile[][] writeTiles = new GenTile[editor.width()][editor.height()];
+        FilterPipeline pipeline = new FilterPipeline(editor.width(), editor.height());
 
         for(int x = 0; x < editor.width(); x++){
             for(int y = 0; y < editor.height(); y++){
-                writeTiles[x][y] = new GenTile();
+                pipeline.set(x, y, editor.tile(x, y));
             }
         }
 
-        for(GenerateFilter filter : filters){
-            input.begin(filter, editor.width(), editor.height(), editor::tile);
-            //write to buffer
+        pipeline.apply(filters);
+
+        editor.load(() -> {
+            //read from buffer back into tiles
             for(int x = 0; x < editor.width(); x++){
                 for(int y = 0; y < editor.height(); y++){
                     Tile tile = editor.tile(x, y);
-                    input.apply(x, y, tile.floor(), tile.block(), tile.overlay());
-                    filter.apply(input);
-                    writeTiles[x][y].set(input.floor, input.block, input.ore, tile.getTeam(), tile.rotation());
-                }
-            }
+                    Team team = tile.getTeam();
 
-            editor.load(() -> {
-                //read from buffer back into tiles
-                for(int x = 0; x < editor.width(); x++){
-                    for(int y = 0; y < editor.height(); y++){
-                        Tile tile = editor.tile(x, y);
-                        GenTile write = writeTiles[x][y];
-
-                        tile.rotation(write.rotation);
-                        tile.setFloor((Floor)content.block(write.floor));
-                        tile.setBlock(content.block(write.block));
-                        tile.setTeam(Team.get(write.team));
-                        tile.setOverlay(content.block(write.ore));
-                    }
+                    tile.setFloor((Floor)pipeline.floor(x, y));
+                    tile.setBlock(pipeline.block(x, y));
+                    tile.setTeam(team);
+                    tile.setOverlay(pipeline.overlay(x, y));
                 }
-            });
-        }
+            }
+        });
 
         //reset undo stack as generation... messes things up
         editor.load(editor::checkLinkedTiles);
@@ -197,24 +174,12 @@ public class MapGenerateDialog extends FloatingDialog{
             }).grow().get().setScrollingDisabled(true, false);
         }).grow();
 
-        buffer1 = create();
-        buffer2 = create();
+        buffer = new FilterPipeline(editor.width(), editor.height(), scaling);
 
         update();
         rebuildFilters();
     }
 
-    GenTile[][] create(){
-        GenTile[][] out = new GenTile[editor.width() / scaling][editor.height() / scaling];
-
-        for(int x = 0; x < out.length; x++){
-            for(int y = 0; y < out[0].length; y++){
-                out[x][y] = new GenTile();
-            }
-        }
-        return out;
-    }
-
     void rebuildFilters(){
         int cols = Math.max((int)(Math.max(filterTable.getParent().getWidth(), Core.graphics.getWidth()/2f * 0.9f) / Scl.scl(290f)), 1);
         filterTable.clearChildren();
@@ -314,18 +279,12 @@ public class MapGenerateDialog extends FloatingDialog{
         selection.show();
     }
 
-    GenTile dset(Tile tile){
-        returnTile.set(tile);
-        return returnTile;
-    }
-
     void apply(){
         if(result != null){
             result.get();
         }
 
-        buffer1 = null;
-        buffer2 = null;
+        buffer = null;
         generating = false;
         if(pixmap != null){
             pixmap.dispose();
@@ -350,43 +309,25 @@ public class MapGenerateDialog extends FloatingDialog{
                 generating = true;
 
                 if(!filters.isEmpty()){
-                    //write to buffer1 for reading
+                    //sample the editor tiles into the buffer, then filter them
                     for(int px = 0; px < pixmap.getWidth(); px++){
                         for(int py = 0; py < pixmap.getHeight(); py++){
-                            buffer1[px][py].set(editor.tile(px * scaling, py * scaling));
+                            buffer.set(px, py, editor.tile(px * scaling, py * scaling));
                         }
                     }
-                }
 
-                for(GenerateFilter filter : copy){
-                    input.begin(filter, editor.width(), editor.height(), (x, y) -> buffer1[Mathf.clamp(x / scaling, 0, pixmap.getWidth()-1)][Mathf.clamp(y / scaling, 0, pixmap.getHeight()-1)].tile());
-                    //read from buffer1 and write to buffer2
-                    for(int px = 0; px < pixmap.getWidth(); px++){
-                        for(int py = 0; py < pixmap.getHeight(); py++){
-                            int x = px * scaling, y = py * scaling;
-                            GenTile tile = buffer1[px][py];
-                            input.apply(x, y, content.block(tile.floor), content.block(tile.block), content.block(tile.ore));
-                            filter.apply(input);
-                            buffer2[px][py].set(input.floor, input.block, input.ore, Team.get(tile.team), tile.rotation);
-                        }
-                    }
-                    for(int px = 0; px < pixmap.getWidth(); px++){
-                        for(int py = 0; py < pixmap.getHeight(); py++){
-                            buffer1[px][py].set(buffer2[px][py]);
-                        }
-                    }
+                    buffer.apply(copy);
                 }
 
                 for(int px = 0; px < pixmap.getWidth(); px++){
                     for(int py = 0; py < pixmap.getHeight(); py++){
                         int color;
-                        //get result from buffer1 if there's filters left, otherwise get from editor directly
+                        //get result from the buffer if there's filters left, otherwise get from editor directly
                         if(filters.isEmpty()){
                             Tile tile = editor.tile(px * scaling, py * scaling);
                             color = MapIO.colorFor(tile.floor(), tile.block(), tile.overlay(), Team.derelict);
                         }else{
-                            GenTile tile = buffer1[px][py];
-                            color = MapIO.colorFor(content.block(tile.floor), content.block(tile.block), content.block(tile.ore), Team.derelict);
+                            color = MapIO.colorFor(buffer.floor(px, py), buffer.block(px, py), buffer.overlay(px, py), Team.derelict);
                         }
                         pixmap.draw(px, pixmap.getHeight() - 1 - py, color);
                     }
@@ -406,39 +347,4 @@ public class MapGenerateDialog extends FloatingDialog{
             return null;
         });
     }
-
-    private class GenTile{
-        public byte team, rotation;
-        public short block, floor, ore;
-
-        public void set(Block floor, Block wall, Block ore, Team team, int rotation){
-            this.floor = floor.id;
-            this.block = wall.id;
-            this.ore = ore.id;
-            this.team = (byte) team.id;
-            this.rotation = (byte)rotation;
-        }
-
-        public void set(GenTile other){
-            this.floor = other.floor;
-            this.block = other.block;
-            this.ore = other.ore;
-            this.team = other.team;
-            this.rotation = other.rotation;
-        }
-
-        public GenTile set(Tile other){
-            set(other.floor(), other.block(), other.overlay(), other.getTeam(), other.rotation());
-            return this;
-        }
-
-        Tile tile(){
-            ctile.setFloor((Floor)content.block(floor));
-            ctile.setBlock(content.block(block));
-            ctile.setOverlay(content.block(ore));
-            ctile.rotation(rotation);
-            ctile.setTeam(Team.get(team));
-            return ctile;
-        }
-    }
 }
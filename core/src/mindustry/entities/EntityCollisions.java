@@ -110,16 +110,30 @@ public class EntityCollisions{
     @SuppressWarnings("unchecked")
     public <T extends Entity> void updatePhysics(EntityGroup<T> group){
 
-        QuadTree tree = group.tree();
-        tree.clear();
+        SpatialGrid grid = group.grid();
+        QuadTree tree = grid == null ? group.tree() : null;
+
+        if(grid != null){
+            grid.begin();
+        }else{
+            tree.clear();
+        }
 
         for(Entity entity : group.all()){
             if(entity instanceof SolidTrait){
                 SolidTrait s = (SolidTrait)entity;
                 s.lastPosition().set(s.getX(), s.getY());
-                tree.insert(s);
+                if(grid != null){
+                    grid.insert(s);
+                }else{
+                    tree.insert(s);
+                }
             }
         }
+
+        if(grid != null){
+            grid.end();
+        }
     }
 
     private static boolean solid(int x, int y){
@@ -273,7 +287,7 @@ public class EntityCollisions{
             r2.merge(r1);
 
             arrOut.clear();
-            groupb.tree().getIntersect(arrOut, r2);
+            groupb.intersect(r2, arrOut);
 
             for(SolidTrait sc : arrOut){
                 sc.hitbox(r1);
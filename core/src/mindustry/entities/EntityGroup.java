@@ -5,6 +5,7 @@ import arc.struct.*;
 import arc.func.*;
 import arc.graphics.*;
 import arc.math.geom.*;
+import arc.math.geom.QuadTree.*;
 import mindustry.entities.traits.*;
 
 import java.util.*;
@@ -24,6 +25,7 @@ public class EntityGroup<T extends Entity> implements Iterable<T>{
     private final Rect intersectRect = new Rect();
     private IntMap<T> map;
     private QuadTree tree;
+    private SpatialGrid grid;
     private Cons<T> removeListener;
     private Cons<T> addListener;
 
@@ -84,6 +86,22 @@ public class EntityGroup<T extends Entity> implements Iterable<T>{
         return useTree;
     }
 
+    /**
+     * Makes this group use a uniform grid with the specified cell size instead of a quadtree for spatial queries.
+     * The group must be created with trees enabled.
+     */
+    public EntityGroup<T> useGrid(float cellSize){
+        if(!useTree) throw new RuntimeException("This group does not support spatial queries! Enable quadtrees when creating it.");
+        grid = new SpatialGrid(cellSize);
+        tree = null;
+        return this;
+    }
+
+    /** @return the grid used for spatial queries, or null if this group uses a quadtree. */
+    public SpatialGrid grid(){
+        return grid;
+    }
+
     public void setRemoveListener(Cons<T> removeListener){
         this.removeListener = removeListener;
     }
@@ -162,26 +180,66 @@ public class EntityGroup<T extends Entity> implements Iterable<T>{
     public void intersect(float x, float y, float width, float height, Cons<? super T> out){
         //don't waste time for empty groups
         if(isEmpty()) return;
-        tree().getIntersect(out, x, y, width, height);
+        if(grid != null){
+            grid.intersect(x, y, width, height, out);
+        }else{
+            tree().getIntersect(out, x, y, width, height);
+        }
     }
 
     @SuppressWarnings("unchecked")
     public Array<T> intersect(float x, float y, float width, float height){
         intersectArray.clear();
-        //don't waste time for empty groups
-        if(isEmpty()) return intersectArray;
-        tree().getIntersect(intersectArray, intersectRect.set(x, y, width, height));
+        intersect(intersectRect.set(x, y, width, height), intersectArray);
         return intersectArray;
     }
 
+    /** Adds all entities that intersect this rectangle to the output array. */
+    @SuppressWarnings("unchecked")
+    public void intersect(Rect rect, Array out){
+        //don't waste time for empty groups
+        if(isEmpty()) return;
+        if(grid != null){
+            grid.intersect(rect, out);
+        }else{
+            tree().getIntersect(out, rect);
+        }
+    }
+
+    /**
+     * Adds all entities that intersect this rectangle to the output array, writing hitboxes into the given rectangle.
+     * Unlike the other intersect methods, this does not use any state of the group, so it can be called from multiple threads while the group is not being updated.
+     * Groups that use a quadtree are searched linearly.
+     */
+    @SuppressWarnings("unchecked")
+    public void intersect(float x, float y, float width, float height, Rect hitbox, Array out){
+        if(isEmpty()) return;
+        if(grid != null){
+            grid.intersect(x, y, width, height, hitbox, out);
+        }else{
+            if(!useTree) throw new RuntimeException("This group does not support intersection! Enable quadtrees when creating it.");
+
+            for(int i = 0; i < entityArray.size; i++){
+                T entity = entityArray.get(i);
+                ((QuadTreeObject)entity).hitbox(hitbox);
+                if(hitbox.overlaps(x, y, width, height)){
+                    out.add(entity);
+                }
+            }
+        }
+    }
+
     public QuadTree tree(){
         if(!useTree) throw new RuntimeException("This group does not support quadtrees! Enable quadtrees when creating it.");
+        if(grid != null) throw new RuntimeException("This group uses a grid instead of a quadtree!");
         return tree;
     }
 
-    /** Resizes the internal quadtree, if it is enabled.*/
+    /** Resizes the internal quadtree or grid, if it is enabled.*/
     public void resize(float x, float y, float w, float h){
-        if(useTree){
+        if(grid != null){
+            grid.resize(x, y, w, h);
+        }else if(useTree){
             tree = new QuadTree<>(new Rect(x, y, w, h));
         }
     }
@@ -0,0 +1,190 @@
+package mindustry.entities;
+
+import arc.func.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.math.geom.QuadTree.*;
+import arc.struct.*;
+
+import java.util.*;
+
+/**
+ * A uniform grid used as a broad-phase index for solid entities, as an alternative to a QuadTree.
+ * Each object is stored in the cell that contains the center of its hitbox. Cells are linked lists backed by primitive arrays,
+ * and objects are only re-linked when they move to a different cell.
+ * Updating works in frames: call {@link #begin()}, {@link #insert(QuadTreeObject)} for every present object, then {@link #end()}.
+ */
+@SuppressWarnings("unchecked")
+public class SpatialGrid<T extends QuadTreeObject>{
+    private static final int empty = -1;
+
+    private final float cellSize;
+    private final Rect hitbox = new Rect();
+    /** maps objects to their slot */
+    private final ObjectIntMap<T> slots = new ObjectIntMap<>();
+    /** slots that have been freed and can be reused */
+    private final IntArray freeSlots = new IntArray();
+
+    private float x, y;
+    private int width, height;
+    /** first slot of each cell */
+    private int[] heads = {};
+    /** per-slot data: linked list pointers, cell and the frame the object was last inserted in */
+    private int[] next = new int[16], prev = new int[16], cells = new int[16], stamps = new int[16];
+    private T[] objects = (T[])new QuadTreeObject[16];
+    private int slotCount, stamp;
+    /** largest hitbox size of any object; used to pad queries, since objects are only stored in one cell */
+    private float maxSize, frameMaxSize;
+
+    public SpatialGrid(float cellSize){
+        this.cellSize = cellSize;
+        resize(0, 0, 0, 0);
+    }
+
+    /** Resizes the grid to cover these bounds, removing all objects. Objects outside the bounds are stored in the edge cells. */
+    public void resize(float x, float y, float width, float height){
+        this.x = x;
+        this.y = y;
+        this.width = Math.max(Mathf.ceil(width / cellSize), 1);
+        this.height = Math.max(Mathf.ceil(height / cellSize), 1);
+        this.heads = new int[this.width * this.height];
+        Arrays.fill(heads, empty);
+        Arrays.fill(objects, null);
+        slots.clear();
+        freeSlots.clear();
+        slotCount = 0;
+        maxSize = 0f;
+    }
+
+    /** Begins a new frame of updates. */
+    public void begin(){
+        stamp++;
+        frameMaxSize = 0f;
+    }
+
+    /** Inserts an object or updates its position. Must be called once per frame for every object that is still present. */
+    public void insert(T object){
+        object.hitbox(hitbox);
+        float size = Math.max(hitbox.width, hitbox.height);
+        frameMaxSize = Math.max(frameMaxSize, size);
+        maxSize = Math.max(maxSize, size);
+
+        int cell = cell(hitbox.x + hitbox.width / 2f, hitbox.y + hitbox.height / 2f);
+        int slot = slots.get(object, empty);
+
+        if(slot == empty){
+            slot = freeSlots.size == 0 ? slotCount++ : freeSlots.pop();
+            ensureCapacity(slotCount);
+            objects[slot] = object;
+            slots.put(object, slot);
+            link(slot, cell);
+        }else if(cells[slot] != cell){
+            unlink(slot);
+            link(slot, cell);
+        }
+
+        stamps[slot] = stamp;
+    }
+
+    /** Ends the current frame, removing all objects that were not inserted since {@link #begin()}. */
+    public void end(){
+        for(int slot = 0; slot < slotCount; slot++){
+            if(objects[slot] != null && stamps[slot] != stamp){
+                unlink(slot);
+                slots.remove(objects[slot], empty);
+                objects[slot] = null;
+                freeSlots.add(slot);
+            }
+        }
+        maxSize = frameMaxSize;
+    }
+
+    /** Calls the consumer with every object whose hitbox overlaps this rectangle. */
+    public void intersect(float x, float y, float width, float height, Cons<? super T> out){
+        float pad = maxSize / 2f;
+        int minx = cellX(x - pad), miny = cellY(y - pad), maxx = cellX(x + width + pad), maxy = cellY(y + height + pad);
+
+        for(int cy = miny; cy <= maxy; cy++){
+            for(int cx = minx; cx <= maxx; cx++){
+                for(int slot = heads[cy * this.width + cx]; slot != empty; slot = next[slot]){
+                    T object = objects[slot];
+                    object.hitbox(hitbox);
+                    if(hitbox.overlaps(x, y, width, height)){
+                        out.get(object);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Adds every object whose hitbox overlaps this rectangle to the output array. */
+    public void intersect(Rect rect, Array<? super T> out){
+        intersect(rect.x, rect.y, rect.width, rect.height, hitbox, out);
+    }
+
+    /**
+     * Adds every object whose hitbox overlaps this rectangle to the output array.
+     * Hitboxes are written into the given rectangle, so this does not modify the grid, and can be called from multiple threads while the grid is not being updated.
+     */
+    public void intersect(float x, float y, float width, float height, Rect hitbox, Array<? super T> out){
+        float pad = maxSize / 2f;
+        int minx = cellX(x - pad), miny = cellY(y - pad), maxx = cellX(x + width + pad), maxy = cellY(y + height + pad);
+
+        for(int cy = miny; cy <= maxy; cy++){
+            for(int cx = minx; cx <= maxx; cx++){
+                for(int slot = heads[cy * this.width + cx]; slot != empty; slot = next[slot]){
+                    T object = objects[slot];
+                    object.hitbox(hitbox);
+                    if(hitbox.overlaps(x, y, width, height)){
+                        out.add(object);
+                    }
+                }
+            }
+        }
+    }
+
+    private void link(int slot, int cell){
+        cells[slot] = cell;
+        prev[slot] = empty;
+        next[slot] = heads[cell];
+        if(heads[cell] != empty){
+            prev[heads[cell]] = slot;
+        }
+        heads[cell] = slot;
+    }
+
+    private void unlink(int slot){
+        if(prev[slot] != empty){
+            next[prev[slot]] = next[slot];
+        }else{
+            heads[cells[slot]] = next[slot];
+        }
+
+        if(next[slot] != empty){
+            prev[next[slot]] = prev[slot];
+        }
+    }
+
+    private void ensureCapacity(int size){
+        if(size > objects.length){
+            int capacity = Math.max(size, objects.length * 2);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            cells = Arrays.copyOf(cells, capacity);
+            stamps = Arrays.copyOf(stamps, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+    }
+
+    private int cell(float wx, float wy){
+        return cellY(wy) * width + cellX(wx);
+    }
+
+    private int cellX(float wx){
+        return Mathf.clamp((int)((wx - x) / cellSize), 0, width - 1);
+    }
+
+    private int cellY(float wy){
+        return Mathf.clamp((int)((wy - y) / cellSize), 0, height - 1);
+    }
+}
@@ -0,0 +1,206 @@
+package mindustry.entities;
+
+import arc.*;
+import arc.math.*;
+import arc.struct.*;
+import arc.util.*;
+import mindustry.entities.type.*;
+import mindustry.game.*;
+
+import java.util.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Spatial index of units by team, used for closest-target queries by turrets and units.
+ * Units of each team are bucketed into a grid, which is rebuilt lazily once per frame from the unit and player groups.
+ * Queries take plain flags instead of predicates, so they do not allocate or capture anything.
+ */
+public class TargetIndex{
+    private static final int empty = -1;
+    private static final float cellSize = tilesize * 8f;
+
+    /** all indexed units; cells are linked lists of indices into this array */
+    private Unit[] units = new Unit[64];
+    private int[] next = new int[64];
+    private int count;
+    /** first unit index of each cell, by unsigned team ID; only allocated for teams that have units */
+    private final int[][] heads = new int[Team.all().length][];
+    /** unsigned IDs of teams with units in the grid */
+    private final IntArray activeTeams = new IntArray();
+    private int width, height;
+    private long lastFrame = -1;
+
+    /** distances of the units in the output of {@link #nearestEnemies} */
+    private float[] nearestDst = new float[16];
+
+    /** Rebuilds the index if it has not been rebuilt this frame. */
+    public void update(){
+        if(Core.graphics != null && Core.graphics.getFrameId() == lastFrame) return;
+        rebuild();
+    }
+
+    /** Rebuilds the index from all units and players. */
+    public void rebuild(){
+        lastFrame = Core.graphics == null ? -1 : Core.graphics.getFrameId();
+
+        for(int i = 0; i < activeTeams.size; i++){
+            Arrays.fill(heads[activeTeams.get(i)], empty);
+        }
+        activeTeams.clear();
+        Arrays.fill(units, 0, count, null);
+        count = 0;
+
+        int w = Math.max(Mathf.ceil(world.unitWidth() / cellSize), 1), h = Math.max(Mathf.ceil(world.unitHeight() / cellSize), 1);
+        if(w != width || h != height){
+            width = w;
+            height = h;
+            Arrays.fill(heads, null);
+        }
+
+        Array<BaseUnit> all = unitGroup.all();
+        for(int i = 0; i < all.size; i++){
+            insert(all.get(i));
+        }
+
+        Array<Player> players = playerGroup.all();
+        for(int i = 0; i < players.size; i++){
+            insert(players.get(i));
+        }
+    }
+
+    /**
+     * @param air whether flying units are returned
+     * @param ground whether ground units are returned
+     * @return the closest valid enemy of this team within the range, or null if there is none.
+     */
+    public Unit closestEnemy(Team team, float x, float y, float range, boolean air, boolean ground){
+        update();
+
+        Unit result = null;
+        float closest = range * range;
+
+        for(int t = 0; t < activeTeams.size; t++){
+            if(!team.isEnemy(Team.get(activeTeams.get(t)))) continue;
+
+            Unit unit = closest(activeTeams.get(t), x, y, closest, air, ground, false);
+            if(unit != null){
+                result = unit;
+                closest = Mathf.dst2(x, y, unit.x, unit.y);
+            }
+        }
+
+        return result;
+    }
+
+    /** @return the closest valid unit of this team within the range, or null if there is none. */
+    public Unit closestAlly(Team team, float x, float y, float range, boolean damagedOnly){
+        update();
+
+        return closest(Pack.u(team.id), x, y, range * range, true, true, damagedOnly);
+    }
+
+    /**
+     * Adds the closest valid enemies of this team within the range to the output array, sorted by distance.
+     * @param amount maximum amount of units to return
+     */
+    public void nearestEnemies(Team team, float x, float y, float range, int amount, boolean air, boolean ground, Array<Unit> out){
+        update();
+
+        out.clear();
+        if(nearestDst.length < amount){
+            nearestDst = new float[amount];
+        }
+
+        float range2 = range * range;
+
+        for(int t = 0; t < activeTeams.size; t++){
+            if(!team.isEnemy(Team.get(activeTeams.get(t)))) continue;
+
+            int[] cells = heads[activeTeams.get(t)];
+
+            int minx = cellX(x - range), miny = cellY(y - range), maxx = cellX(x + range), maxy = cellY(y + range);
+            for(int cy = miny; cy <= maxy; cy++){
+                for(int cx = minx; cx <= maxx; cx++){
+                    for(int i = cells[cx + cy * width]; i != empty; i = next[i]){
+                        Unit unit = units[i];
+                        float dst = Mathf.dst2(x, y, unit.x, unit.y);
+                        if(dst >= range2 || !valid(unit, air, ground, false) || (out.size == amount && dst >= nearestDst[amount - 1])) continue;
+
+                        //insert into the sorted output, dropping the furthest unit if it is full
+                        int index = Math.min(out.size, amount - 1);
+                        if(out.size < amount) out.add(unit);
+                        while(index > 0 && nearestDst[index - 1] > dst){
+                            out.set(index, out.get(index - 1));
+                            nearestDst[index] = nearestDst[index - 1];
+                            index--;
+                        }
+                        out.set(index, unit);
+                        nearestDst[index] = dst;
+                    }
+                }
+            }
+        }
+    }
+
+    private Unit closest(int team, float x, float y, float range2, boolean air, boolean ground, boolean damagedOnly){
+        int[] cells = heads[team];
+        if(cells == null) return null;
+
+        float range = (float)Math.sqrt(range2);
+        int minx = cellX(x - range), miny = cellY(y - range), maxx = cellX(x + range), maxy = cellY(y + range);
+        Unit result = null;
+        float closest = range2;
+
+        for(int cy = miny; cy <= maxy; cy++){
+            for(int cx = minx; cx <= maxx; cx++){
+                for(int i = cells[cx + cy * width]; i != empty; i = next[i]){
+                    Unit unit = units[i];
+                    float dst = Mathf.dst2(x, y, unit.x, unit.y);
+                    if(dst < closest && valid(unit, air, ground, damagedOnly)){
+                        result = unit;
+                        closest = dst;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private boolean valid(Unit unit, boolean air, boolean ground, boolean damagedOnly){
+        return unit.isValid() && (unit.isFlying() ? air : ground) && (!damagedOnly || unit.health < unit.maxHealth());
+    }
+
+    private void insert(Unit unit){
+        if(unit.isDead()) return;
+
+        int team = Pack.u(unit.getTeam().id);
+        if(heads[team] == null){
+            heads[team] = new int[width * height];
+            Arrays.fill(heads[team], empty);
+        }
+        if(!activeTeams.contains(team)){
+            activeTeams.add(team);
+        }
+
+        if(count >= units.length){
+            units = Arrays.copyOf(units, count * 2);
+            next = Arrays.copyOf(next, count * 2);
+        }
+
+        int cell = cellX(unit.x) + cellY(unit.y) * width;
+        units[count] = unit;
+        next[count] = heads[team][cell];
+        heads[team][cell] = count;
+        count++;
+    }
+
+    private int cellX(float x){
+        return Mathf.clamp((int)(x / cellSize), 0, width - 1);
+    }
+
+    private int cellY(float y){
+        return Mathf.clamp((int)(y / cellSize), 0, height - 1);
+    }
+}
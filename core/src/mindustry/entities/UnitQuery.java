@@ -0,0 +1,165 @@
+package mindustry.entities;
+
+import arc.func.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import mindustry.entities.type.*;
+import mindustry.game.*;
+import mindustry.world.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Reusable context for unit queries.
+ * Results and temporary data are stored in the query instead of static fields, and queries do not capture anything,
+ * so each thread can run queries on its own instance while the unit and player groups are not being updated.
+ * Arrays returned by a query are reused, and are only valid until the next query on the same instance.
+ */
+public class UnitQuery{
+    private static final ThreadLocal<UnitQuery> local = ThreadLocal.withInitial(UnitQuery::new);
+
+    private final Rect hitbox = new Rect();
+    private final Array<Unit> result = new Array<>(false, 16);
+
+    /** @return the query instance of the current thread. */
+    public static UnitQuery get(){
+        return local.get();
+    }
+
+    /** @return the closest valid enemy of this team within the range that matches the predicate, or null if there is none. */
+    public Unit closestEnemy(Team team, float x, float y, float range, Boolf<Unit> predicate){
+        if(team == Team.derelict) return null;
+
+        Array<Unit> units = nearbyEnemies(team, x - range, y - range, range*2f, range*2f);
+        Unit closest = null;
+        float cdist = range*range;
+
+        for(int i = 0; i < units.size; i++){
+            Unit unit = units.get(i);
+            if(unit.isDead() || !predicate.get(unit)) continue;
+
+            float dst2 = Mathf.dst2(unit.x, unit.y, x, y);
+            if(dst2 < cdist){
+                closest = unit;
+                cdist = dst2;
+            }
+        }
+
+        return closest;
+    }
+
+    /**
+     * @param air whether flying units are returned
+     * @param ground whether ground units are returned
+     * @return the closest valid enemy of this team within the range, or null if there is none.
+     */
+    public Unit closestEnemy(Team team, float x, float y, float range, boolean air, boolean ground){
+        if(team == Team.derelict) return null;
+
+        Array<Unit> units = nearbyEnemies(team, x - range, y - range, range*2f, range*2f);
+        Unit closest = null;
+        float cdist = range*range;
+
+        for(int i = 0; i < units.size; i++){
+            Unit unit = units.get(i);
+            if(!unit.isValid() || !(unit.isFlying() ? air : ground)) continue;
+
+            float dst2 = Mathf.dst2(unit.x, unit.y, x, y);
+            if(dst2 < cdist){
+                closest = unit;
+                cdist = dst2;
+            }
+        }
+
+        return closest;
+    }
+
+    /** @return the closest unit of this team within the range that matches the predicate, or null if there is none. */
+    public Unit closest(Team team, float x, float y, float range, Boolf<Unit> predicate){
+        Array<Unit> units = nearby(team, x, y, range);
+        Unit closest = null;
+        float cdist = 0f;
+
+        for(int i = 0; i < units.size; i++){
+            Unit unit = units.get(i);
+            if(!predicate.get(unit)) continue;
+
+            float dst2 = Mathf.dst2(unit.x, unit.y, x, y);
+            if(closest == null || dst2 < cdist){
+                closest = unit;
+                cdist = dst2;
+            }
+        }
+
+        return closest;
+    }
+
+    /** @return all units in a rectangle. */
+    public Array<Unit> nearby(float x, float y, float width, float height){
+        result.clear();
+        unitGroup.intersect(x, y, width, height, hitbox, result);
+        playerGroup.intersect(x, y, width, height, hitbox, result);
+        return result;
+    }
+
+    /** @return all units of this team in a rectangle. */
+    public Array<Unit> nearby(Team team, float x, float y, float width, float height){
+        nearby(x, y, width, height);
+
+        int size = 0;
+        for(int i = 0; i < result.size; i++){
+            Unit unit = result.get(i);
+            if(unit.getTeam() == team){
+                result.set(size++, unit);
+            }
+        }
+        result.truncate(size);
+        return result;
+    }
+
+    /** @return all units of this team in a circle around this position. */
+    public Array<Unit> nearby(Team team, float x, float y, float radius){
+        nearby(x - radius, y - radius, radius*2f, radius*2f);
+
+        int size = 0;
+        for(int i = 0; i < result.size; i++){
+            Unit unit = result.get(i);
+            if(unit.getTeam() == team && unit.withinDst(x, y, radius)){
+                result.set(size++, unit);
+            }
+        }
+        result.truncate(size);
+        return result;
+    }
+
+    /** @return all units that are enemies of this team in a rectangle. */
+    public Array<Unit> nearbyEnemies(Team team, float x, float y, float width, float height){
+        nearby(x, y, width, height);
+
+        int size = 0;
+        for(int i = 0; i < result.size; i++){
+            Unit unit = result.get(i);
+            if(team.isEnemy(unit.getTeam())){
+                result.set(size++, unit);
+            }
+        }
+        result.truncate(size);
+        return result;
+    }
+
+    /** @return whether there are any ground units on this tile. */
+    public boolean anyEntities(Tile tile){
+        float size = tile.block().size * tilesize;
+        return anyEntities(tile.drawx() - size/2f, tile.drawy() - size/2f, size, size);
+    }
+
+    /** @return whether there are any ground units in this rectangle. */
+    public boolean anyEntities(float x, float y, float width, float height){
+        Array<Unit> units = nearby(x, y, width, height);
+        for(int i = 0; i < units.size; i++){
+            if(!units.get(i).isFlying()) return true;
+        }
+        return false;
+    }
+}
@@ -1,7 +1,6 @@
 package mindustry.entities;
 
 import arc.func.*;
-import arc.math.*;
 import arc.math.geom.*;
 import mindustry.entities.traits.*;
 import mindustry.entities.type.*;
@@ -10,12 +9,13 @@ import mindustry.world.*;
 
 import static mindustry.Vars.*;
 
-/** Utility class for unit and team interactions.*/
+/**
+ * Utility class for unit and team interactions.
+ * Queries that return a result are run on the {@link UnitQuery} of the current thread; use it directly to avoid passing predicates.
+ */
 public class Units{
-    private static Rect hitrect = new Rect();
-    private static Unit result;
-    private static float cdist;
-    private static boolean boolResult;
+    /** Spatial index used for closest-target queries that do not take predicates. */
+    public static final TargetIndex targets = new TargetIndex();
 
     /** @return whether this player can interact with a specific tile. if either of these are null, returns true.*/
     public static boolean canInteract(Player player, Tile tile){
@@ -47,30 +47,16 @@ public class Units{
 
     /** Returns whether there are any entities on this tile. */
     public static boolean anyEntities(Tile tile){
-        float size = tile.block().size * tilesize;
-        return anyEntities(tile.drawx() - size/2f, tile.drawy() - size/2f, size, size);
+        return UnitQuery.get().anyEntities(tile);
     }
 
     public static boolean anyEntities(float x, float y, float width, float height){
-        boolResult = false;
-
-        nearby(x, y, width, height, unit -> {
-            if(boolResult) return;
-            if(!unit.isFlying()){
-                unit.hitbox(hitrect);
-
-                if(hitrect.overlaps(x, y, width, height)){
-                    boolResult = true;
-                }
-            }
-        });
-
-        return boolResult;
+        return UnitQuery.get().anyEntities(x, y, width, height);
     }
 
     /** Returns the neareset damaged tile. */
     public static TileEntity findDamagedTile(Team team, float x, float y){
-        Tile tile = Geometry.findClosest(x, y, indexer.getDamaged(team));
+        Tile tile = indexer.findClosestDamaged(team, x, y);
         return tile == null ? null : tile.entity;
     }
 
@@ -108,42 +94,35 @@ public class Units{
         }
     }
 
-    /** Returns the closest enemy of this team. Filter by predicate. */
-    public static Unit closestEnemy(Team team, float x, float y, float range, Boolf<Unit> predicate){
+    /**
+     * Returns the closest target enemy, using the target index instead of intersecting the unit trees. First, units are checked, then buildings.
+     * @param air whether flying units are targeted
+     * @param ground whether ground units and buildings are targeted
+     */
+    public static TargetTrait closestTarget(Team team, float x, float y, float range, boolean air, boolean ground){
         if(team == Team.derelict) return null;
 
-        result = null;
-        cdist = 0f;
-
-        nearbyEnemies(team, x - range, y - range, range*2f, range*2f, e -> {
-            if(e.isDead() || !predicate.get(e)) return;
+        Unit unit = targets.closestEnemy(team, x, y, range, air, ground);
+        if(unit != null){
+            return unit;
+        }else{
+            return ground ? indexer.findEnemyBuilding(team, x, y, range, true) : null;
+        }
+    }
 
-            float dst2 = Mathf.dst2(e.x, e.y, x, y);
-            if(dst2 < range*range && (result == null || dst2 < cdist)){
-                result = e;
-                cdist = dst2;
-            }
-        });
+    /** Returns the closest damaged ally of this team, using the target index. */
+    public static Unit closestDamaged(Team team, float x, float y, float range){
+        return targets.closestAlly(team, x, y, range, true);
+    }
 
-        return result;
+    /** Returns the closest enemy of this team. Filter by predicate. */
+    public static Unit closestEnemy(Team team, float x, float y, float range, Boolf<Unit> predicate){
+        return UnitQuery.get().closestEnemy(team, x, y, range, predicate);
     }
 
     /** Returns the closest ally of this team. Filter by predicate. */
     public static Unit closest(Team team, float x, float y, float range, Boolf<Unit> predicate){
-        result = null;
-        cdist = 0f;
-
-        nearby(team, x, y, range, e -> {
-            if(!predicate.get(e)) return;
-
-            float dist = Mathf.dst2(e.x, e.y, x, y);
-            if(result == null || dist < cdist){
-                result = e;
-                cdist = dist;
-            }
-        });
-
-        return result;
+        return UnitQuery.get().closest(team, x, y, range, predicate);
     }
 
     /** Iterates over all units in a rectangle. */
@@ -8,6 +8,7 @@ import arc.math.geom.*;
 import arc.util.*;
 import arc.util.ArcAnnotate.*;
 import mindustry.*;
+import mindustry.ai.TargetScheduler.*;
 import mindustry.content.*;
 import mindustry.ctype.ContentType;
 import mindustry.entities.*;
@@ -44,6 +45,7 @@ public abstract class BaseUnit extends Unit implements ShooterTrait{
     protected Interval timer = new Interval(5);
     protected StateMachine state = new StateMachine();
     protected TargetTrait target;
+    protected Ticket targetTicket = new Ticket();
 
     protected int spawner = noSpawner;
 
@@ -153,7 +155,7 @@ public abstract class BaseUnit extends Unit implements ShooterTrait{
     }
 
     public boolean retarget(){
-        return timer.get(timerTarget, 20);
+        return targeting.poll(targetTicket, 20f, target != null);
     }
 
     /** Only runs when the unit has a target. */
@@ -169,24 +171,24 @@ public abstract class BaseUnit extends Unit implements ShooterTrait{
     }
 
     public void targetClosestAllyFlag(BlockFlag flag){
-        Tile target = Geometry.findClosest(x, y, indexer.getAllied(team, flag));
+        Tile target = indexer.findClosestFlag(team, flag, false, x, y);
         if(target != null) this.target = target.entity;
     }
 
     public void targetClosestEnemyFlag(BlockFlag flag){
-        Tile target = Geometry.findClosest(x, y, indexer.getEnemy(team, flag));
+        Tile target = indexer.findClosestFlag(team, flag, true, x, y);
         if(target != null) this.target = target.entity;
     }
 
     public void targetClosest(){
-        TargetTrait newTarget = Units.closestTarget(team, x, y, Math.max(getWeapon().bullet.range(), type.range), u -> type.targetAir || !u.isFlying());
+        TargetTrait newTarget = Units.closestTarget(team, x, y, Math.max(getWeapon().bullet.range(), type.range), type.targetAir, true);
         if(newTarget != null){
             target = newTarget;
         }
     }
 
     public @Nullable Tile getClosest(BlockFlag flag){
-        return Geometry.findClosest(x, y, indexer.getAllied(team, flag));
+        return indexer.findClosestFlag(team, flag, false, x, y);
     }
 
     public @Nullable Tile getClosestSpawner(){
@@ -723,7 +723,7 @@ public class Player extends Unit implements BuilderMinerTrait, ShooterTrait{
                     target = Units.closestTarget(team, x, y, getWeapon().bullet.range(), u -> u.getTeam() != Team.derelict, u -> u.getTeam() != Team.derelict);
 
                     if(mech.canHeal && target == null){
-                        target = Geometry.findClosest(x, y, indexer.getDamaged(Team.sharded));
+                        target = indexer.findClosestDamaged(Team.sharded, x, y);
                         if(target != null && dst(target) > getWeapon().bullet.range()){
                             target = null;
                         }else if(target != null){
@@ -26,7 +26,7 @@ import static mindustry.Vars.*;
 public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
     public static final float timeToSleep = 60f * 1; //1 second to fall asleep
     private static final ObjectSet<Tile> tmpTiles = new ObjectSet<>();
-    /** This value is only used for debugging. */
+    /** Amount of tile entities that are currently sleeping, and thus not in the tile group. */
     public static int sleepingEntities = 0;
 
     public Tile tile;
@@ -104,10 +104,17 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         }
     }
 
-    /** Call when this entity is updating. This wakes it up. */
+    /** Stops updating this entity right away, until it is woken up with {@link #noSleep()}. */
+    public void sleepNow(){
+        sleepTime = timeToSleep;
+        sleep();
+    }
+
+    /** Call when this entity is updating. This wakes it up, unless it was already removed from its tile. */
     public void noSleep(){
         sleepTime = 0f;
-        if(sleeping){
+        //removed entities were already taken out of the sleeping count by Tile#changed
+        if(sleeping && tile.entity == this){
             add();
             sleeping = false;
             sleepingEntities--;
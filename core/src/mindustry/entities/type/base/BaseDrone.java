@@ -1,7 +1,6 @@
 package mindustry.entities.type.base;
 
 import arc.math.Mathf;
-import arc.math.geom.Geometry;
 import mindustry.entities.units.*;
 import mindustry.world.Tile;
 import mindustry.world.meta.BlockFlag;
@@ -19,7 +18,7 @@ public abstract class BaseDrone extends FlyingUnit{
                 state.set(getStartState());
             }else if(!targetHasFlag(BlockFlag.repair)){
                 if(retarget()){
-                    Tile repairPoint = Geometry.findClosest(x, y, indexer.getAllied(team, BlockFlag.repair));
+                    Tile repairPoint = indexer.findClosestFlag(team, BlockFlag.repair, false, x, y);
                     if(repairPoint != null){
                         target = repairPoint;
                     }else{
@@ -52,7 +51,7 @@ public abstract class BaseDrone extends FlyingUnit{
 
     @Override
     public void behavior(){
-        if(health <= maxHealth() * type.retreatPercent && !state.is(retreat) && Geometry.findClosest(x, y, indexer.getAllied(team, BlockFlag.repair)) != null){
+        if(health <= maxHealth() * type.retreatPercent && !state.is(retreat) && indexer.getAllied(team, BlockFlag.repair).size > 0){
             setState(retreat);
         }
     }
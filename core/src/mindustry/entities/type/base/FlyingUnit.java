@@ -103,7 +103,7 @@ public class FlyingUnit extends BaseUnit{
             if(retarget()){
                 target = getSpawner();
 
-                Tile repair = Geometry.findClosest(x, y, indexer.getAllied(team, BlockFlag.repair));
+                Tile repair = indexer.findClosestFlag(team, BlockFlag.repair, false, x, y);
                 if(repair != null && damaged()) FlyingUnit.this.target = repair.entity;
                 if(target == null) target = getClosestCore();
             }
@@ -5,10 +5,12 @@ import arc.assets.*;
 import arc.struct.*;
 import arc.files.*;
 import arc.graphics.*;
+import arc.util.ArcAnnotate.*;
 import arc.util.*;
 import arc.util.async.*;
 import mindustry.*;
 import mindustry.core.GameState.*;
+import mindustry.ctype.*;
 import mindustry.game.EventType.*;
 import mindustry.io.*;
 import mindustry.io.SaveIO.*;
@@ -18,6 +20,7 @@ import mindustry.type.*;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static mindustry.Vars.*;
 
@@ -28,6 +31,8 @@ public class Saves{
     private boolean saving;
     private float time;
     private Fi zoneFile;
+    /** Cache of save meta; created when saves are first loaded. */
+    private SaveIndex index;
 
     private long totalPlaytime;
     private long lastTimestamp;
@@ -48,13 +53,64 @@ public class Saves{
         saves.clear();
         zoneFile = saveDirectory.child("-1.msav");
 
+        if(index == null){
+            index = new SaveIndex(mapPreviewDirectory.child("save-index.dat"));
+        }
+        index.load();
+
+        Array<SaveSlot> slots = new Array<>();
         for(Fi file : saveDirectory.list()){
-            if(!file.name().contains("backup") && SaveIO.isSaveValid(file)){
+            if(!file.name().contains("backup")){
                 SaveSlot slot = new SaveSlot(file);
-                saves.add(slot);
-                slot.meta = SaveIO.getMeta(file);
+                slot.cached = index.get(file);
+                slots.add(slot);
+            }
+        }
+
+        //read the meta tags of saves that are not in the index in parallel, as each one has to be inflated
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Array<ForkJoinTask<?>> tasks = new Array<>();
+        StringMap[] tags = new StringMap[slots.size];
+        for(int i = 0; i < slots.size; i++){
+            SaveSlot slot = slots.get(i);
+            if(slot.cached == null){
+                int position = i;
+                tasks.add(pool.submit(() -> {
+                    try{
+                        tags[position] = SaveIO.getMetaTags(slot.file);
+                    }catch(Throwable e){
+                        Log.err("Invalid save file '{0}': {1}", slot.file.name(), Strings.parseException(e, false));
+                    }
+                }));
             }
         }
+
+        for(ForkJoinTask<?> task : tasks){
+            task.join();
+        }
+
+        ObjectSet<String> paths = new ObjectSet<>();
+        for(int i = 0; i < slots.size; i++){
+            SaveSlot slot = slots.get(i);
+
+            if(slot.cached == null){
+                if(tags[i] == null) continue;
+
+                //rules are parsed here, as JSON can't be read on multiple threads; saves with invalid rules are skipped
+                try{
+                    slot.setMeta(new SaveMeta(tags[i]));
+                }catch(Throwable e){
+                    Log.err("Invalid save file '{0}': {1}", slot.file.name(), Strings.parseException(e, false));
+                    continue;
+                }
+                index.put(slot.file, slot.meta);
+            }
+            paths.add(slot.file.absolutePath());
+            saves.add(slot);
+        }
+
+        index.retain(paths);
+        index.save();
     }
 
     public SaveSlot getCurrent(){
@@ -126,7 +182,7 @@ public class Saves{
         slot.importFile(file);
         slot.setName(file.nameWithoutExtension());
         saves.add(slot);
-        slot.meta = SaveIO.getMeta(slot.file);
+        slot.setMeta(SaveIO.getMeta(slot.file));
         current = slot;
         return slot;
     }
@@ -153,7 +209,9 @@ public class Saves{
         //public final int index;
         public final Fi file;
         boolean requestedPreview;
-        SaveMeta meta;
+        /** cached meta that this save is listed with; meta is only read when it is needed, e.g. for loading */
+        @Nullable SaveIndex.Entry cached;
+        private @Nullable SaveMeta meta;
 
         public SaveSlot(Fi file){
             this.file = file;
@@ -162,7 +220,7 @@ public class Saves{
         public void load() throws SaveException{
             try{
                 SaveIO.load(file);
-                meta = SaveIO.getMeta(file);
+                setMeta(SaveIO.getMeta(file));
                 current = this;
                 totalPlaytime = meta.timePlayed;
                 savePreview();
@@ -177,7 +235,7 @@ public class Saves{
             totalPlaytime = time;
 
             SaveIO.save(file);
-            meta = SaveIO.getMeta(file);
+            setMeta(SaveIO.getMeta(file));
             if(!state.is(State.menu)){
                 current = this;
             }
@@ -186,6 +244,25 @@ public class Saves{
             savePreview();
         }
 
+        /** @return the meta of this save, which is created from its cached tags when first requested. */
+        public SaveMeta meta(){
+            if(meta == null){
+                meta = cached == null ? SaveIO.getMeta(file) : new SaveMeta(cached.tags);
+                cached = null;
+            }
+            return meta;
+        }
+
+        void setMeta(SaveMeta meta){
+            this.meta = meta;
+            this.cached = null;
+        }
+
+        /** @return the meta tags of this save; does not parse rules. */
+        private StringMap tags(){
+            return meta != null || cached == null ? meta().tags : cached.tags;
+        }
+
         private void savePreview(){
             if(Core.assets.isLoaded(loadPreviewFile().path())){
                 Core.assets.unload(loadPreviewFile().path());
@@ -229,19 +306,21 @@ public class Saves{
         }
 
         public String getPlayTime(){
-            return Strings.formatMillis(current == this ? totalPlaytime : meta.timePlayed);
+            return Strings.formatMillis(current == this ? totalPlaytime : tags().getLong("playtime"));
         }
 
         public long getTimestamp(){
-            return meta.timestamp;
+            return tags().getLong("saved");
         }
 
         public String getDate(){
-            return SimpleDateFormat.getDateTimeInstance().format(new Date(meta.timestamp));
+            return SimpleDateFormat.getDateTimeInstance().format(new Date(getTimestamp()));
         }
 
         public Map getMap(){
-            return meta.map;
+            if(meta != null) return meta.map;
+            String name = tags().get("mapname");
+            return maps.all().find(m -> m.name().equals(name));
         }
 
         public void cautiousLoad(Runnable run){
@@ -265,23 +344,27 @@ public class Saves{
         }
 
         public String[] getMods(){
-            return meta.mods;
+            return meta().mods;
         }
 
         public Zone getZone(){
-            return meta == null || meta.rules == null ? null : meta.rules.zone;
+            if(cached != null){
+                return cached.zone == null ? null : content.getByName(ContentType.zone, cached.zone);
+            }
+            if(meta == null) return null;
+            return meta.rules == null ? null : meta.rules.zone;
         }
 
         public Gamemode mode(){
-            return Gamemode.bestFit(meta.rules);
+            return cached != null ? cached.mode : Gamemode.bestFit(meta().rules);
         }
 
         public int getBuild(){
-            return meta.build;
+            return tags().getInt("build");
         }
 
         public int getWave(){
-            return meta.wave;
+            return tags().getInt("wave");
         }
 
         public boolean isAutosave(){
@@ -17,7 +17,6 @@ import mindustry.content.UnitTypes;
 import mindustry.type.UnitType;
 import mindustry.ui.Cicon;
 import mindustry.world.*;
-import mindustry.world.blocks.Floor;
 import mindustry.world.blocks.OreBlock;
 
 import static mindustry.Vars.*;
@@ -44,7 +43,12 @@ public class MenuRenderer implements Disposable{
     }
 
     private void generate(){
-        Tile[][] tiles = world.createTiles(width, height);
+        Tiles tiles = world.createTiles(new Tiles(width, height){
+            @Override
+            protected Tile newTile(int x, int y){
+                return new CachedTile(this, x, y);
+            }
+        });
         Array<Block> ores = content.blocks().select(b -> b instanceof OreBlock);
         shadows = new FrameBuffer(width, height);
         int offset = Mathf.random(100000);
@@ -154,13 +158,7 @@ public class MenuRenderer implements Disposable{
                     }
                 }
 
-                Tile tile;
-                tiles[x][y] = (tile = new CachedTile());
-                tile.x = (short)x;
-                tile.y = (short)y;
-                tile.setFloor((Floor) floor);
-                tile.setBlock(wall);
-                tile.setOverlay(ore);
+                tiles.create(x, y, floor.id, ore.id, wall.id);
             }
         }
     }
@@ -152,7 +152,7 @@ public class MinimapRenderer implements Disposable{
         dy = Mathf.clamp(dy, sz, world.height() - sz);
 
         units.clear();
-        Units.nearby((dx - sz) * tilesize, (dy - sz) * tilesize, sz * 2 * tilesize, sz * 2 * tilesize, units::add);
+        units.addAll(UnitQuery.get().nearby((dx - sz) * tilesize, (dy - sz) * tilesize, sz * 2 * tilesize, sz * 2 * tilesize));
     }
 
     private int colorFor(Tile tile){
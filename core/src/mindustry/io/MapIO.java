@@ -3,10 +3,12 @@ package mindustry.io;
 import arc.struct.*;
 import arc.files.*;
 import arc.graphics.*;
-import arc.graphics.Pixmap.*;
+import arc.util.*;
 import arc.util.io.*;
 import mindustry.content.*;
 import mindustry.core.*;
+import mindustry.ctype.*;
+import mindustry.entities.type.*;
 import mindustry.game.*;
 import mindustry.maps.*;
 import mindustry.world.*;
@@ -14,6 +16,7 @@ import mindustry.world.LegacyColorMapper.*;
 import mindustry.world.blocks.storage.*;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.zip.*;
 
 import static mindustry.Vars.*;
@@ -64,84 +67,160 @@ public class MapIO{
     }
 
     public static Pixmap generatePreview(Map map) throws IOException{
-        map.spawns = 0;
-        map.teams.clear();
+        MapPreview preview = readPreview(map.file);
+        preview.applyTo(map);
+        return preview.toPixmap();
+    }
 
-        try(InputStream is = new InflaterInputStream(map.file.read(bufferSize)); CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
+    /**
+     * Decodes the preview of a map file directly from its tile data, without creating tiles or entities.
+     * Does not use the global content mapper, so this can be called from any thread.
+     */
+    public static MapPreview readPreview(Fi file) throws IOException{
+        try(InputStream is = new InflaterInputStream(file.read(bufferSize)); CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
             SaveIO.readHeader(stream);
             int version = stream.readInt();
             SaveVersion ver = SaveIO.getSaveWriter(version);
+            MappableContent[][][] mapper = {null};
+            MapPreview[] preview = {null};
+
             ver.region("meta", stream, counter, ver::readStringMap);
+            ver.region("content", stream, counter, in -> mapper[0] = ver.readContentMapper(in));
+            ver.region("preview_map", stream, counter, in -> preview[0] = readPreview(in, mapper[0]));
+            return preview[0];
+        }
+    }
 
-            Pixmap floors = new Pixmap(map.width, map.height, Format.RGBA8888);
-            Pixmap walls = new Pixmap(map.width, map.height, Format.RGBA8888);
-            int black = Color.rgba8888(Color.black);
-            int shade = Color.rgba8888(0f, 0f, 0f, 0.5f);
-            CachedTile tile = new CachedTile(){
-                @Override
-                public void setBlock(Block type){
-                    super.setBlock(type);
-                    int c = colorFor(Blocks.air, block(), Blocks.air, getTeam());
-                    if(c != black){
-                        walls.draw(x, floors.getHeight() - 1 - y, c);
-                        floors.draw(x, floors.getHeight() - 1 - y + 1, shade);
-                    }
+    /** Decodes the map region of a save, in the format written by {@link SaveVersion#writeMap(DataOutput)}. */
+    private static MapPreview readPreview(DataInput stream, MappableContent[][] mapper) throws IOException{
+        int width = stream.readUnsignedShort();
+        int height = stream.readUnsignedShort();
+        MapPreview preview = new MapPreview(width, height);
+        int[] pixels = preview.pixels;
+        int black = Color.rgba8888(Color.black);
+
+        //floors and overlays
+        for(int i = 0; i < width * height; i++){
+            int floorID = stream.readShort();
+            int overlayID = stream.readShort();
+            int consecutives = stream.readUnsignedByte();
+            if(block(mapper, floorID) == Blocks.air) floorID = Blocks.stone.id;
+
+            Block overlay = block(mapper, overlayID);
+            int color = overlayID != 0 ? colorFor(Blocks.air, Blocks.air, overlay, Team.derelict) : colorFor(block(mapper, floorID), Blocks.air, Blocks.air, Team.derelict);
+
+            for(int j = i; j <= i + consecutives; j++){
+                pixels[preview.index(j % width, j / width)] = color;
+                if(overlay == Blocks.spawn){
+                    preview.spawns++;
                 }
+            }
 
-                @Override
-                public void setTeam(Team team){
-                    super.setTeam(team);
-                    if(block instanceof CoreBlock){
-                        map.teams.add(team.id);
-                    }
+            i += consecutives;
+        }
+
+        //walls, which shade the floor below them; only the previous row is needed to know which tiles below are walls
+        boolean[] walls = new boolean[width], below = new boolean[width];
+        int row = 0;
+
+        for(int i = 0; i < width * height; i++){
+            Block block = block(mapper, stream.readShort());
+            if(block == null) block = Blocks.air;
+            int consecutives = 0;
+            Team team = Team.derelict;
+
+            if(block.hasEntity()){
+                team = readTeam(stream);
+                if(block instanceof CoreBlock){
+                    preview.teams.add(team.id);
                 }
-            };
-
-            ver.region("content", stream, counter, ver::readContentHeader);
-            ver.region("preview_map", stream, counter, in -> ver.readMap(in, new WorldContext(){
-                @Override public void resize(int width, int height){}
-                @Override public boolean isGenerating(){return false;}
-                @Override public void begin(){}
-                @Override public void end(){}
-
-                @Override
-                public Tile tile(int x, int y){
-                    tile.x = (short)x;
-                    tile.y = (short)y;
-                    return tile;
+            }else{
+                consecutives = stream.readUnsignedByte();
+            }
+
+            int color = colorFor(Blocks.air, block, Blocks.air, team);
+
+            for(int j = i; j <= i + consecutives; j++){
+                int x = j % width, y = j / width;
+
+                if(y != row){
+                    //the current row becomes the row below
+                    boolean[] swap = below;
+                    below = walls;
+                    walls = swap;
+                    Arrays.fill(walls, false);
+                    row = y;
                 }
 
-                @Override
-                public Tile create(int x, int y, int floorID, int overlayID, int wallID){
-                    if(overlayID != 0){
-                        floors.draw(x, floors.getHeight() - 1 - y, colorFor(Blocks.air, Blocks.air, content.block(overlayID), Team.derelict));
-                    }else{
-                        floors.draw(x, floors.getHeight() - 1 - y, colorFor(content.block(floorID), Blocks.air, Blocks.air, Team.derelict));
-                    }
-                    if(content.block(overlayID) == Blocks.spawn){
-                        map.spawns ++;
-                    }
-                    return tile;
+                if(color == black) continue;
+
+                pixels[preview.index(x, y)] = color;
+                walls[x] = true;
+                if(y > 0 && !below[x]){
+                    int index = preview.index(x, y - 1);
+                    pixels[index] = shade(pixels[index]);
                 }
-            }));
+            }
 
-            floors.drawPixmap(walls, 0, 0);
-            walls.dispose();
-            return floors;
-        }finally{
-            content.setTemporaryMapper(null);
+            i += consecutives;
         }
+
+        return preview;
     }
 
-    public static Pixmap generatePreview(Tile[][] tiles){
-        Pixmap pixmap = new Pixmap(tiles.length, tiles[0].length, Format.RGBA8888);
-        for(int x = 0; x < pixmap.getWidth(); x++){
-            for(int y = 0; y < pixmap.getHeight(); y++){
-                Tile tile = tiles[x][y];
-                pixmap.draw(x, pixmap.getHeight() - 1 - y, colorFor(tile.floor(), tile.block(), tile.overlay(), tile.getTeam()));
+    /** Reads the team from the start of a tile entity chunk, then skips the rest of it. See {@link TileEntity#write(DataOutput)}. */
+    private static Team readTeam(DataInput stream) throws IOException{
+        int length = stream.readUnsignedShort();
+        stream.readByte(); //version
+        stream.readShort(); //health
+        byte packedrot = stream.readByte();
+        int read = 4;
+        byte team;
+
+        if(Pack.leftByte(packedrot) == 8){
+            team = stream.readByte();
+            read++;
+        }else{
+            team = Pack.leftByte(packedrot);
+        }
+
+        int skipped = stream.skipBytes(length - read);
+        if(skipped != length - read){
+            throw new IOException("Could not skip tile entity. Expected length: " + (length - read) + "; Actual length: " + skipped);
+        }
+        return Team.get(team);
+    }
+
+    /** Looks up a block like {@link ContentLoader#getByID(ContentType, int)} does with this mapper as the temporary mapper. */
+    private static Block block(MappableContent[][] mapper, int id){
+        MappableContent[] blocks = mapper[ContentType.block.ordinal()];
+        if(blocks != null && blocks.length != 0){
+            if(id < 0) return null;
+            if(id >= blocks.length || blocks[id] == null) return content.blocks().get(0);
+            return (Block)blocks[id];
+        }
+        return id < 0 || id >= content.blocks().size ? null : content.blocks().get(id);
+    }
+
+    /** Blends half-transparent black over this color, like drawing it onto a pixmap. */
+    private static int shade(int color){
+        int r = (color >>> 24) & 0xff, g = (color >>> 16) & 0xff, b = (color >>> 8) & 0xff, a = color & 0xff;
+        r -= r * 127 / 255;
+        g -= g * 127 / 255;
+        b -= b * 127 / 255;
+        a = (int)((1f - (1f - 127 / 255f) * (1f - a / 255f)) * 255);
+        return (r << 24) | (g << 16) | (b << 8) | a;
+    }
+
+    public static Pixmap generatePreview(Tiles tiles){
+        MapPreview preview = new MapPreview(tiles.width, tiles.height);
+        for(int x = 0; x < preview.width; x++){
+            for(int y = 0; y < preview.height; y++){
+                int index = tiles.index(x, y);
+                preview.pixels[preview.index(x, y)] = colorFor(tiles.floor(index), tiles.block(index), tiles.overlay(index), tiles.getTeam(index));
             }
         }
-        return pixmap;
+        return preview.toPixmap();
     }
 
     public static int colorFor(Block floor, Block wall, Block ore, Team team){
@@ -152,12 +231,12 @@ public class MapIO{
     }
 
     /** Reads a pixmap in the 3.5 pixmap format. */
-    public static void readPixmap(Pixmap pixmap, Tile[][] tiles){
+    public static void readPixmap(Pixmap pixmap, Tiles tiles){
         for(int x = 0; x < pixmap.getWidth(); x++){
             for(int y = 0; y < pixmap.getHeight(); y++){
                 int color = pixmap.getPixel(x, pixmap.getHeight() - 1 - y);
                 LegacyBlock block = LegacyColorMapper.get(color);
-                Tile tile = tiles[x][y];
+                Tile tile = tiles.getn(x, y);
 
                 tile.setFloor(block.floor);
                 tile.setBlock(block.wall);
@@ -0,0 +1,142 @@
+package mindustry.io;
+
+import arc.files.*;
+import arc.struct.*;
+import arc.util.ArcAnnotate.*;
+import arc.util.*;
+import mindustry.game.*;
+
+import java.io.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Persistent cache of save meta tags, so that saves which have not changed do not have to be inflated to list them.
+ * The zone and gamemode of each save are cached along with its tags, so that saves can be listed without parsing their rules.
+ * Entries are keyed by absolute path and are only used if the length and modification time of the file still match.
+ */
+public class SaveIndex{
+    private static final int version = 2;
+
+    private final Fi file;
+    private final ObjectMap<String, Entry> entries = new ObjectMap<>();
+    private boolean loaded, modified;
+
+    public SaveIndex(Fi file){
+        this.file = file;
+    }
+
+    /** Reads the index file, if it has not been read yet. An index that can't be read is discarded. */
+    public void load(){
+        if(loaded) return;
+        loaded = true;
+
+        if(!file.exists()) return;
+
+        try(DataInputStream stream = new DataInputStream(new BufferedInputStream(file.read()))){
+            if(stream.readInt() != version) return;
+
+            int amount = stream.readInt();
+            for(int i = 0; i < amount; i++){
+                Entry entry = new Entry();
+                String path = stream.readUTF();
+                entry.length = stream.readLong();
+                entry.lastModified = stream.readLong();
+                entry.zone = stream.readBoolean() ? stream.readUTF() : null;
+                entry.mode = Gamemode.all[stream.readUnsignedByte()];
+
+                int tags = stream.readShort();
+                for(int j = 0; j < tags; j++){
+                    entry.tags.put(stream.readUTF(), readString(stream));
+                }
+
+                entries.put(path, entry);
+            }
+        }catch(Exception e){
+            Log.warn("Failed to read save index: {0}", Strings.parseException(e, false));
+            entries.clear();
+        }
+    }
+
+    /** Writes the index file, if anything has changed since it was last read or written. */
+    public void save(){
+        if(!modified) return;
+        modified = false;
+
+        Fi temp = file.sibling(file.name() + ".tmp");
+        try(DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(temp.write(false)))){
+            stream.writeInt(version);
+            stream.writeInt(entries.size);
+
+            for(ObjectMap.Entry<String, Entry> e : entries){
+                stream.writeUTF(e.key);
+                stream.writeLong(e.value.length);
+                stream.writeLong(e.value.lastModified);
+                stream.writeBoolean(e.value.zone != null);
+                if(e.value.zone != null) stream.writeUTF(e.value.zone);
+                stream.writeByte(e.value.mode.ordinal());
+
+                stream.writeShort(e.value.tags.size);
+                for(ObjectMap.Entry<String, String> tag : e.value.tags){
+                    stream.writeUTF(tag.key);
+                    writeString(stream, tag.value);
+                }
+            }
+        }catch(IOException e){
+            Log.err("Failed to write save index: {0}", Strings.parseException(e, true));
+            return;
+        }
+
+        temp.moveTo(file);
+    }
+
+    /** @return the cached entry of this save, or null if it is not cached or the file has changed. Must not be modified. */
+    public @Nullable Entry get(Fi file){
+        Entry entry = entries.get(file.absolutePath());
+        if(entry == null || entry.length != file.length() || entry.lastModified != file.lastModified()) return null;
+        return entry;
+    }
+
+    /** Caches the meta of this save, replacing any previous entry for the file. */
+    public void put(Fi file, SaveMeta meta){
+        Entry entry = new Entry();
+        entry.length = file.length();
+        entry.lastModified = file.lastModified();
+        entry.zone = meta.rules.zone == null ? null : meta.rules.zone.name;
+        entry.mode = Gamemode.bestFit(meta.rules);
+        entry.tags.putAll(meta.tags);
+
+        entries.put(file.absolutePath(), entry);
+        modified = true;
+    }
+
+    /** Removes entries of files that are not in this set of absolute paths, e.g. deleted saves. */
+    public void retain(ObjectSet<String> paths){
+        Array<String> removed = entries.keys().toArray().select(path -> !paths.contains(path));
+        for(String path : removed){
+            entries.remove(path);
+            modified = true;
+        }
+    }
+
+    /** Writes a string prefixed with its length as an int, as tag values such as rules can be longer than {@link DataOutput#writeUTF(String)} allows. */
+    private static void writeString(DataOutput stream, String string) throws IOException{
+        byte[] bytes = string.getBytes(charset);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    private static String readString(DataInput stream) throws IOException{
+        byte[] bytes = new byte[stream.readInt()];
+        stream.readFully(bytes);
+        return new String(bytes, charset);
+    }
+
+    public static class Entry{
+        long length, lastModified;
+        /** name of the zone of this save, or null if it is not a campaign save */
+        public @Nullable String zone;
+        public Gamemode mode = Gamemode.survival;
+        public final StringMap tags = new StringMap();
+    }
+}
@@ -30,9 +30,13 @@ public abstract class SaveVersion extends SaveFileReader{
     }
 
     public SaveMeta getMeta(DataInput stream) throws IOException{
+        return new SaveMeta(getMetaTags(stream));
+    }
+
+    /** Reads the tags that meta is created from. */
+    public StringMap getMetaTags(DataInput stream) throws IOException{
         stream.readInt(); //length of data, doesn't matter here
-        StringMap map = readStringMap(stream);
-        return new SaveMeta(map.getInt("version"), map.getLong("saved"), map.getLong("playtime"), map.getInt("build"), map.get("mapname"), map.getInt("wave"), JsonIO.read(Rules.class, map.get("rules", "{}")), map);
+        return readStringMap(stream);
     }
 
     @Override
@@ -95,49 +99,23 @@ public abstract class SaveVersion extends SaveFileReader{
     }
 
     public void writeMap(DataOutput stream) throws IOException{
-        //write world size
-        stream.writeShort(world.width());
-        stream.writeShort(world.height());
-
-        //floor + overlay
-        for(int i = 0; i < world.width() * world.height(); i++){
-            Tile tile = world.rawTile(i % world.width(), i / world.width());
-            stream.writeShort(tile.floorID());
-            stream.writeShort(tile.overlayID());
-            int consecutives = 0;
-
-            for(int j = i + 1; j < world.width() * world.height() && consecutives < 255; j++){
-                Tile nextTile = world.rawTile(j % world.width(), j / world.width());
-
-                if(nextTile.floorID() != tile.floorID() || nextTile.overlayID() != tile.overlayID()){
-                    break;
-                }
-
-                consecutives++;
-            }
+        writeFloors(stream);
 
-            stream.writeByte(consecutives);
-            i += consecutives;
-        }
+        Tiles tiles = world.getTiles();
 
         //blocks
         for(int i = 0; i < world.width() * world.height(); i++){
-            Tile tile = world.rawTile(i % world.width(), i / world.width());
-            stream.writeShort(tile.blockID());
+            Tile tile = tiles.cached(i);
+            stream.writeShort(tiles.blockID(i));
 
-            if(tile.entity != null){
-                writeChunk(stream, true, out -> {
-                    out.writeByte(tile.entity.version());
-                    tile.entity.write(out);
-                });
+            if(tile != null && tile.entity != null){
+                writeTileEntity(stream, tile);
             }else{
                 //write consecutive non-entity blocks
                 int consecutives = 0;
 
                 for(int j = i + 1; j < world.width() * world.height() && consecutives < 255; j++){
-                    Tile nextTile = world.rawTile(j % world.width(), j / world.width());
-
-                    if(nextTile.blockID() != tile.blockID()){
+                    if(tiles.blockID(j) != tiles.blockID(i)){
                         break;
                     }
 
@@ -150,58 +128,103 @@ public abstract class SaveVersion extends SaveFileReader{
         }
     }
 
-    public void readMap(DataInput stream, WorldContext context) throws IOException{
-        int width = stream.readUnsignedShort();
-        int height = stream.readUnsignedShort();
+    /**
+     * Writes the tiles of the map without the state of tile entities, which only changes when tiles are changed.
+     * Tile entities are written separately with {@link #writeTileEntities(DataOutput)}, and both are read with {@link #readMap(DataInput, DataInput, WorldContext)}.
+     */
+    public void writeMapTiles(DataOutput stream) throws IOException{
+        writeFloors(stream);
 
-        boolean generating = context.isGenerating();
+        Tiles tiles = world.getTiles();
 
-        if(!generating) context.begin();
-        try{
+        //blocks, with consecutive blocks written once regardless of entities
+        for(int i = 0; i < world.width() * world.height(); i++){
+            stream.writeShort(tiles.blockID(i));
+            int consecutives = 0;
 
-            context.resize(width, height);
+            for(int j = i + 1; j < world.width() * world.height() && consecutives < 255; j++){
+                if(tiles.blockID(j) != tiles.blockID(i)){
+                    break;
+                }
 
-            //read floor and create tiles first
-            for(int i = 0; i < width * height; i++){
-                int x = i % width, y = i / width;
-                short floorid = stream.readShort();
-                short oreid = stream.readShort();
-                int consecutives = stream.readUnsignedByte();
-                if(content.block(floorid) == Blocks.air) floorid = Blocks.stone.id;
+                consecutives++;
+            }
+
+            stream.writeByte(consecutives);
+            i += consecutives;
+        }
+    }
+
+    /** Writes the state of every tile entity, in the order of their tiles. */
+    public void writeTileEntities(DataOutput stream) throws IOException{
+        Tiles tiles = world.getTiles();
+
+        for(int i = 0; i < world.width() * world.height(); i++){
+            Tile tile = tiles.cached(i);
+
+            if(tile != null && tile.entity != null){
+                writeTileEntity(stream, tile);
+            }
+        }
+    }
+
+    private void writeTileEntity(DataOutput stream, Tile tile) throws IOException{
+        writeChunk(stream, true, out -> {
+            out.writeByte(tile.entity.version());
+            tile.entity.write(out);
+        });
+    }
 
-                context.create(x, y, floorid, oreid, (short)0);
+    private void writeFloors(DataOutput stream) throws IOException{
+        //write world size
+        stream.writeShort(world.width());
+        stream.writeShort(world.height());
+
+        Tiles tiles = world.getTiles();
 
-                for(int j = i + 1; j < i + 1 + consecutives; j++){
-                    int newx = j % width, newy = j / width;
-                    context.create(newx, newy, floorid, oreid, (short)0);
+        //floor + overlay
+        for(int i = 0; i < world.width() * world.height(); i++){
+            stream.writeShort(tiles.floorID(i));
+            stream.writeShort(tiles.overlayID(i));
+            int consecutives = 0;
+
+            for(int j = i + 1; j < world.width() * world.height() && consecutives < 255; j++){
+                if(tiles.floorID(j) != tiles.floorID(i) || tiles.overlayID(j) != tiles.overlayID(i)){
+                    break;
                 }
 
-                i += consecutives;
+                consecutives++;
             }
 
+            stream.writeByte(consecutives);
+            i += consecutives;
+        }
+    }
+
+    public void readMap(DataInput stream, WorldContext context) throws IOException{
+        boolean generating = context.isGenerating();
+
+        if(!generating) context.begin();
+        try{
+            int width = stream.readUnsignedShort();
+            int height = stream.readUnsignedShort();
+            readFloors(stream, context, width, height);
+            Tiles tiles = context.tiles();
+
             //read blocks
             for(int i = 0; i < width * height; i++){
-                int x = i % width, y = i / width;
                 Block block = content.block(stream.readShort());
-                Tile tile = context.tile(x, y);
                 if(block == null) block = Blocks.air;
-                tile.setBlock(block);
-
-                if(tile.entity != null){
-                    try{
-                        readChunk(stream, true, in -> {
-                            byte version = in.readByte();
-                            tile.entity.read(in, version);
-                        });
-                    }catch(Exception e){
-                        throw new IOException("Failed to read tile entity of block: " + block, e);
-                    }
+                tiles.setBlock(i, block);
+                Tile tile = tiles.cached(i);
+
+                if(tile != null && tile.entity != null){
+                    readTileEntity(stream, tile);
                 }else{
                     int consecutives = stream.readUnsignedByte();
 
                     for(int j = i + 1; j < i + 1 + consecutives; j++){
-                        int newx = j % width, newy = j / width;
-                        context.tile(newx, newy).setBlock(block);
+                        tiles.setBlock(j, block);
                     }
 
                     i += consecutives;
@@ -212,6 +235,76 @@ public abstract class SaveVersion extends SaveFileReader{
         }
     }
 
+    /** Reads a map written with {@link #writeMapTiles(DataOutput)} and {@link #writeTileEntities(DataOutput)}. */
+    public void readMap(DataInput tiles, DataInput entities, WorldContext context) throws IOException{
+        boolean generating = context.isGenerating();
+
+        if(!generating) context.begin();
+        try{
+            int width = tiles.readUnsignedShort();
+            int height = tiles.readUnsignedShort();
+            readFloors(tiles, context, width, height);
+            Tiles data = context.tiles();
+
+            for(int i = 0; i < width * height; i++){
+                Block block = content.block(tiles.readShort());
+                if(block == null) block = Blocks.air;
+                int consecutives = tiles.readUnsignedByte();
+
+                for(int j = i; j <= i + consecutives; j++){
+                    data.setBlock(j, block);
+                }
+
+                i += consecutives;
+            }
+
+            //entities were written in the order of their tiles
+            for(int i = 0; i < width * height; i++){
+                Tile tile = data.cached(i);
+
+                if(tile != null && tile.entity != null){
+                    readTileEntity(entities, tile);
+                }
+            }
+        }finally{
+            if(!generating) context.end();
+        }
+    }
+
+    private void readTileEntity(DataInput stream, Tile tile) throws IOException{
+        try{
+            readChunk(stream, true, in -> {
+                byte version = in.readByte();
+                tile.entity.read(in, version);
+            });
+        }catch(Exception e){
+            throw new IOException("Failed to read tile entity of block: " + tile.block(), e);
+        }
+    }
+
+    /** Resizes the context and creates its tiles from the floors and overlays in the stream. */
+    private void readFloors(DataInput stream, WorldContext context, int width, int height) throws IOException{
+        context.resize(width, height);
+
+        //read floor and create tiles first
+        for(int i = 0; i < width * height; i++){
+            int x = i % width, y = i / width;
+            short floorid = stream.readShort();
+            short oreid = stream.readShort();
+            int consecutives = stream.readUnsignedByte();
+            if(content.block(floorid) == Blocks.air) floorid = Blocks.stone.id;
+
+            context.create(x, y, floorid, oreid, (short)0);
+
+            for(int j = i + 1; j < i + 1 + consecutives; j++){
+                int newx = j % width, newy = j / width;
+                context.create(newx, newy, floorid, oreid, (short)0);
+            }
+
+            i += consecutives;
+        }
+    }
+
     public void writeEntities(DataOutput stream) throws IOException{
         //write team data with entities.
         Array<TeamData> data = state.teams.getActive();
@@ -283,6 +376,11 @@ public abstract class SaveVersion extends SaveFileReader{
     }
 
     public void readContentHeader(DataInput stream) throws IOException{
+        content.setTemporaryMapper(readContentMapper(stream));
+    }
+
+    /** Reads the content header into a mapper from saved IDs to content, without making it the global mapper. */
+    public MappableContent[][] readContentMapper(DataInput stream) throws IOException{
         byte mapped = stream.readByte();
 
         MappableContent[][] map = new MappableContent[ContentType.values().length][0];
@@ -298,7 +396,7 @@ public abstract class SaveVersion extends SaveFileReader{
             }
         }
 
-        content.setTemporaryMapper(map);
+        return map;
     }
 
     public void writeContentHeader(DataOutput stream) throws IOException{
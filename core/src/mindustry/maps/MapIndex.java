@@ -0,0 +1,167 @@
+package mindustry.maps;
+
+import arc.Files.*;
+import arc.files.*;
+import arc.struct.*;
+import arc.struct.IntSet.*;
+import arc.util.ArcAnnotate.*;
+import arc.util.*;
+import mindustry.core.*;
+
+import java.io.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Persistent cache of map headers, so that map files which have not changed do not have to be inflated on startup.
+ * Entries are keyed by absolute path and are only used if the length and modification time of the file still match.
+ * Files inside the game or inside zipped mods have no reliable modification time, and are never cached.
+ */
+public class MapIndex{
+    private static final int version = 2;
+
+    private final Fi file;
+    private final ObjectMap<String, Entry> entries = new ObjectMap<>();
+    private boolean loaded, modified;
+
+    public MapIndex(Fi file){
+        this.file = file;
+    }
+
+    /** Reads the index file, if it has not been read yet. An index that can't be read is discarded. */
+    public void load(){
+        if(loaded) return;
+        loaded = true;
+
+        if(!file.exists()) return;
+
+        try(DataInputStream stream = new DataInputStream(new BufferedInputStream(file.read()))){
+            if(stream.readInt() != version) return;
+
+            int amount = stream.readInt();
+            for(int i = 0; i < amount; i++){
+                Entry entry = new Entry();
+                String path = stream.readUTF();
+                entry.length = stream.readLong();
+                entry.lastModified = stream.readLong();
+                entry.version = stream.readInt();
+                entry.spawns = stream.readInt();
+
+                int teams = stream.readShort();
+                for(int j = 0; j < teams; j++){
+                    entry.teams.add(stream.readUnsignedByte());
+                }
+
+                int tags = stream.readShort();
+                for(int j = 0; j < tags; j++){
+                    entry.tags.put(stream.readUTF(), readString(stream));
+                }
+
+                entries.put(path, entry);
+            }
+        }catch(Exception e){
+            Log.warn("Failed to read map index: {0}", Strings.parseException(e, false));
+            entries.clear();
+        }
+    }
+
+    /** Writes the index file, if anything has changed since it was last read or written. */
+    public void save(){
+        if(!modified) return;
+        modified = false;
+
+        Fi temp = file.sibling(file.name() + ".tmp");
+        try(DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(temp.write(false)))){
+            stream.writeInt(version);
+            stream.writeInt(entries.size);
+
+            for(ObjectMap.Entry<String, Entry> e : entries){
+                Entry entry = e.value;
+                stream.writeUTF(e.key);
+                stream.writeLong(entry.length);
+                stream.writeLong(entry.lastModified);
+                stream.writeInt(entry.version);
+                stream.writeInt(entry.spawns);
+
+                stream.writeShort(entry.teams.size);
+                IntSetIterator iter = entry.teams.iterator();
+                while(iter.hasNext){
+                    stream.writeByte(iter.next());
+                }
+
+                stream.writeShort(entry.tags.size);
+                for(ObjectMap.Entry<String, String> tag : entry.tags){
+                    stream.writeUTF(tag.key);
+                    writeString(stream, tag.value);
+                }
+            }
+        }catch(IOException e){
+            Log.err("Failed to write map index: {0}", Strings.parseException(e, true));
+            return;
+        }
+
+        temp.moveTo(file);
+    }
+
+    /** @return a map created from the cached header of this file, or null if it is not cached or the file has changed. */
+    public @Nullable Map get(Fi file, boolean custom){
+        if(!cacheable(file)) return null;
+
+        Entry entry = entries.get(file.absolutePath());
+        if(entry == null || entry.length != file.length() || entry.lastModified != file.lastModified()) return null;
+
+        Map map = new Map(file, entry.tags.getInt("width"), entry.tags.getInt("height"), new StringMap(entry.tags), custom, entry.version, Version.build);
+        map.spawns = entry.spawns;
+        map.teams.addAll(entry.teams);
+        return map;
+    }
+
+    /** Caches the header of this map, replacing any previous entry for its file. */
+    public void put(Map map){
+        if(!cacheable(map.file)) return;
+
+        Entry entry = new Entry();
+        entry.length = map.file.length();
+        entry.lastModified = map.file.lastModified();
+        entry.version = map.version;
+        entry.spawns = map.spawns;
+        entry.teams.addAll(map.teams);
+        entry.tags.putAll(map.tags);
+
+        entries.put(map.file.absolutePath(), entry);
+        modified = true;
+    }
+
+    /** Removes entries of files that are not in this set of absolute paths, e.g. deleted maps. */
+    public void retain(ObjectSet<String> paths){
+        Array<String> removed = entries.keys().toArray().select(path -> !paths.contains(path));
+        for(String path : removed){
+            entries.remove(path);
+            modified = true;
+        }
+    }
+
+    public static boolean cacheable(Fi file){
+        return file.type() != FileType.internal && file.type() != FileType.classpath && !(file instanceof ZipFi);
+    }
+
+    /** Writes a string prefixed with its length as an int, as tag values such as rules can be longer than {@link DataOutput#writeUTF(String)} allows. */
+    private static void writeString(DataOutput stream, String string) throws IOException{
+        byte[] bytes = string.getBytes(charset);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    private static String readString(DataInput stream) throws IOException{
+        byte[] bytes = new byte[stream.readInt()];
+        stream.readFully(bytes);
+        return new String(bytes, charset);
+    }
+
+    private static class Entry{
+        long length, lastModified;
+        int version, spawns;
+        IntSet teams = new IntSet();
+        StringMap tags = new StringMap();
+    }
+}
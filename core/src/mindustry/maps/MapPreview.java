@@ -0,0 +1,46 @@
+package mindustry.maps;
+
+import arc.graphics.*;
+import arc.graphics.Pixmap.*;
+import arc.struct.*;
+
+import java.nio.*;
+
+/**
+ * Preview image of a map, stored as RGBA8888 colors with the top row first, like a {@link Pixmap}.
+ * Created without a graphics context, so previews can be generated on any thread; only {@link #toPixmap()} requires natives.
+ */
+public class MapPreview{
+    public final int width, height;
+    public final int[] pixels;
+    /** Number of enemy spawns found while generating the preview. */
+    public int spawns;
+    /** Teams that have cores on the map. */
+    public final IntSet teams = new IntSet();
+
+    public MapPreview(int width, int height){
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    /** @return the index of the pixel of the tile at this position. */
+    public int index(int x, int y){
+        return x + (height - 1 - y) * width;
+    }
+
+    /** Sets the spawns and teams of a map to the ones found in this preview. */
+    public void applyTo(Map map){
+        map.spawns = spawns;
+        map.teams.clear();
+        map.teams.addAll(teams);
+    }
+
+    /** @return a new pixmap with the contents of this preview. */
+    public Pixmap toPixmap(){
+        Pixmap pixmap = new Pixmap(width, height, Format.RGBA8888);
+        //colors are stored as RRGGBBAA, so they are written in big-endian order
+        pixmap.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer().put(pixels);
+        return pixmap;
+    }
+}
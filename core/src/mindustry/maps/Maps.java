@@ -21,14 +21,18 @@ import mindustry.game.*;
 import mindustry.io.*;
 import mindustry.maps.MapPreviewLoader.*;
 import mindustry.maps.filters.*;
+import mindustry.mod.Mods.*;
 import mindustry.world.*;
 import mindustry.world.blocks.storage.*;
 
 import java.io.*;
+import java.util.concurrent.*;
 
 import static mindustry.Vars.*;
 
 public class Maps{
+    /** Maximum amount of previews that are generated or waiting to be uploaded at once, which bounds the memory used by pixmaps. */
+    private static final int maxPreviewJobs = 4;
     /** List of all built-in maps. Filenames only. */
     private static String[] defaultMapNames = {"maze", "fortress", "labyrinth", "islands", "tendrils", "caldera", "wasteland", "shattered", "fork", "triad", "veins", "glacier"};
     /** All maps stored in an ordered array. */
@@ -41,6 +45,12 @@ public class Maps{
 
     private AsyncExecutor executor = new AsyncExecutor(2);
     private ObjectSet<Map> previewList = new ObjectSet<>();
+    /** Maps waiting for their previews to be generated in the background. */
+    private Queue<Map> previewQueue = new Queue<>();
+    /** Amount of previews being generated or waiting to be uploaded. */
+    private int previewJobs;
+    /** Cache of map headers; created when maps are first loaded. */
+    private MapIndex index;
 
     public ShuffleMode getShuffleMode(){
         return shuffleMode;
@@ -117,50 +127,90 @@ public class Maps{
 
     /** Load all maps. Should be called at application start. */
     public void load(){
+        if(index == null){
+            index = new MapIndex(mapPreviewDirectory.child("map-index.dat"));
+        }
+        index.load();
+
+        Array<MapFile> files = new Array<>();
+
         //defaults; must work
-        try{
-            for(String name : defaultMapNames){
-                Fi file = Core.files.internal("maps/" + name + "." + mapExtension);
-                loadMap(file, false);
-            }
-        }catch(IOException e){
-            throw new RuntimeException(e);
+        for(String name : defaultMapNames){
+            files.add(new MapFile(Core.files.internal("maps/" + name + "." + mapExtension), false, false, null));
         }
 
         //custom
         for(Fi file : customMapDirectory.list()){
-            try{
-                if(file.extension().equalsIgnoreCase(mapExtension)){
-                    loadMap(file, true);
-                }
-            }catch(Exception e){
-                Log.err("Failed to load custom map file '{0}'!", file);
-                Log.err(e);
+            if(file.extension().equalsIgnoreCase(mapExtension)){
+                files.add(new MapFile(file, true, false, null));
             }
         }
 
         //workshop
         for(Fi file : platform.getWorkshopContent(Map.class)){
-            try{
-                Map map = loadMap(file, false);
-                map.workshop = true;
-                map.tags.put("steamid", file.parent().name());
-            }catch(Exception e){
-                Log.err("Failed to load workshop map file '{0}'!", file);
-                Log.err(e);
-            }
+            files.add(new MapFile(file, false, true, null));
         }
 
         //mod
-        mods.listFiles("maps", (mod, file) -> {
-            try{
-                Map map = loadMap(file, false);
-                map.mod = mod;
-            }catch(Exception e){
-                Log.err("Failed to load mod map file '{0}'!", file);
-                Log.err(e);
+        mods.listFiles("maps", (mod, file) -> files.add(new MapFile(file, false, false, mod)));
+
+        //read headers of files that are not in the index in parallel, as each one has to be inflated
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Array<ForkJoinTask<?>> tasks = new Array<>();
+        for(MapFile file : files){
+            file.map = index.get(file.file, file.custom);
+            if(file.map == null){
+                tasks.add(pool.submit(() -> {
+                    try{
+                        file.map = MapIO.createMap(file.file, file.custom);
+                    }catch(Throwable e){
+                        file.error = e;
+                    }
+                }));
+            }else{
+                file.cached = true;
             }
-        });
+        }
+
+        for(ForkJoinTask<?> task : tasks){
+            task.join();
+        }
+
+        ObjectSet<String> paths = new ObjectSet<>();
+        for(MapFile file : files){
+            Map map = file.map;
+
+            if(file.error == null && map.name() == null){
+                file.error = new IOException("Map name cannot be empty! File: " + file.file);
+            }
+
+            if(file.error != null){
+                if(!file.custom && !file.workshop && file.mod == null){
+                    throw new RuntimeException(file.error);
+                }
+
+                Log.err("Failed to load {0} map file '{1}'!", file.custom ? "custom" : file.workshop ? "workshop" : "mod", file.file);
+                Log.err(file.error);
+                continue;
+            }
+
+            paths.add(file.file.absolutePath());
+            if(!file.cached){
+                index.put(map);
+            }
+
+            if(file.workshop){
+                map.workshop = true;
+                map.tags.put("steamid", file.file.parent().name());
+            }
+            map.mod = file.mod;
+            maps.add(map);
+        }
+
+        maps.sort();
+
+        index.retain(paths);
+        index.save();
     }
 
     public void reload(){
@@ -210,17 +260,15 @@ public class Maps{
                 map.teams.clear();
                 map.spawns = 0;
 
-                for(int x = 0; x < map.width; x++){
-                    for(int y = 0; y < map.height; y++){
-                        Tile tile = world.getTiles()[x][y];
+                Tiles tiles = world.getTiles();
 
-                        if(tile.block() instanceof CoreBlock){
-                            map.teams.add(tile.getTeamID());
-                        }
+                for(int i = 0; i < map.width * map.height; i++){
+                    if(tiles.block(i) instanceof CoreBlock){
+                        map.teams.add(tiles.teamID(i));
+                    }
 
-                        if(tile.overlay() == Blocks.spawn){
-                            map.spawns ++;
-                        }
+                    if(tiles.overlay(i) == Blocks.spawn){
+                        map.spawns ++;
                     }
                 }
 
@@ -234,6 +282,8 @@ public class Maps{
 
                 map.texture = new Texture(pix);
             }
+            index.put(map);
+            index.save();
             maps.add(map);
             maps.sort();
 
@@ -265,6 +315,8 @@ public class Maps{
         if(error[0] != null){
             throw new IOException(error[0]);
         }
+
+        index.save();
     }
 
     /** Attempts to run the following code;
@@ -393,12 +445,57 @@ public class Maps{
     private void createAllPreviews(){
         Core.app.post(() -> {
             for(Map map : previewList){
-                createNewPreview(map, e -> Core.app.post(() -> map.texture = Core.assets.get("sprites/error.png")));
+                previewQueue.addLast(map);
             }
             previewList.clear();
+            startPreviews();
         });
     }
 
+    /** Starts generating queued previews in the background, up to the maximum amount at once. Must be called on the main thread. */
+    private void startPreviews(){
+        while(previewJobs < maxPreviewJobs && previewQueue.size > 0){
+            Map map = previewQueue.removeFirst();
+            previewJobs++;
+
+            executor.submit(() -> {
+                try{
+                    MapPreview preview = MapIO.readPreview(map.file);
+                    Pixmap pix = preview.toPixmap();
+                    map.previewFile().writePNG(pix);
+                    writeCache(map.cacheFile(), preview.spawns, preview.teams);
+
+                    //textures can only be created on the main thread
+                    Core.app.post(() -> {
+                        preview.applyTo(map);
+                        map.texture = new Texture(pix);
+                        pix.dispose();
+                        index.put(map);
+                        finishPreview();
+                    });
+                }catch(Throwable e){
+                    Log.err("Failed to generate preview of map '{0}'!", map.file);
+                    Log.err(e);
+                    Core.app.post(() -> {
+                        map.texture = Core.assets.get("sprites/error.png");
+                        finishPreview();
+                    });
+                }
+                return null;
+            });
+        }
+    }
+
+    private void finishPreview(){
+        previewJobs--;
+        startPreviews();
+
+        if(previewJobs == 0){
+            //previews count the spawns and teams of maps
+            index.save();
+        }
+    }
+
     public void queueNewPreview(Map map){
         Core.app.post(() -> previewList.add(map));
     }
@@ -406,8 +503,9 @@ public class Maps{
     private void createNewPreview(Map map, Cons<Exception> failed){
         try{
             //if it's here, then the preview failed to load or doesn't exist, make it
-            //this has to be done synchronously!
+            //this is done synchronously, so that failures can be reported to the caller
             Pixmap pix = MapIO.generatePreview(map);
+            index.put(map);
             map.texture = new Texture(pix);
             executor.submit(() -> {
                 try{
@@ -424,11 +522,15 @@ public class Maps{
     }
 
     private void writeCache(Map map) throws IOException{
-        try(DataOutputStream stream = new DataOutputStream(map.cacheFile().write(false, Streams.DEFAULT_BUFFER_SIZE))){
+        writeCache(map.cacheFile(), map.spawns, map.teams);
+    }
+
+    private void writeCache(Fi file, int spawns, IntSet teams) throws IOException{
+        try(DataOutputStream stream = new DataOutputStream(file.write(false, Streams.DEFAULT_BUFFER_SIZE))){
             stream.write(0);
-            stream.writeInt(map.spawns);
-            stream.write(map.teams.size);
-            IntSetIterator iter = map.teams.iterator();
+            stream.writeInt(spawns);
+            stream.write(teams.size);
+            IntSetIterator iter = teams.iterator();
             while(iter.hasNext){
                 stream.write(iter.next());
             }
@@ -463,11 +565,29 @@ public class Maps{
             throw new IOException("Map name cannot be empty! File: " + file);
         }
 
+        index.put(map);
         maps.add(map);
         maps.sort();
         return map;
     }
 
+    /** A map file found while loading, and the map read from it. */
+    private static class MapFile{
+        final Fi file;
+        final boolean custom, workshop;
+        final @Nullable LoadedMod mod;
+        @Nullable Map map;
+        @Nullable Throwable error;
+        boolean cached;
+
+        MapFile(Fi file, boolean custom, boolean workshop, @Nullable LoadedMod mod){
+            this.file = file;
+            this.custom = custom;
+            this.workshop = workshop;
+            this.mod = mod;
+        }
+    }
+
     public interface MapProvider{
         @Nullable Map next(@Nullable Map previous);
     }
@@ -32,9 +32,9 @@ public class BlendFilter extends GenerateFilter{
         for(int x = -rad; x <= rad; x++){
             for(int y = -rad; y <= rad; y++){
                 if(Mathf.dst2(x, y) > rad*rad) continue;
-                Tile tile = in.tile(in.x + x, in.y + y);
+                int wx = in.x + x, wy = in.y + y;
 
-                if(tile.floor() == block || tile.block() == block || tile.overlay() == block){
+                if(in.floor(wx, wy) == block || in.block(wx, wy) == block || in.overlay(wx, wy) == block){
                     found = true;
                     break outer;
                 }
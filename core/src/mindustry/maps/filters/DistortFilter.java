@@ -17,10 +17,11 @@ public class DistortFilter extends GenerateFilter{
 
     @Override
     public void apply(){
-        Tile tile = in.tile(in.x + noise(in.x, in.y, scl, mag) - mag / 2f, in.y + noise(in.x, in.y + o, scl, mag) - mag / 2f);
+        float x = in.x + noise(in.x, in.y, scl, mag) - mag / 2f, y = in.y + noise(in.x, in.y + o, scl, mag) - mag / 2f;
+        Block block = in.block(x, y);
 
-        in.floor = tile.floor();
-        if(!tile.block().synthetic() && !in.block.synthetic()) in.block = tile.block();
-        if(!((Floor)in.floor).isLiquid) in.ore = tile.overlay();
+        in.floor = in.floor(x, y);
+        if(!block.synthetic() && !in.block.synthetic()) in.block = block;
+        if(!((Floor)in.floor).isLiquid) in.ore = in.overlay(x, y);
     }
 }
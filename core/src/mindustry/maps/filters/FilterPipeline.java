@@ -0,0 +1,158 @@
+package mindustry.maps.filters;
+
+import arc.math.*;
+import arc.struct.*;
+import mindustry.maps.filters.GenerateFilter.*;
+import mindustry.world.*;
+
+import java.util.concurrent.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * Applies generation filters to tile data stored in primitive arrays.
+ * Each filter reads from one buffer and writes every tile to the other, and the buffers are swapped afterwards,
+ * so filters that read other tiles (see {@link GenerateFilter#buffered}) always see the tiles as they were before the filter was applied.
+ * Since the result does not depend on the order that tiles are filtered in, each filter is applied to bands of rows in parallel,
+ * with the same output as applying it on a single thread.
+ */
+public class FilterPipeline{
+    /** Minimum amount of tiles in a band. Buffers smaller than two bands are filtered on the calling thread. */
+    private static final int minBandTiles = 64 * 64;
+    /** Amount of bands per thread in the pool, so that threads that finish early can take over work. */
+    private static final int bandsPerThread = 4;
+
+    /** size of the filtered area, in tiles */
+    public final int width, height;
+    /** tiles are sampled every scaling tiles of the area; used for previews */
+    public final int scaling;
+    /** size of the buffers; each buffer tile is stored at x + y * columns */
+    public final int columns, rows;
+    /** whether filters may replace or place synthetic blocks */
+    public boolean replaceSynthetic = true;
+    /** whether filters are applied on the fork-join pool; when false, they are applied on the calling thread */
+    public boolean parallel = true;
+
+    /** content IDs of the tiles before the current filter; read by inputs */
+    short[] floors, blocks, overlays;
+    private short[] nextFloors, nextBlocks, nextOverlays;
+
+    private final Array<GenerateInput> inputs = new Array<>();
+    private final Array<ForkJoinTask<?>> tasks = new Array<>();
+
+    public FilterPipeline(int width, int height){
+        this(width, height, 1);
+    }
+
+    public FilterPipeline(int width, int height, int scaling){
+        this.width = width;
+        this.height = height;
+        this.scaling = scaling;
+        this.columns = Math.max(width / scaling, 1);
+        this.rows = Math.max(height / scaling, 1);
+
+        int size = columns * rows;
+        floors = new short[size];
+        blocks = new short[size];
+        overlays = new short[size];
+        nextFloors = new short[size];
+        nextBlocks = new short[size];
+        nextOverlays = new short[size];
+    }
+
+    /** Sets the tile at this buffer position. */
+    public void set(int x, int y, Block floor, Block block, Block overlay){
+        int index = x + y * columns;
+        floors[index] = floor.id;
+        blocks[index] = block.id;
+        overlays[index] = overlay.id;
+    }
+
+    /** Sets the buffer tile at this position to the tile it samples. */
+    public void set(int x, int y, Tile tile){
+        set(x, y, tile.floor(), tile.block(), tile.overlay());
+    }
+
+    public Block floor(int x, int y){
+        return content.blocks().get(floors[x + y * columns]);
+    }
+
+    public Block block(int x, int y){
+        return content.blocks().get(blocks[x + y * columns]);
+    }
+
+    public Block overlay(int x, int y){
+        return content.blocks().get(overlays[x + y * columns]);
+    }
+
+    /** Applies these filters in order. */
+    public void apply(Array<GenerateFilter> filters){
+        for(GenerateFilter filter : filters){
+            apply(filter);
+        }
+    }
+
+    public void apply(GenerateFilter filter){
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int bands = parallel ? Mathf.clamp(columns * rows / minBandTiles, 1, pool.getParallelism() * bandsPerThread) : 1;
+
+        if(bands <= 1){
+            applyRows(filter, input(0), 0, rows);
+        }else{
+            int bandRows = Mathf.ceil(rows / (float)bands);
+
+            tasks.clear();
+            for(int i = 0; i * bandRows < rows; i++){
+                //filters keep the current input and temporary data in fields, so each band needs its own copy
+                GenerateFilter copy = filter.copy();
+                GenerateInput input = input(i);
+                int from = i * bandRows, to = Math.min(from + bandRows, rows);
+
+                tasks.add(pool.submit(() -> applyRows(copy, input, from, to)));
+            }
+
+            for(ForkJoinTask<?> task : tasks){
+                task.join();
+            }
+            tasks.clear();
+        }
+
+        short[] swap = floors;
+        floors = nextFloors;
+        nextFloors = swap;
+
+        swap = blocks;
+        blocks = nextBlocks;
+        nextBlocks = swap;
+
+        swap = overlays;
+        overlays = nextOverlays;
+        nextOverlays = swap;
+    }
+
+    private void applyRows(GenerateFilter filter, GenerateInput input, int from, int to){
+        Array<Block> all = content.blocks();
+        input.begin(filter, this);
+
+        for(int y = from; y < to; y++){
+            for(int x = 0; x < columns; x++){
+                int index = x + y * columns;
+                Block block = all.get(blocks[index]);
+
+                input.apply(x * scaling, y * scaling, all.get(floors[index]), block, all.get(overlays[index]));
+                filter.apply(input);
+
+                nextFloors[index] = input.floor.id;
+                nextBlocks[index] = replaceSynthetic || (!block.synthetic() && !input.block.synthetic()) ? input.block.id : block.id;
+                nextOverlays[index] = input.ore.id;
+            }
+        }
+    }
+
+    private GenerateInput input(int index){
+        while(inputs.size <= index){
+            inputs.add(new GenerateInput());
+        }
+        return inputs.get(index);
+    }
+}
@@ -9,7 +9,9 @@ import mindustry.content.*;
 import mindustry.world.*;
 import mindustry.world.blocks.*;
 
-public abstract class GenerateFilter{
+import static mindustry.Vars.*;
+
+public abstract class GenerateFilter implements Cloneable{
     protected transient float o = (float)(Math.random() * 10000000.0);
     protected transient long seed;
     protected transient GenerateInput in;
@@ -26,6 +28,18 @@ public abstract class GenerateFilter{
         }
     }
 
+    /**
+     * @return a copy of this filter with the same options and seed, which can be applied on another thread.
+     * Filters that keep temporary data in fields must override this to give the copy its own instances.
+     */
+    public GenerateFilter copy(){
+        try{
+            return (GenerateFilter)clone();
+        }catch(CloneNotSupportedException e){
+            throw new RuntimeException(e);
+        }
+    }
+
     /** sets up the options; this is necessary since the constructor can't access subclass variables. */
     protected void options(FilterOption... options){
         this.options = options;
@@ -62,10 +76,12 @@ public abstract class GenerateFilter{
     }
 
     protected float chance(){
-        return Mathf.randomSeed(Pack.longInt(in.x, in.y + (int)seed));
+        //Mathf.randomSeed shares its generator between threads
+        in.random.setSeed(Pack.longInt(in.x, in.y + (int)seed) * 99999);
+        return in.random.nextFloat();
     }
 
-    /** an input for generating at a certain coordinate. should only be instantiated once. */
+    /** an input for generating at a certain coordinate. each thread applying filters should use its own instance. */
     public static class GenerateInput{
 
         /** input size parameters */
@@ -76,7 +92,8 @@ public abstract class GenerateFilter{
 
         Simplex noise = new Simplex();
         RidgedPerlin pnoise = new RidgedPerlin(0, 1);
-        TileProvider buffer;
+        Rand random = new Rand();
+        FilterPipeline buffer;
 
         public void apply(int x, int y, Block floor, Block block, Block ore){
             this.floor = floor;
@@ -86,20 +103,31 @@ public abstract class GenerateFilter{
             this.y = y;
         }
 
-        public void begin(GenerateFilter filter, int width, int height, TileProvider buffer){
+        public void begin(GenerateFilter filter, FilterPipeline buffer){
             this.buffer = buffer;
-            this.width = width;
-            this.height = height;
+            this.width = buffer.width;
+            this.height = buffer.height;
             noise.setSeed(filter.seed);
             pnoise.setSeed((int)(filter.seed + 1));
         }
 
-        Tile tile(float x, float y){
-            return buffer.get(Mathf.clamp((int)x, 0, width - 1), Mathf.clamp((int)y, 0, height - 1));
+        /** @return the floor at this position before the current filter was applied. */
+        Block floor(float x, float y){
+            return content.blocks().get(buffer.floors[index(x, y)]);
+        }
+
+        /** @return the block at this position before the current filter was applied. */
+        Block block(float x, float y){
+            return content.blocks().get(buffer.blocks[index(x, y)]);
+        }
+
+        /** @return the overlay at this position before the current filter was applied. */
+        Block overlay(float x, float y){
+            return content.blocks().get(buffer.overlays[index(x, y)]);
         }
 
-        public interface TileProvider{
-            Tile get(int x, int y);
+        private int index(float x, float y){
+            return Mathf.clamp((int)x / buffer.scaling, 0, buffer.columns - 1) + Mathf.clamp((int)y / buffer.scaling, 0, buffer.rows - 1) * buffer.columns;
         }
     }
 }
@@ -20,6 +20,14 @@ public class MedianFilter extends GenerateFilter{
         );
     }
 
+    @Override
+    public GenerateFilter copy(){
+        MedianFilter copy = (MedianFilter)super.copy();
+        copy.blocks = new IntArray();
+        copy.floors = new IntArray();
+        return copy;
+    }
+
     @Override
     public void apply(){
         int rad = (int)radius;
@@ -29,9 +37,8 @@ public class MedianFilter extends GenerateFilter{
             for(int y = -rad; y <= rad; y++){
                 if(Mathf.dst2(x, y) > rad*rad) continue;
 
-                Tile tile = in.tile(in.x + x, in.y + y);
-                blocks.add(tile.block().id);
-                floors.add(tile.floor().id);
+                blocks.add(in.block(in.x + x, in.y + y).id);
+                floors.add(in.floor(in.x + x, in.y + y).id);
             }
         }
 
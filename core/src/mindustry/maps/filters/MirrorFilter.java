@@ -11,7 +11,7 @@ import mindustry.maps.filters.FilterOption.*;
 import mindustry.world.*;
 
 public class MirrorFilter extends GenerateFilter{
-    private final Vec2 v1 = new Vec2(), v2 = new Vec2(), v3 = new Vec2();
+    private Vec2 v1 = new Vec2(), v2 = new Vec2(), v3 = new Vec2();
 
     int angle = 45;
 
@@ -19,6 +19,15 @@ public class MirrorFilter extends GenerateFilter{
         options(new SliderOption("angle", () -> angle, f -> angle = (int)f, 0, 360, 45));
     }
 
+    @Override
+    public GenerateFilter copy(){
+        MirrorFilter copy = (MirrorFilter)super.copy();
+        copy.v1 = new Vec2();
+        copy.v2 = new Vec2();
+        copy.v3 = new Vec2();
+        return copy;
+    }
+
     @Override
     protected void apply(){
         v1.trnsExact(angle - 90, 1f);
@@ -31,12 +40,12 @@ public class MirrorFilter extends GenerateFilter{
 
         if(!left(v1, v2, v3)){
             mirror(v3, v1.x, v1.y, v2.x, v2.y);
-            Tile tile = in.tile(v3.x, v3.y);
-            in.floor = tile.floor();
-            if(!tile.block().synthetic()){
-                in.block = tile.block();
+            Block block = in.block(v3.x, v3.y);
+            in.floor = in.floor(v3.x, v3.y);
+            if(!block.synthetic()){
+                in.block = block;
             }
-            in.ore = tile.overlay();
+            in.ore = in.overlay(v3.x, v3.y);
         }
     }
 
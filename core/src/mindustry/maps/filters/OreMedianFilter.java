@@ -21,6 +21,13 @@ public class OreMedianFilter extends GenerateFilter{
         );
     }
 
+    @Override
+    public GenerateFilter copy(){
+        OreMedianFilter copy = (OreMedianFilter)super.copy();
+        copy.blocks = new IntArray();
+        return copy;
+    }
+
     @Override
     public void apply(){
         if(in.ore == Blocks.spawn) return;
@@ -28,8 +35,8 @@ public class OreMedianFilter extends GenerateFilter{
         int cx = (in.x / 2) * 2;
         int cy = (in.y / 2) * 2;
         if(in.ore != Blocks.air){
-            if(!(in.tile(cx + 1, cy).overlay() == in.ore && in.tile(cx, cy).overlay() == in.ore && in.tile(cx + 1, cy + 1).overlay() == in.ore && in.tile(cx, cy + 1).overlay() == in.ore &&
-            !in.tile(cx + 1, cy).block().isStatic() && !in.tile(cx, cy).block().isStatic() && !in.tile(cx + 1, cy + 1).block().isStatic() && !in.tile(cx, cy + 1).block().isStatic())){
+            if(!(in.overlay(cx + 1, cy) == in.ore && in.overlay(cx, cy) == in.ore && in.overlay(cx + 1, cy + 1) == in.ore && in.overlay(cx, cy + 1) == in.ore &&
+            !in.block(cx + 1, cy).isStatic() && !in.block(cx, cy).isStatic() && !in.block(cx + 1, cy + 1).isStatic() && !in.block(cx, cy + 1).isStatic())){
                 in.ore = Blocks.air;
             }
         }
@@ -41,9 +48,9 @@ public class OreMedianFilter extends GenerateFilter{
             for(int y = -rad; y <= rad; y++){
                 if(Mathf.dst2(x, y) > rad*rad) continue;
 
-                Tile tile = in.tile(in.x + x, in.y + y);
-                if(tile.overlay() != Blocks.spawn)
-                blocks.add(tile.overlay().id);
+                Block overlay = in.overlay(in.x + x, in.y + y);
+                if(overlay != Blocks.spawn)
+                blocks.add(overlay.id);
             }
         }
 
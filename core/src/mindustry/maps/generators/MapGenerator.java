@@ -61,41 +61,39 @@ public class MapGenerator extends Generator{
     }
 
     @Override
-    public void generate(Tile[][] tiles){
-        for(int x = 0; x < width; x++){
-            for(int y = 0; y < height; y++){
-                tiles[x][y] = new Tile(x, y);
-            }
-        }
-
+    public void generate(Tiles tiles){
+        //loading the map replaces the tile array of the world
         SaveIO.load(map.file);
+        tiles = world.getTiles();
         Array<Point2> players = new Array<>();
         Array<Point2> enemies = new Array<>();
 
         for(int x = 0; x < width; x++){
             for(int y = 0; y < height; y++){
-                if(tiles[x][y].block() instanceof CoreBlock && tiles[x][y].getTeam() == state.rules.defaultTeam){
+                int index = tiles.index(x, y);
+
+                if(tiles.block(index) instanceof CoreBlock && tiles.getTeam(index) == state.rules.defaultTeam){
                     players.add(new Point2(x, y));
-                    tiles[x][y].setBlock(Blocks.air);
+                    tiles.getn(x, y).setBlock(Blocks.air);
                 }
 
-                if(tiles[x][y].overlay() == Blocks.spawn && enemySpawns != -1){
+                if(tiles.overlay(index) == Blocks.spawn && enemySpawns != -1){
                     enemies.add(new Point2(x, y));
-                    tiles[x][y].setOverlay(Blocks.air);
+                    tiles.setOverlay(index, Blocks.air);
                 }
 
-                if(tiles[x][y].block() instanceof BlockPart){
-                    tiles[x][y].setBlock(Blocks.air);
+                if(tiles.block(index) instanceof BlockPart){
+                    tiles.getn(x, y).setBlock(Blocks.air);
                 }
             }
         }
 
         for(int x = 0; x < width; x++){
             for(int y = 0; y < height; y++){
-                Tile tile = tiles[x][y];
+                Tile tile = tiles.getn(x, y);
 
                 for(Decoration decor : decorations){
-                    if(x > 0 && y > 0 && (tiles[x - 1][y].block() == decor.wall || tiles[x][y - 1].block() == decor.wall)){
+                    if(x > 0 && y > 0 && (tiles.block(tiles.index(x - 1, y)) == decor.wall || tiles.block(tiles.index(x, y - 1)) == decor.wall)){
                         continue;
                     }
 
@@ -126,7 +124,7 @@ public class MapGenerator extends Generator{
             enemies.shuffle();
             for(int i = 0; i < enemySpawns; i++){
                 Point2 point = enemies.get(i);
-                tiles[point.x][point.y].setOverlay(Blocks.spawn);
+                tiles.getn(point.x, point.y).setOverlay(Blocks.spawn);
 
                 int rad = 10, frad = 12;
 
@@ -134,8 +132,8 @@ public class MapGenerator extends Generator{
                     for(int y = -rad; y <= rad; y++){
                         int wx = x + point.x, wy = y + point.y;
                         double dst = Mathf.dst(x, y);
-                        if(dst < frad && Structs.inBounds(wx, wy, tiles) && (dst <= rad || Mathf.chance(0.5))){
-                            Tile tile = tiles[wx][wy];
+                        if(dst < frad && tiles.in(wx, wy) && (dst <= rad || Mathf.chance(0.5))){
+                            Tile tile = tiles.getn(wx, wy);
                             if(tile.overlay() != Blocks.spawn){
                                 tile.clearOverlay();
                             }
@@ -4,7 +4,7 @@ import arc.struct.StringMap;
 import mindustry.content.Blocks;
 import mindustry.maps.Map;
 import mindustry.world.Block;
-import mindustry.world.Tile;
+import mindustry.world.Tiles;
 
 import static mindustry.Vars.world;
 
@@ -18,14 +18,14 @@ public abstract class RandomGenerator extends Generator{
     }
 
     @Override
-    public void generate(Tile[][] tiles){
+    public void generate(Tiles tiles){
         for(int x = 0; x < width; x++){
             for(int y = 0; y < height; y++){
                 floor = Blocks.air;
                 block = Blocks.air;
                 ore = Blocks.air;
                 generate(x, y);
-                tiles[x][y] = new Tile(x, y, floor.id, ore.id, block.id);
+                tiles.create(x, y, floor.id, ore.id, block.id);
             }
         }
 
@@ -34,7 +34,7 @@ public abstract class RandomGenerator extends Generator{
         world.setMap(new Map(new StringMap()));
     }
 
-    public abstract void decorate(Tile[][] tiles);
+    public abstract void decorate(Tiles tiles);
 
     /**
      * Sets {@link #floor} and {@link #block} to the correct values as output.
@@ -3,7 +3,7 @@ package mindustry.maps.zonegen;
 import arc.math.Mathf;
 import mindustry.content.Blocks;
 import mindustry.maps.generators.BasicGenerator;
-import mindustry.world.Tile;
+import mindustry.world.Tiles;
 
 import static mindustry.Vars.schematics;
 
@@ -19,7 +19,7 @@ public class DesertWastesGenerator extends BasicGenerator{
     }
 
     @Override
-    public void decorate(Tile[][] tiles){
+    public void decorate(Tiles tiles){
         ores(tiles);
         terrain(tiles, Blocks.sandRocks, 60f, 1.5f, 0.9f);
 
@@ -34,7 +34,7 @@ public class DesertWastesGenerator extends BasicGenerator{
         erase(tiles, endX, endY, 10);
         erase(tiles, spawnX, spawnY, 20);
         distort(tiles, 20f, 4f);
-        inverseFloodFill(tiles, tiles[spawnX][spawnY], Blocks.sandRocks);
+        inverseFloodFill(tiles, tiles.getn(spawnX, spawnY), Blocks.sandRocks);
 
         noise(tiles, Blocks.salt, Blocks.saltRocks, 5, 0.6f, 200f, 0.55f);
         noise(tiles, Blocks.darksand, Blocks.duneRocks, 5, 0.7f, 120f, 0.5f);
@@ -43,7 +43,7 @@ public class DesertWastesGenerator extends BasicGenerator{
         overlay(tiles, Blocks.sand, Blocks.pebbles, 0.15f, 5, 0.8f, 30f, 0.62f);
         //scatter(tiles, Blocks.sandRocks, Blocks.creeptree, 1f);
 
-        tiles[endX][endY].setOverlay(Blocks.spawn);
+        tiles.getn(endX, endY).setOverlay(Blocks.spawn);
         schematics.placeLoadout(loadout, spawnX, spawnY);
     }
 }
@@ -1,6 +1,7 @@
 package mindustry.net;
 
 import arc.*;
+import arc.files.*;
 import arc.func.*;
 import arc.struct.*;
 import arc.util.ArcAnnotate.*;
@@ -13,10 +14,15 @@ import mindustry.entities.type.*;
 import mindustry.type.*;
 import mindustry.world.*;
 
+import java.io.*;
+
 import static mindustry.Vars.headless;
 import static mindustry.game.EventType.*;
 
 public class Administration{
+    private static final Array<PlayerInfo> noPlayers = new Array<>(0);
+    private static final String playerPrefix = "player:", bannedKey = "banned-ips", whitelistKey = "whitelisted", subnetKey = "subnet-bans";
+
     /** All player info. Maps UUIDs to info. This persists throughout restarts. */
     private ObjectMap<String, PlayerInfo> playerInfo = new ObjectMap<>();
     private Array<String> bannedIPs = new Array<>();
@@ -25,7 +31,24 @@ public class Administration{
     private Array<ActionFilter> actionFilters = new Array<>();
     private Array<String> subnetBans = new Array<>();
 
+    /** Maps IPs to all players that have used them. */
+    private final ObjectMap<String, Array<PlayerInfo>> ipIndex = new ObjectMap<>();
+    /** Maps lowercase names to the players that have used them. Entries are never removed, so matches must be checked again. */
+    private final ObjectMap<String, NameEntry> nameIndex = new ObjectMap<>();
+    /** Players that may have been modified since the last save, as they have been handed out. */
+    private final ObjectSet<PlayerInfo> modified = new ObjectSet<>();
+    private boolean listsModified;
+    private final PlayerStore store;
+    /** Compiled IP and subnet bans, rebuilt when a ban is removed. */
+    private final BanMatcher bans = new BanMatcher();
+
     public Administration(){
+        this(Core.settings.getDataDirectory().child("players.dat"));
+    }
+
+    /** @param file file the player database is stored in */
+    public Administration(Fi file){
+        store = new PlayerStore(file);
         load();
 
         //anti-spam
@@ -66,16 +89,21 @@ public class Administration{
 
     public void removeSubnetBan(String ip){
         subnetBans.remove(ip);
+        bans.rebuild(bannedIPs, subnetBans);
+        listsModified = true;
         save();
     }
 
+    /** Bans all IPs in a subnet, either in CIDR notation or as the string that these IPs start with. */
     public void addSubnetBan(String ip){
         subnetBans.add(ip);
+        bans.addSubnet(ip);
+        listsModified = true;
         save();
     }
 
     public boolean isSubnetBanned(String ip){
-        return subnetBans.contains(ip::startsWith);
+        return bans.isSubnetBanned(ip);
     }
 
     /** Adds a chat filter. This will transform the chat messages of every player.
@@ -138,6 +166,8 @@ public class Administration{
         info.timesJoined++;
         if(!info.names.contains(name, false)) info.names.add(name);
         if(!info.ips.contains(ip, false)) info.ips.add(ip);
+        index(info);
+        save();
     }
 
     public boolean banPlayer(String uuid){
@@ -149,16 +179,17 @@ public class Administration{
      * If there are players who at any point had this IP, they will be UUID banned as well.
      */
     public boolean banPlayerIP(String ip){
-        if(bannedIPs.contains(ip, false))
+        if(bans.isBanned(ip))
             return false;
 
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                info.banned = true;
-            }
+        for(PlayerInfo info : playersWithIP(ip)){
+            info.banned = true;
+            modified.add(info);
         }
 
         bannedIPs.add(ip);
+        bans.addIP(ip);
+        listsModified = true;
         save();
         Events.fire(new PlayerIpBanEvent(ip));
         return true;
@@ -181,16 +212,17 @@ public class Administration{
      * This method also unbans any player that was banned and had this IP.
      */
     public boolean unbanPlayerIP(String ip){
-        boolean found = bannedIPs.contains(ip, false);
+        boolean found = bans.isBanned(ip);
 
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                info.banned = false;
-                found = true;
-            }
+        for(PlayerInfo info : playersWithIP(ip)){
+            info.banned = false;
+            modified.add(info);
+            found = true;
         }
 
         bannedIPs.remove(ip, false);
+        bans.rebuild(bannedIPs, subnetBans);
+        listsModified = true;
 
         if(found){
             save();
@@ -211,6 +243,8 @@ public class Administration{
 
         info.banned = false;
         bannedIPs.removeAll(info.ips, false);
+        bans.rebuild(bannedIPs, subnetBans);
+        listsModified = true;
         save();
         Events.fire(new PlayerUnbanEvent(Vars.playerGroup.find(p -> id.equals(p.uuid))));
         return true;
@@ -292,6 +326,7 @@ public class Administration{
         PlayerInfo info = getCreateInfo(id);
         if(whitelist.contains(info.adminUsid + id)) return false;
         whitelist.add(info.adminUsid + id);
+        listsModified = true;
         save();
         return true;
     }
@@ -300,6 +335,7 @@ public class Administration{
         PlayerInfo info = getCreateInfo(id);
         if(whitelist.contains(info.adminUsid + id)){
             whitelist.remove(info.adminUsid + id);
+            listsModified = true;
             save();
             return true;
         }
@@ -307,7 +343,8 @@ public class Administration{
     }
 
     public boolean isIPBanned(String ip){
-        return bannedIPs.contains(ip, false) || (findByIP(ip) != null && findByIP(ip).banned);
+        Array<PlayerInfo> infos = playersWithIP(ip);
+        return bans.isBanned(ip) || (!infos.isEmpty() && infos.first().banned);
     }
 
     public boolean isIDBanned(String uuid){
@@ -323,24 +360,37 @@ public class Administration{
     public ObjectSet<PlayerInfo> findByName(String name){
         ObjectSet<PlayerInfo> result = new ObjectSet<>();
 
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.lastName.equalsIgnoreCase(name) || (info.names.contains(name, false))
-            || Strings.stripColors(Strings.stripColors(info.lastName)).equals(name)
-            || info.ips.contains(name, false) || info.id.equals(name)){
-                result.add(info);
+        NameEntry entry = nameIndex.get(name.toLowerCase());
+        if(entry != null){
+            for(PlayerInfo info : entry.players){
+                if(info.lastName.equalsIgnoreCase(name) || (info.names.contains(name, false))
+                || Strings.stripColors(Strings.stripColors(info.lastName)).equals(name)){
+                    result.add(info);
+                }
             }
         }
 
+        result.addAll(playersWithIP(name));
+        if(playerInfo.containsKey(name)){
+            result.add(playerInfo.get(name));
+        }
+
         return result;
     }
 
     /** Finds by name, using contains(). */
     public ObjectSet<PlayerInfo> searchNames(String name){
         ObjectSet<PlayerInfo> result = new ObjectSet<>();
+        String lower = name.toLowerCase();
 
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.names.contains(n -> n.toLowerCase().contains(name.toLowerCase()) || Strings.stripColors(n).trim().toLowerCase().contains(name))){
-                result.add(info);
+        //search distinct names instead of every player, then check the players that used matching names
+        for(ObjectMap.Entry<String, NameEntry> entry : nameIndex){
+            if(!entry.key.contains(lower) && !entry.value.stripped.contains(name)) continue;
+
+            for(PlayerInfo info : entry.value.players){
+                if(info.names.contains(n -> n.toLowerCase().contains(lower) || Strings.stripColors(n).trim().toLowerCase().contains(name))){
+                    result.add(info);
+                }
             }
         }
 
@@ -348,15 +398,7 @@ public class Administration{
     }
 
     public Array<PlayerInfo> findByIPs(String ip){
-        Array<PlayerInfo> result = new Array<>();
-
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                result.add(info);
-            }
-        }
-
-        return result;
+        return new Array<>(playersWithIP(ip));
     }
 
     public PlayerInfo getInfo(String id){
@@ -364,16 +406,22 @@ public class Administration{
     }
 
     public PlayerInfo getInfoOptional(String id){
-        return playerInfo.get(id);
+        PlayerInfo info = playerInfo.get(id);
+        if(info != null) modified.add(info);
+        return info;
     }
 
     public PlayerInfo findByIP(String ip){
-        for(PlayerInfo info : playerInfo.values()){
-            if(info.ips.contains(ip, false)){
-                return info;
-            }
-        }
-        return null;
+        Array<PlayerInfo> infos = playersWithIP(ip);
+        if(infos.isEmpty()) return null;
+        modified.add(infos.first());
+        return infos.first();
+    }
+
+    /** @return all players that have used this IP. Do not modify the returned array. */
+    private Array<PlayerInfo> playersWithIP(String ip){
+        Array<PlayerInfo> infos = ipIndex.get(ip);
+        return infos == null ? noPlayers : infos;
     }
 
     public Array<PlayerInfo> getWhitelisted(){
@@ -381,30 +429,189 @@ public class Administration{
     }
 
     private PlayerInfo getCreateInfo(String id){
-        if(playerInfo.containsKey(id)){
-            return playerInfo.get(id);
-        }else{
-            PlayerInfo info = new PlayerInfo(id);
+        PlayerInfo info = playerInfo.get(id);
+        if(info == null){
+            info = new PlayerInfo(id);
             playerInfo.put(id, info);
-            save();
-            return info;
         }
+        //callers may modify the info, so it is written on the next save
+        modified.add(info);
+        return info;
     }
 
+    /**
+     * Queues all players that may have been modified since the last save, and the ban lists if they were changed, to be written in the background.
+     * Only these records are serialized, not the whole database.
+     */
     public void save(){
-        Core.settings.putObject("player-info", playerInfo);
-        Core.settings.putObject("banned-ips", bannedIPs);
-        Core.settings.putObject("whitelisted", whitelist);
-        Core.settings.putObject("subnet-bans", subnetBans);
-        Core.settings.save();
+        ObjectMap<String, byte[]> records = new ObjectMap<>();
+
+        for(PlayerInfo info : modified){
+            index(info);
+            records.put(playerPrefix + info.id, writeInfo(info));
+        }
+        modified.clear();
+
+        if(listsModified){
+            records.put(bannedKey, writeStrings(bannedIPs));
+            records.put(whitelistKey, writeStrings(whitelist));
+            records.put(subnetKey, writeStrings(subnetBans));
+            listsModified = false;
+        }
+
+        store.write(records);
+    }
+
+    /** Blocks until all saved changes have been written to disk. */
+    public void flush(){
+        save();
+        store.flush();
     }
 
     @SuppressWarnings("unchecked")
     private void load(){
-        playerInfo = Core.settings.getObject("player-info", ObjectMap.class, ObjectMap::new);
-        bannedIPs = Core.settings.getObject("banned-ips", Array.class, Array::new);
-        whitelist = Core.settings.getObject("whitelisted", Array.class, Array::new);
-        subnetBans = Core.settings.getObject("subnet-bans", Array.class, Array::new);
+        if(store.exists()){
+            for(ObjectMap.Entry<String, byte[]> entry : store.load()){
+                if(entry.key.startsWith(playerPrefix)){
+                    PlayerInfo info = readInfo(entry.value);
+                    playerInfo.put(info.id, info);
+                }else if(entry.key.equals(bannedKey)){
+                    bannedIPs = readStrings(entry.value);
+                }else if(entry.key.equals(whitelistKey)){
+                    whitelist = readStrings(entry.value);
+                }else if(entry.key.equals(subnetKey)){
+                    subnetBans = readStrings(entry.value);
+                }
+            }
+
+            for(PlayerInfo info : playerInfo.values()){
+                index(info);
+            }
+        }else{
+            //move the database out of the settings, where it was serialized every time any setting was saved; this also indexes every player
+            playerInfo = Core.settings.getObject("player-info", ObjectMap.class, ObjectMap::new);
+            bannedIPs = Core.settings.getObject("banned-ips", Array.class, Array::new);
+            whitelist = Core.settings.getObject("whitelisted", Array.class, Array::new);
+            subnetBans = Core.settings.getObject("subnet-bans", Array.class, Array::new);
+
+            for(PlayerInfo info : playerInfo.values()){
+                modified.add(info);
+            }
+            listsModified = true;
+            flush();
+
+            Core.settings.remove("player-info");
+            Core.settings.remove("banned-ips");
+            Core.settings.remove("whitelisted");
+            Core.settings.remove("subnet-bans");
+            Core.settings.save();
+        }
+
+        bans.rebuild(bannedIPs, subnetBans);
+    }
+
+    /** Adds the IPs and names of a player to the indices. */
+    private void index(PlayerInfo info){
+        for(String ip : info.ips){
+            Array<PlayerInfo> infos = ipIndex.get(ip);
+            if(infos == null){
+                ipIndex.put(ip, infos = new Array<>(false, 1));
+            }
+            if(!infos.contains(info, true)){
+                infos.add(info);
+            }
+        }
+
+        for(String name : info.names){
+            indexName(name, info);
+        }
+        indexName(info.lastName, info);
+        indexName(Strings.stripColors(Strings.stripColors(info.lastName)), info);
+    }
+
+    private void indexName(String name, PlayerInfo info){
+        String key = name.toLowerCase();
+        NameEntry entry = nameIndex.get(key);
+        if(entry == null){
+            nameIndex.put(key, entry = new NameEntry(Strings.stripColors(key).trim()));
+        }
+        entry.players.add(info);
+    }
+
+    private static byte[] writeInfo(PlayerInfo info){
+        try{
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(info.id);
+            out.writeUTF(info.lastName);
+            out.writeUTF(info.lastIP);
+            writeStrings(out, info.ips);
+            writeStrings(out, info.names);
+            out.writeBoolean(info.adminUsid != null);
+            if(info.adminUsid != null) out.writeUTF(info.adminUsid);
+            out.writeInt(info.timesKicked);
+            out.writeInt(info.timesJoined);
+            out.writeBoolean(info.banned);
+            out.writeBoolean(info.admin);
+            out.writeLong(info.lastKicked);
+            return bytes.toByteArray();
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static PlayerInfo readInfo(byte[] data){
+        try{
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            PlayerInfo info = new PlayerInfo(in.readUTF());
+            info.lastName = in.readUTF();
+            info.lastIP = in.readUTF();
+            info.ips = readStrings(in);
+            info.names = readStrings(in);
+            info.adminUsid = in.readBoolean() ? in.readUTF() : null;
+            info.timesKicked = in.readInt();
+            info.timesJoined = in.readInt();
+            info.banned = in.readBoolean();
+            info.admin = in.readBoolean();
+            info.lastKicked = in.readLong();
+            return info;
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] writeStrings(Array<String> strings){
+        try{
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeStrings(new DataOutputStream(bytes), strings);
+            return bytes.toByteArray();
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Array<String> readStrings(byte[] data){
+        try{
+            return readStrings(new DataInputStream(new ByteArrayInputStream(data)));
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeStrings(DataOutput out, Array<String> strings) throws IOException{
+        out.writeInt(strings.size);
+        for(String string : strings){
+            out.writeUTF(string);
+        }
+    }
+
+    private static Array<String> readStrings(DataInput in) throws IOException{
+        int size = in.readInt();
+        Array<String> strings = new Array<>(size);
+        for(int i = 0; i < size; i++){
+            strings.add(in.readUTF());
+        }
+        return strings;
     }
 
     /** Server configuration definition. Each config value can be a string, boolean or number. */
@@ -427,6 +634,13 @@ public class Administration{
         socketInputAddress("The bind address for socket input.", "localhost", () -> Events.fire(Trigger.socketConfigChanged)),
         allowCustomClients("Whether custom clients are allowed to connect.", !headless, "allow-custom"),
         whitelist("Whether the whitelist is used.", false),
+        pathfinderThreads("How many threads are used to update pathfinding flow fields of different teams concurrently. Takes effect on the next map load.", 1),
+        clusteredPathfindingArea("Minimum map area in tiles above which pathfinding only computes flow fields inside clusters that units occupy. 0 to disable. Takes effect on the next map load.", 0),
+        interestManagement("Whether entities outside each player's view are synced less often and entities far outside it are not synced at all, reducing bandwidth.", true),
+        deltaSnapshots("Whether entity snapshots only contain what changed since the last state each player received.", true),
+        autosave("Whether the game is periodically saved to rotating autosave files in the save directory.", false),
+        autosaveSpacing("Spacing between autosaves in seconds.", 60 * 5),
+        autosaveAmount("How many autosave files are kept before the oldest one is deleted.", 10),
         motd("The message displayed to people on connection.", "off");
 
         public static final Config[] all = values();
@@ -512,6 +726,16 @@ public class Administration{
         }
     }
 
+    /** Players that have used a name, and the name without colors for searching. */
+    static class NameEntry{
+        final String stripped;
+        final ObjectSet<PlayerInfo> players = new ObjectSet<>();
+
+        NameEntry(String stripped){
+            this.stripped = stripped;
+        }
+    }
+
     /** Handles chat messages from players and changes their contents. */
     public interface ChatFilter{
         /** @return the filtered message; a null string signals that the message should not be sent. */
@@ -357,7 +357,10 @@ public class ArcNetProvider implements NetProvider{
 
         @Override
         public void write(ByteBuffer byteBuffer, Object o){
-            if(o instanceof FrameworkMessage){
+            if(o instanceof EncodedPacket){
+                //already serialized, copy the bytes over
+                byteBuffer.put(((EncodedPacket)o).buffer.duplicate());
+            }else if(o instanceof FrameworkMessage){
                 byteBuffer.put((byte)-2); //code for framework message
                 writeFramework(byteBuffer, (FrameworkMessage)o);
             }else{
@@ -0,0 +1,254 @@
+package mindustry.net;
+
+import arc.struct.*;
+import arc.util.ArcAnnotate.*;
+import arc.util.*;
+
+/**
+ * Matches connecting IPs against IP and subnet bans without searching every ban.
+ * Banned IPs are stored in a hashed set. Subnets are stored in two tries: subnets in CIDR notation (e.g. "10.0.0.0/8" or "2001:db8::/32")
+ * are parsed into a binary trie over address bits, and all other subnets keep their original meaning of IPs starting with a string,
+ * using a trie over characters. Lookups take time proportional to the length of the IP, regardless of the amount of bans.
+ */
+public class BanMatcher{
+    private final ObjectSet<String> ips = new ObjectSet<>();
+    private final CharNode prefixes = new CharNode();
+    private final BitTrie v4 = new BitTrie(), v6 = new BitTrie();
+    /** reused for parsing connecting IPs; only used on the thread that checks bans */
+    private final byte[] address = new byte[16];
+
+    /** Removes all bans, then adds these. */
+    public void rebuild(Array<String> bannedIPs, Array<String> subnets){
+        ips.clear();
+        prefixes.clear();
+        v4.clear();
+        v6.clear();
+
+        for(String ip : bannedIPs){
+            addIP(ip);
+        }
+        for(String subnet : subnets){
+            addSubnet(subnet);
+        }
+    }
+
+    public void addIP(String ip){
+        ips.add(ip);
+    }
+
+    /** Adds a subnet, either in CIDR notation or as the string that banned IPs start with. */
+    public void addSubnet(String subnet){
+        int slash = subnet.indexOf('/');
+        if(slash != -1){
+            byte[] bytes = new byte[16];
+            int length = parse(subnet.substring(0, slash), bytes);
+            String suffix = subnet.substring(slash + 1);
+            int bits = Strings.canParseInt(suffix) ? Strings.parseInt(suffix) : -1;
+
+            if(length != -1 && bits >= 0 && bits <= length * 8){
+                (length == 4 ? v4 : v6).add(bytes, bits);
+                return;
+            }
+        }
+
+        prefixes.add(subnet);
+    }
+
+    public boolean isBanned(String ip){
+        return ips.contains(ip);
+    }
+
+    public boolean isSubnetBanned(String ip){
+        if(prefixes.matches(ip)) return true;
+
+        if(!v4.isEmpty() || !v6.isEmpty()){
+            int length = parse(ip, address);
+            if(length == 4) return v4.matches(address, 4);
+            if(length == 16) return v6.matches(address, 16);
+        }
+        return false;
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 address into bytes.
+     * @return the amount of bytes written, or -1 if this is not a valid address.
+     */
+    static int parse(String ip, byte[] out){
+        //remove IPv6 scope IDs
+        int percent = ip.indexOf('%');
+        if(percent != -1) ip = ip.substring(0, percent);
+
+        return ip.indexOf(':') == -1 ? parseV4(ip, out) : parseV6(ip, out);
+    }
+
+    private static int parseV4(String ip, byte[] out){
+        int part = 0, value = 0, digits = 0;
+
+        for(int i = 0; i <= ip.length(); i++){
+            char c = i == ip.length() ? '.' : ip.charAt(i);
+            if(c == '.'){
+                if(digits == 0 || part >= 4) return -1;
+                out[part++] = (byte)value;
+                value = digits = 0;
+            }else if(c >= '0' && c <= '9' && digits < 3){
+                value = value * 10 + (c - '0');
+                digits++;
+                if(value > 255) return -1;
+            }else{
+                return -1;
+            }
+        }
+
+        return part == 4 ? 4 : -1;
+    }
+
+    private static int parseV6(String ip, byte[] out){
+        int compress = ip.indexOf("::");
+        if(compress != -1 && ip.indexOf("::", compress + 1) != -1) return -1;
+
+        int[] groups = new int[8];
+        if(compress == -1){
+            if(parseGroups(ip, groups) != 8) return -1;
+        }else{
+            int head = parseGroups(ip.substring(0, compress), groups);
+            if(head == -1) return -1;
+            int[] tail = new int[8];
+            int tailCount = parseGroups(ip.substring(compress + 2), tail);
+            if(tailCount == -1 || head + tailCount > 7) return -1;
+
+            //the compressed groups are zero, and the tail is moved to the end
+            System.arraycopy(tail, 0, groups, 8 - tailCount, tailCount);
+        }
+
+        for(int i = 0; i < 8; i++){
+            out[i * 2] = (byte)(groups[i] >> 8);
+            out[i * 2 + 1] = (byte)groups[i];
+        }
+        return 16;
+    }
+
+    /** @return the amount of colon-separated hex groups parsed, or -1 if they are invalid. */
+    private static int parseGroups(String text, int[] out){
+        if(text.isEmpty()) return 0;
+
+        int count = 0, value = 0, digits = 0;
+        for(int i = 0; i <= text.length(); i++){
+            char c = i == text.length() ? ':' : text.charAt(i);
+            if(c == ':'){
+                if(digits == 0 || count >= out.length) return -1;
+                out[count++] = value;
+                value = digits = 0;
+            }else{
+                int digit = Character.digit(c, 16);
+                if(digit == -1 || digits >= 4) return -1;
+                value = value * 16 + digit;
+                digits++;
+            }
+        }
+        return count;
+    }
+
+    /** Trie over characters; a node is terminal if a subnet ends at it. */
+    static class CharNode{
+        char[] chars = {};
+        CharNode[] children = {};
+        boolean terminal;
+
+        void add(String prefix){
+            CharNode node = this;
+            for(int i = 0; i < prefix.length(); i++){
+                node = node.child(prefix.charAt(i), true);
+            }
+            node.terminal = true;
+        }
+
+        boolean matches(String ip){
+            CharNode node = this;
+            for(int i = 0; node != null; i++){
+                if(node.terminal) return true;
+                if(i >= ip.length()) return false;
+                node = node.child(ip.charAt(i), false);
+            }
+            return false;
+        }
+
+        void clear(){
+            chars = new char[0];
+            children = new CharNode[0];
+            terminal = false;
+        }
+
+        @Nullable CharNode child(char c, boolean create){
+            for(int i = 0; i < chars.length; i++){
+                if(chars[i] == c) return children[i];
+            }
+            if(!create) return null;
+
+            int size = chars.length;
+            char[] newChars = new char[size + 1];
+            CharNode[] newChildren = new CharNode[size + 1];
+            System.arraycopy(chars, 0, newChars, 0, size);
+            System.arraycopy(children, 0, newChildren, 0, size);
+            newChars[size] = c;
+            newChildren[size] = new CharNode();
+            chars = newChars;
+            children = newChildren;
+            return newChildren[size];
+        }
+    }
+
+    /** Binary trie over address bits, stored in flat arrays; node 0 is the root. */
+    static class BitTrie{
+        private static final int none = 0;
+
+        IntArray zero = new IntArray(), one = new IntArray();
+        /** 1 if a subnet ends at this node */
+        IntArray terminal = new IntArray();
+
+        BitTrie(){
+            clear();
+        }
+
+        void add(byte[] address, int bits){
+            int node = 0;
+            for(int i = 0; i < bits && terminal.get(node) == 0; i++){
+                IntArray next = bit(address, i) ? one : zero;
+                if(next.get(node) == none){
+                    next.set(node, zero.size);
+                    zero.add(none);
+                    one.add(none);
+                    terminal.add(0);
+                }
+                node = next.get(node);
+            }
+            terminal.set(node, 1);
+        }
+
+        boolean matches(byte[] address, int length){
+            int node = 0;
+            for(int i = 0; i < length * 8; i++){
+                if(terminal.get(node) != 0) return true;
+                node = (bit(address, i) ? one : zero).get(node);
+                if(node == none) return false;
+            }
+            return terminal.get(node) != 0;
+        }
+
+        boolean isEmpty(){
+            return zero.size == 1 && terminal.get(0) == 0;
+        }
+
+        void clear(){
+            zero.clear();
+            one.clear();
+            terminal.clear();
+            zero.add(none);
+            one.add(none);
+            terminal.add(0);
+        }
+
+        private static boolean bit(byte[] address, int index){
+            return (address[index / 8] & (0x80 >> (index % 8))) != 0;
+        }
+    }
+}
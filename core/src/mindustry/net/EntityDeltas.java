@@ -0,0 +1,421 @@
+package mindustry.net;
+
+import arc.struct.*;
+import arc.util.io.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Delta compression of entity snapshots.
+ * Entity sync data is treated as an opaque byte array, since {@link mindustry.entities.traits.SyncTrait#write(DataOutput)} varies per entity.
+ * Each entity state is sent either in full or as a delta against the last state the client has acknowledged,
+ * consisting of a bitmask of changed bytes followed by the changed bytes themselves. Entities that have not changed are not sent at all.
+ * Snapshot packets are numbered; clients acknowledge the packets they have received, and unacknowledged states are never used as baselines,
+ * so packet loss only causes deltas to be taken against older states, or full states to be sent once the baseline is too old.
+ * Clients only keep a few recent states of each entity, so the server never takes deltas against a state that more than
+ * {@link Decoder#historySize} newer states of the entity have been sent after. If a baseline is missing anyway,
+ * the client reports the entity, and the server sends its full state again.
+ * If delta compression is disabled, full states are sent in {@link #unsequenced} packets, which are neither stored nor acknowledged.
+ */
+public class EntityDeltas{
+    /** Maximum age of a baseline, in snapshot packets. Older baselines are not used, and full states are sent instead. */
+    public static final int maxBaselineAge = 1024;
+    /** Amount of packets before the latest one that can be acknowledged at once. */
+    public static final int ackWindow = 256;
+    /** Sequence of packets that only contain full states. The client does not keep or acknowledge their states. */
+    public static final int unsequenced = -1;
+
+    private static final byte modeFull = 0, modeDelta = 1;
+
+    /** Server-side encoder; one per connection. */
+    public static class Encoder{
+        /** States sent in each packet, indexed by sequence. */
+        private final PendingPacket[] pending = new PendingPacket[maxBaselineAge];
+        /** Acknowledged states by entity ID. */
+        private final IntMap<byte[]> baselines = new IntMap<>();
+        /** Last state written for each entity. The client may have it even though its ack never arrived. */
+        private final IntMap<byte[]> lastSent = new IntMap<>();
+        /** Sequence of the packet each baseline was sent in. */
+        private final IntIntMap baselineSequences = new IntIntMap();
+        /** Index of each baseline in the states written for its entity. */
+        private final IntIntMap baselineIndices = new IntIntMap();
+        /** Amount of states written for each entity, used to tell whether the client still has the baseline. */
+        private final IntIntMap written = new IntIntMap();
+        private final IntArray stale = new IntArray();
+        private int sequence;
+
+        public Encoder(){
+            for(int i = 0; i < pending.length; i++){
+                pending[i] = new PendingPacket();
+            }
+        }
+
+        /** Begins a new packet and returns its sequence. */
+        public int begin(){
+            int seq = sequence++;
+            PendingPacket packet = pending[seq % maxBaselineAge];
+            packet.sequence = seq;
+            packet.ids.clear();
+            packet.indices.clear();
+            packet.states.clear();
+
+            //periodically remove baselines that are too old to be used, which also covers entities that have been removed
+            if(seq % maxBaselineAge == 0){
+                stale.clear();
+                for(IntIntMap.Entry entry : baselineSequences.entries()){
+                    if(seq - entry.value > maxBaselineAge){
+                        stale.add(entry.key);
+                    }
+                }
+                for(int i = 0; i < stale.size; i++){
+                    removeBaseline(stale.get(i));
+                }
+            }
+
+            return seq;
+        }
+
+        /**
+         * Writes the state of an entity into the current packet.
+         * @param seq sequence returned by {@link #begin()}, or {@link #unsequenced} if delta is false
+         * @param state serialized entity state; only the first length bytes are used
+         * @param delta whether to use delta compression. If false, the full state is always written, and nothing is kept for later packets.
+         * @return whether anything was written. If false, the entity is unchanged, and its ID need not be sent.
+         */
+        public boolean write(DataOutput out, int seq, int id, byte typeID, byte[] state, int length, boolean delta) throws IOException{
+            if(!delta){
+                writeFull(out, id, typeID, state, length);
+                return true;
+            }
+
+            byte[] baseline = baselines.get(id);
+            int age = baseline == null ? 0 : seq - baselineSequences.get(id, 0);
+            int index = written.get(id, 0);
+
+            //the client has dropped the baseline if too many newer states were sent since
+            if(baseline != null && age <= maxBaselineAge && index - baselineIndices.get(id, 0) <= Decoder.historySize){
+                //a newer state may have been received without its ack arriving, so only skip the entity if the client has this state either way
+                if(equals(baseline, state, length) && equals(lastSent.get(id), state, length)){
+                    return false;
+                }
+
+                out.writeInt(id);
+                out.writeByte(typeID);
+                out.writeByte(modeDelta);
+                out.writeShort(age);
+                out.writeShort(length);
+
+                //bitmask of bytes that differ from the baseline
+                for(int i = 0; i < length; i += 8){
+                    int mask = 0;
+                    for(int j = 0; j < 8 && i + j < length; j++){
+                        if(i + j >= baseline.length || baseline[i + j] != state[i + j]){
+                            mask |= 1 << j;
+                        }
+                    }
+                    out.writeByte(mask);
+                }
+
+                for(int i = 0; i < length; i++){
+                    if(i >= baseline.length || baseline[i] != state[i]){
+                        out.writeByte(state[i]);
+                    }
+                }
+            }else{
+                writeFull(out, id, typeID, state, length);
+            }
+
+            byte[] copy = Arrays.copyOf(state, length);
+            PendingPacket packet = pending[seq % maxBaselineAge];
+            packet.ids.add(id);
+            packet.indices.add(index);
+            packet.states.add(copy);
+            lastSent.put(id, copy);
+            written.put(id, index + 1);
+            return true;
+        }
+
+        /**
+         * Handles an acknowledgement from the client, promoting the states in acknowledged packets to baselines.
+         * @param latest sequence of the latest received packet
+         * @param received bitmask of received packets before the latest one; bit i is set if packet latest - 1 - i was received
+         */
+        public void ack(int latest, byte[] received){
+            //discard acks for packets that were never sent
+            if(latest >= sequence) return;
+
+            promote(latest);
+            for(int i = 0; i < Math.min(received.length * 8, ackWindow); i++){
+                if((received[i / 8] & (1 << (i % 8))) != 0){
+                    promote(latest - 1 - i);
+                }
+            }
+        }
+
+        /** Removes the baseline of an entity that no longer exists. */
+        public void remove(int id){
+            removeBaseline(id);
+            lastSent.remove(id);
+            written.remove(id, 0);
+        }
+
+        /**
+         * Handles a report of entities whose baselines the client does not have, so that their full states are sent next.
+         * @param missing IDs written with {@link Decoder#pollMissing()}
+         */
+        public void missing(byte[] missing){
+            for(int i = 0; i + 4 <= missing.length; i += 4){
+                removeBaseline((missing[i] & 0xff) << 24 | (missing[i + 1] & 0xff) << 16 | (missing[i + 2] & 0xff) << 8 | (missing[i + 3] & 0xff));
+            }
+        }
+
+        /** Removes all baselines, forcing full states to be sent. Sequences keep increasing, so acks that are in flight stay valid. */
+        public void clear(){
+            baselines.clear();
+            baselineSequences.clear();
+            baselineIndices.clear();
+            lastSent.clear();
+            written.clear();
+            for(PendingPacket packet : pending){
+                packet.sequence = -1;
+                packet.ids.clear();
+                packet.indices.clear();
+                packet.states.clear();
+            }
+        }
+
+        private void removeBaseline(int id){
+            baselines.remove(id);
+            baselineSequences.remove(id, 0);
+            baselineIndices.remove(id, 0);
+        }
+
+        private void promote(int seq){
+            if(seq < 0) return;
+
+            PendingPacket packet = pending[seq % maxBaselineAge];
+            if(packet.sequence != seq) return;
+
+            for(int i = 0; i < packet.ids.size; i++){
+                int id = packet.ids.get(i);
+                if(baselineSequences.get(id, -1) < seq){
+                    baselines.put(id, packet.states.get(i));
+                    baselineSequences.put(id, seq);
+                    baselineIndices.put(id, packet.indices.get(i));
+                }
+            }
+
+            packet.sequence = -1;
+            packet.ids.clear();
+            packet.indices.clear();
+            packet.states.clear();
+        }
+
+        private void writeFull(DataOutput out, int id, byte typeID, byte[] state, int length) throws IOException{
+            out.writeInt(id);
+            out.writeByte(typeID);
+            out.writeByte(modeFull);
+            out.writeShort(length);
+            out.write(state, 0, length);
+        }
+
+        /** @return whether a stored state is equal to the first length bytes of b. */
+        private static boolean equals(byte[] a, byte[] b, int length){
+            if(a == null || a.length != length) return false;
+            for(int i = 0; i < length; i++){
+                if(a[i] != b[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    /** Client-side decoder. */
+    public static class Decoder{
+        /** Amount of recent states kept per entity. */
+        static final int historySize = 16;
+
+        /** Recently received states by entity ID. */
+        private final IntMap<History> histories = new IntMap<>();
+        /** Packets that have been received since the last acknowledgement. */
+        private final IntArray received = new IntArray();
+        /** Entities whose baselines were missing since the last report. */
+        private final IntArray missing = new IntArray();
+        private final IntArray stale = new IntArray();
+        private final ReusableByteInStream stateStream = new ReusableByteInStream();
+        private final DataInputStream stateInput = new DataInputStream(stateStream);
+        private int latest = -1;
+
+        /**
+         * Reads an entity state that was written with {@link Encoder#write}; the ID and type ID must have already been read.
+         * @return input to read the entity state from, or null if the baseline of this state is not available.
+         */
+        public DataInput read(DataInput in, int seq, int id) throws IOException{
+            byte mode = in.readByte();
+            History history = histories.get(id);
+            byte[] state;
+
+            if(mode == modeDelta){
+                int baseSeq = seq - in.readShort();
+                int length = in.readShort();
+                byte[] baseline = history == null ? null : history.get(baseSeq);
+
+                byte[] masks = new byte[(length + 7) / 8];
+                in.readFully(masks);
+                state = new byte[length];
+
+                for(int i = 0; i < length; i++){
+                    boolean changed = (masks[i / 8] & (1 << (i % 8))) != 0;
+                    if(changed){
+                        state[i] = in.readByte();
+                    }else if(baseline != null && i < baseline.length){
+                        state[i] = baseline[i];
+                    }
+                }
+
+                if(baseline == null){
+                    if(!missing.contains(id)) missing.add(id);
+                    return null;
+                }
+
+                //the server never references states older than this one again
+                history.prune(baseSeq);
+            }else{
+                state = new byte[in.readShort()];
+                in.readFully(state);
+            }
+
+            //unsequenced states are never used as baselines
+            if(seq != unsequenced){
+                if(history == null){
+                    histories.put(id, history = new History());
+                }
+                history.add(seq, state);
+            }
+
+            stateStream.setBytes(state);
+            return stateInput;
+        }
+
+        /** Marks a packet as received. Should only be called if all states in the packet could be read. */
+        public void received(int seq){
+            if(seq == unsequenced) return;
+
+            received.add(seq);
+            latest = Math.max(latest, seq);
+        }
+
+        /** Removes the states of an entity that no longer exists. */
+        public void remove(int id){
+            histories.remove(id);
+        }
+
+        /** @return whether there are received packets that have not been acknowledged yet. */
+        public boolean hasAcks(){
+            return received.size > 0;
+        }
+
+        /** @return whether there are entities with missing baselines that have not been reported yet. */
+        public boolean hasMissing(){
+            return missing.size > 0;
+        }
+
+        /** Writes the IDs of entities with missing baselines, and clears them. */
+        public byte[] pollMissing(){
+            byte[] bytes = new byte[missing.size * 4];
+            for(int i = 0; i < missing.size; i++){
+                int id = missing.get(i);
+                bytes[i * 4] = (byte)(id >>> 24);
+                bytes[i * 4 + 1] = (byte)(id >>> 16);
+                bytes[i * 4 + 2] = (byte)(id >>> 8);
+                bytes[i * 4 + 3] = (byte)id;
+            }
+            missing.clear();
+            return bytes;
+        }
+
+        /** @return sequence of the latest received packet. */
+        public int latest(){
+            return latest;
+        }
+
+        /** Builds a bitmask of received packets before the latest one, and clears them. */
+        public byte[] pollAcks(){
+            byte[] bits = new byte[ackWindow / 8];
+            for(int i = 0; i < received.size; i++){
+                int offset = latest - 1 - received.get(i);
+                if(offset >= 0 && offset < ackWindow){
+                    bits[offset / 8] |= 1 << (offset % 8);
+                }
+            }
+            received.clear();
+
+            //remove states of entities that the server no longer sends deltas for
+            stale.clear();
+            for(IntMap.Entry<History> entry : histories.entries()){
+                if(latest - entry.value.newest() > maxBaselineAge){
+                    stale.add(entry.key);
+                }
+            }
+            for(int i = 0; i < stale.size; i++){
+                histories.remove(stale.get(i));
+            }
+
+            return bits;
+        }
+
+        public void clear(){
+            histories.clear();
+            received.clear();
+            missing.clear();
+            latest = -1;
+        }
+    }
+
+    static class PendingPacket{
+        int sequence = -1;
+        final IntArray ids = new IntArray();
+        final IntArray indices = new IntArray();
+        final Array<byte[]> states = new Array<>();
+    }
+
+    /** Ring buffer of recent states of one entity. */
+    static class History{
+        final int[] sequences = new int[Decoder.historySize];
+        final byte[][] states = new byte[Decoder.historySize][];
+        int size, head;
+
+        void add(int seq, byte[] state){
+            sequences[head] = seq;
+            states[head] = state;
+            head = (head + 1) % sequences.length;
+            size = Math.min(size + 1, sequences.length);
+        }
+
+        byte[] get(int seq){
+            for(int i = 0; i < size; i++){
+                int index = (head - 1 - i + sequences.length) % sequences.length;
+                if(sequences[index] == seq) return states[index];
+            }
+            return null;
+        }
+
+        int newest(){
+            return size == 0 ? Integer.MIN_VALUE / 2 : sequences[(head - 1 + sequences.length) % sequences.length];
+        }
+
+        void prune(int seq){
+            //states are added in increasing order, so count the ones that are new enough
+            int kept = 0;
+            for(int i = 0; i < size; i++){
+                int index = (head - 1 - i + sequences.length) % sequences.length;
+                if(sequences[index] < seq) break;
+                kept++;
+            }
+            for(int i = kept; i < size; i++){
+                states[(head - 1 - i + sequences.length) % sequences.length] = null;
+            }
+            size = kept;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import arc.util.*;
 import arc.util.ArcAnnotate.*;
 import arc.util.pooling.*;
 import mindustry.gen.*;
+import mindustry.net.ArcNetProvider.*;
 import mindustry.net.Packets.*;
 import mindustry.net.Streamable.*;
 import net.jpountz.lz4.*;
@@ -32,6 +33,10 @@ public class Net{
     private final NetProvider provider;
     private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
     private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    /** Serializer and reusable buffer for packets that are broadcast to all connections. */
+    private final PacketSerializer serializer = new PacketSerializer();
+    private final ByteBuffer broadcastBuffer = ByteBuffer.allocateDirect(4096);
+    private final EncodedPacket encodedPacket = new EncodedPacket(broadcastBuffer);
 
     public Net(NetProvider provider){
         this.provider = provider;
@@ -184,9 +189,11 @@ public class Net{
     /** Send an object to all connected clients, or to the server if this is a client.*/
     public void send(Object object, SendMode mode){
         if(server){
+            Object encoded = encode(object);
             for(NetConnection con : provider.getConnections()){
-                con.send(object, mode);
+                con.send(encoded, mode);
             }
+            if(encoded != object && object instanceof InvokePacket) Pools.free(object);
         }else{
             provider.sendClient(object, mode);
         }
@@ -194,11 +201,30 @@ public class Net{
 
     /** Send an object to everyone EXCEPT a certain client. Server-side only.*/
     public void sendExcept(NetConnection except, Object object, SendMode mode){
+        Object encoded = encode(object);
         for(NetConnection con : getConnections()){
             if(con != except){
-                con.send(object, mode);
+                con.send(encoded, mode);
             }
         }
+        if(encoded != object && object instanceof InvokePacket) Pools.free(object);
+    }
+
+    /**
+     * Serializes a packet once, so that it can be sent to every connection without being serialized again.
+     * The result is only valid until the next call. Returns the original object if it could not be serialized.
+     */
+    public Object encode(Object object){
+        if(!(object instanceof Packet)) return object;
+
+        try{
+            broadcastBuffer.clear();
+            serializer.write(broadcastBuffer, object);
+            broadcastBuffer.flip();
+            return encodedPacket;
+        }catch(BufferOverflowException e){
+            return object;
+        }
     }
 
     public @Nullable StreamBuilder getCurrentStream(){
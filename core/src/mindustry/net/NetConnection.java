@@ -28,6 +28,12 @@ public abstract class NetConnection{
 
     public boolean hasConnected, hasBegunConnecting, hasDisconnected;
     public float viewWidth, viewHeight, viewX, viewY;
+    /** Amount of entity snapshots sent to this connection. */
+    public int snapshotsSent;
+    /** Maps IDs of entities that have been synced to this connection to their group IDs, used for sending removals. */
+    public IntIntMap syncedEntities = new IntIntMap();
+    /** Delta compression state of entity snapshots sent to this connection. */
+    public EntityDeltas.Encoder deltas = new EntityDeltas.Encoder();
 
     public NetConnection(String address){
         this.address = address;
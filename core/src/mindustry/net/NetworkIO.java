@@ -1,6 +1,7 @@
 package mindustry.net;
 
 import arc.util.*;
+import arc.util.io.*;
 import mindustry.core.*;
 import mindustry.entities.type.*;
 import mindustry.game.*;
@@ -11,14 +12,22 @@ import mindustry.net.Administration.*;
 import java.io.*;
 import java.nio.*;
 import java.util.*;
+import java.util.zip.*;
 
 import static mindustry.Vars.*;
 
 public class NetworkIO{
 
-    public static void writeWorld(Player player, OutputStream os){
+    /**
+     * Writes world data for a player. The data consists of two compressed sections: a header specific to this player,
+     * prefixed with its length, followed by the map section, which is the same for every player.
+     * The header also contains the state of all tile entities, which changes constantly, so it is written for each player.
+     * @param map compressed map section, as written by {@link #writeMap(OutputStream)}
+     */
+    public static void writeWorld(Player player, byte[] map, OutputStream os){
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
 
-        try(DataOutputStream stream = new DataOutputStream(os)){
+        try(DataOutputStream stream = new DataOutputStream(new FastDeflaterOutputStream(header))){
             stream.writeUTF(JsonIO.write(state.rules));
             SaveIO.getSaveWriter().writeStringMap(stream, world.getMap().tags);
 
@@ -28,16 +37,42 @@ public class NetworkIO{
             stream.writeInt(player.id);
             player.write(stream);
 
+            SaveIO.getSaveWriter().writeTileEntities(stream);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+
+        try(DataOutputStream stream = new DataOutputStream(os)){
+            stream.writeInt(header.size());
+            header.writeTo(stream);
+            stream.write(map);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the compressed map section of the world data, which contains the content header and all tiles, without tile entity state.
+     * This only changes when tiles are changed.
+     */
+    public static void writeMap(OutputStream os){
+
+        try(DataOutputStream stream = new DataOutputStream(new FastDeflaterOutputStream(os))){
             SaveIO.getSaveWriter().writeContentHeader(stream);
-            SaveIO.getSaveWriter().writeMap(stream);
+            SaveIO.getSaveWriter().writeMapTiles(stream);
         }catch(IOException e){
             throw new RuntimeException(e);
         }
     }
 
+    /** Loads world data written by {@link #writeWorld(Player, byte[], OutputStream)}. */
     public static void loadWorld(InputStream is){
 
-        try(DataInputStream stream = new DataInputStream(is)){
+        try(DataInputStream input = new DataInputStream(is)){
+            byte[] header = new byte[input.readInt()];
+            input.readFully(header);
+            DataInputStream stream = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(header)));
+
             Time.clear();
             state.rules = JsonIO.read(Rules.class, stream.readUTF());
             world.setMap(new Map(SaveIO.getSaveWriter().readStringMap(stream)));
@@ -52,8 +87,10 @@ public class NetworkIO{
             player.resetID(id);
             player.add();
 
-            SaveIO.getSaveWriter().readContentHeader(stream);
-            SaveIO.getSaveWriter().readMap(stream, world.context);
+            DataInputStream map = new DataInputStream(new InflaterInputStream(input));
+            SaveIO.getSaveWriter().readContentHeader(map);
+            //tile entities follow the player in the header
+            SaveIO.getSaveWriter().readMap(map, stream, world.context);
         }catch(IOException e){
             throw new RuntimeException(e);
         }finally{
@@ -86,9 +86,13 @@ public class Packets{
             buffer.put(priority);
             buffer.putShort((short)writeLength);
 
-            writeBuffer.position(0);
-            for(int i = 0; i < writeLength; i++){
-                buffer.put(writeBuffer.get());
+            if(writeBuffer.hasArray()){
+                buffer.put(writeBuffer.array(), writeBuffer.arrayOffset(), writeLength);
+            }else{
+                writeBuffer.position(0);
+                for(int i = 0; i < writeLength; i++){
+                    buffer.put(writeBuffer.get());
+                }
             }
         }
 
@@ -108,6 +112,20 @@ public class Packets{
         }
     }
 
+    /**
+     * A packet that has already been serialized by a {@link mindustry.net.ArcNetProvider.PacketSerializer}, including its ID.
+     * Used for broadcasting, so that a packet is only serialized once instead of once per connection.
+     * The buffer is reused, so this is only valid until the next broadcast.
+     */
+    public static class EncodedPacket{
+        /** Serialized bytes, from position 0 to the limit. */
+        public final ByteBuffer buffer;
+
+        public EncodedPacket(ByteBuffer buffer){
+            this.buffer = buffer;
+        }
+    }
+
     /** Marks the beginning of a stream. */
     public static class StreamBegin implements Packet{
         private static int lastid;
@@ -0,0 +1,162 @@
+package mindustry.net;
+
+import arc.files.*;
+import arc.struct.*;
+import arc.util.ArcAnnotate.*;
+import arc.util.*;
+import arc.util.async.*;
+
+import java.io.*;
+
+/**
+ * Append-only file of keyed records, used to persist the player database.
+ * Writes are appended to the file on a background thread, so changing a single player does not rewrite every other player.
+ * Later records replace earlier ones with the same key; once the file contains more replaced records than live ones, it is compacted in the background.
+ */
+public class PlayerStore{
+    private static final int version = 1;
+    /** Minimum amount of appended records before the file is compacted. */
+    private static final int minCompactRecords = 1000;
+
+    private final Fi file;
+    private final AsyncExecutor executor = new AsyncExecutor(1);
+    private @Nullable AsyncResult<?> last;
+
+    /** only accessed by the writer thread after loading */
+    private DataOutputStream output;
+    private int liveRecords, totalRecords;
+
+    public PlayerStore(Fi file){
+        this.file = file;
+    }
+
+    public boolean exists(){
+        return file.exists();
+    }
+
+    /** Reads all live records. Must be called before anything is written. */
+    public ObjectMap<String, byte[]> load(){
+        ObjectMap<String, byte[]> records = new ObjectMap<>();
+        boolean complete = read(file, records);
+        liveRecords = records.size;
+
+        //a truncated record would corrupt everything appended after it, so rewrite the file without it
+        if(!complete){
+            Log.warn("Player database '{0}' is truncated; rewriting it.", file.name());
+            compact(records);
+        }
+
+        return records;
+    }
+
+    /** Queues records to be appended to the file in the background. */
+    public void write(ObjectMap<String, byte[]> records){
+        if(records.isEmpty()) return;
+
+        last = executor.submit(() -> {
+            try{
+                if(output == null){
+                    boolean created = !file.exists() || file.length() == 0;
+                    output = new DataOutputStream(new BufferedOutputStream(file.write(true)));
+                    if(created){
+                        output.writeInt(version);
+                    }
+                }
+
+                for(ObjectMap.Entry<String, byte[]> entry : records){
+                    writeRecord(output, entry.key, entry.value);
+                }
+                output.flush();
+                totalRecords += records.size;
+
+                if(totalRecords > minCompactRecords && totalRecords > liveRecords * 2){
+                    close();
+                    ObjectMap<String, byte[]> all = new ObjectMap<>();
+                    if(!read(file, all)){
+                        Log.warn("Player database '{0}' is truncated; dropping the last record.", file.name());
+                    }
+                    compact(all);
+                }
+            }catch(IOException e){
+                Log.err("Failed to write player database: {0}", Strings.parseException(e, true));
+
+                //the file may end in part of a record now, which would corrupt everything appended after it,
+                //so rewrite it with the complete records and the ones that failed to be written
+                try{
+                    close();
+                }catch(IOException ignored){
+                    output = null;
+                }
+                ObjectMap<String, byte[]> all = new ObjectMap<>();
+                read(file, all);
+                all.putAll(records);
+                compact(all);
+            }
+            return null;
+        });
+    }
+
+    /** Blocks until all queued records have been written. */
+    public void flush(){
+        if(last != null){
+            last.get();
+            last = null;
+        }
+    }
+
+    private void compact(ObjectMap<String, byte[]> records){
+        Fi temp = file.sibling(file.name() + ".tmp");
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(temp.write(false)))){
+            out.writeInt(version);
+            for(ObjectMap.Entry<String, byte[]> entry : records){
+                writeRecord(out, entry.key, entry.value);
+            }
+        }catch(IOException e){
+            Log.err("Failed to compact player database: {0}", Strings.parseException(e, true));
+            return;
+        }
+
+        temp.moveTo(file);
+        liveRecords = totalRecords = records.size;
+    }
+
+    private void close() throws IOException{
+        if(output != null){
+            output.close();
+            output = null;
+        }
+    }
+
+    /** @return whether the file was read completely; false if it ends in part of a record. */
+    private static boolean read(Fi file, ObjectMap<String, byte[]> out){
+        if(!file.exists()) return true;
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(file.read()))){
+            int fileVersion = in.readInt();
+            if(fileVersion != version) throw new IOException("Unknown player database version: " + fileVersion);
+
+            while(true){
+                //the file only ends cleanly between records; an end anywhere else is caught below
+                in.mark(1);
+                if(in.read() == -1) return true;
+                in.reset();
+
+                String key = in.readUTF();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                out.put(key, value);
+            }
+        }catch(EOFException e){
+            return false;
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, String key, byte[] value) throws IOException{
+        out.writeUTF(key);
+        out.writeInt(value.length);
+        out.write(value);
+    }
+}
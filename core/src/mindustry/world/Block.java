@@ -339,7 +339,7 @@ public class Block extends BlockStorage{
             tempTiles.clear();
             Geometry.circle(tile.x, tile.y, range, (x, y) -> {
                 Tile other = world.ltile(x, y);
-                if(other != null && other.block instanceof PowerNode && ((PowerNode)other.block).linkValid(other, tile) && !PowerNode.insulated(other, tile) && !other.entity.proximity().contains(tile) &&
+                if(other != null && other.block() instanceof PowerNode && ((PowerNode)other.block()).linkValid(other, tile) && !PowerNode.insulated(other, tile) && !other.entity.proximity().contains(tile) &&
                 !(outputsPower && tile.entity.proximity().contains(p -> p.entity != null && p.entity.power != null && p.entity.power.graph == other.entity.power.graph))){
                     tempTiles.add(other);
                 }
@@ -393,7 +393,7 @@ public class Block extends BlockStorage{
         if(tile == null) return 0;
         float sum = 0;
         for(Tile other : tile.getLinkedTilesAs(this, tempTiles)){
-            sum += !other.floor.isLiquid ? 1f : 0f;
+            sum += !other.floor().isLiquid ? 1f : 0f;
         }
         return sum / size / size;
     }
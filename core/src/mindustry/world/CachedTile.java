@@ -10,8 +10,8 @@ import mindustry.world.modules.*;
  */
 public class CachedTile extends Tile{
 
-    public CachedTile(){
-        super(0, 0);
+    public CachedTile(Tiles tiles, int x, int y){
+        super(tiles, x, y);
     }
 
     @Override
@@ -22,7 +22,7 @@ public class CachedTile extends Tile{
     @Override
     protected void preChanged(){
         //this basically overrides the old tile code and doesn't remove from proximity
-        team = 0;
+        tiles.teams[index] = 0;
     }
 
     @Override
@@ -50,7 +50,7 @@ public class Edges{
     }
 
     public static Tile getFacingEdge(Tile tile, Tile other){
-        return getFacingEdge(tile.block, tile.x, tile.y, other);
+        return getFacingEdge(tile.block(), tile.x, tile.y, other);
     }
 
     public static Tile getFacingEdge(Block block, int tilex, int tiley, Tile other){
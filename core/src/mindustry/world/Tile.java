@@ -18,34 +18,38 @@ import mindustry.world.modules.*;
 import static mindustry.Vars.*;
 
 public class Tile implements Position, TargetTrait{
-    /** Tile traversal cost. */
-    public byte cost = 1;
     /** Tile entity, usually null. */
     public TileEntity entity;
-    public short x, y;
-    protected Block block;
-    protected Floor floor;
-    protected Floor overlay;
-    /** Rotation, 0-3. Also used to store offload location, in which case it can be any number.*/
-    protected byte rotation;
-    /** Team ordinal. */
-    protected byte team;
+    public final short x, y;
+    /**
+     * The tile array this is a view of, and the index of this tile in it.
+     * The block, floor, overlay, team, rotation and cost of a tile are stored in the arrays of {@link Tiles}, which keeps a map small and gives the GC few references to trace.
+     * Content IDs are always resolved, so they never go through the temporary content mapper used when loading saves.
+     */
+    final Tiles tiles;
+    final int index;
 
-    public Tile(int x, int y){
+    /** Creates the view of a tile in a tile array. Only {@link Tiles} should create these; use it to get tiles. */
+    protected Tile(Tiles tiles, int x, int y){
+        this.tiles = tiles;
+        this.index = tiles.index(x, y);
         this.x = (short)x;
         this.y = (short)y;
-        block = floor = overlay = (Floor)Blocks.air;
     }
 
-    public Tile(int x, int y, int floor, int overlay, int wall){
+    /** Creates a tile that is not part of a map, with its own storage. */
+    public Tile(int x, int y){
+        this.tiles = new Tiles(1, 1);
+        this.index = 0;
         this.x = (short)x;
         this.y = (short)y;
-        this.floor = (Floor)content.block(floor);
-        this.overlay = (Floor)content.block(overlay);
-        this.block = content.block(wall);
+        tiles.views[0] = this;
+    }
 
-        //update entity and create it if needed
-        changed();
+    public Tile(int x, int y, int floor, int overlay, int wall){
+        this(x, y);
+        //creates the entity if needed, as this tile is its own view
+        tiles.create(0, 0, floor, overlay, wall);
     }
 
     /** Returns this tile's position as a {@link Pos}. */
@@ -125,40 +129,40 @@ public class Tile implements Position, TargetTrait{
     }
 
     public @NonNull Floor floor(){
-        return floor;
+        return (Floor)content.blocks().get(tiles.floors[index]);
     }
 
     public @NonNull Block block(){
-        return block;
+        return content.blocks().get(tiles.blocks[index]);
     }
 
     public @NonNull Floor overlay(){
-        return overlay;
+        return (Floor)content.blocks().get(tiles.overlays[index]);
     }
 
     @SuppressWarnings("unchecked")
     public <T extends Block> T cblock(){
-        return (T)block;
+        return (T)block();
     }
 
     @Override
     public Team getTeam(){
-        return Team.get(link().team);
+        return Team.get(link().getTeamID());
     }
 
     public void setTeam(Team team){
-        this.team = (byte) team.id;
+        tiles.teams[index] = (byte)team.id;
     }
 
     public byte getTeamID(){
-        return team;
+        return tiles.teams[index];
     }
 
     public void setBlock(@NonNull Block type, Team team, int rotation){
         preChanged();
-        this.block = type;
-        this.team = (byte) team.id;
-        this.rotation = (byte)Mathf.mod(rotation, 4);
+        tiles.blocks[index] = type.id;
+        tiles.teams[index] = (byte)team.id;
+        tiles.rotations[index] = (byte)Mathf.mod(rotation, 4);
         changed();
     }
 
@@ -169,20 +173,19 @@ public class Tile implements Position, TargetTrait{
     public void setBlock(@NonNull Block type){
         if(type == null) throw new IllegalArgumentException("Block cannot be null.");
         preChanged();
-        this.block = type;
-        this.rotation = 0;
+        tiles.blocks[index] = type.id;
+        tiles.rotations[index] = 0;
         changed();
     }
 
     /**This resets the overlay!*/
     public void setFloor(@NonNull Floor type){
-        this.floor = type;
-        this.overlay = (Floor)Blocks.air;
+        tiles.setFloor(index, type);
     }
 
     /** Sets the floor, preserving overlay.*/
     public void setFloorUnder(@NonNull Floor floor){
-        Block overlay = this.overlay;
+        Block overlay = overlay();
         setFloor(floor);
         setOverlay(overlay);
     }
@@ -227,31 +230,36 @@ public class Tile implements Position, TargetTrait{
     }
 
     public byte rotation(){
-        return rotation;
+        return tiles.rotations[index];
     }
 
     public void rotation(int rotation){
-        this.rotation = (byte)rotation;
+        tiles.rotations[index] = (byte)rotation;
+    }
+
+    /** @return the traversal cost of this tile. */
+    public byte cost(){
+        return tiles.costs[index];
     }
 
     public short overlayID(){
-        return overlay.id;
+        return tiles.overlays[index];
     }
 
     public short blockID(){
-        return block.id;
+        return tiles.blocks[index];
     }
 
     public short floorID(){
-        return floor.id;
+        return tiles.floors[index];
     }
 
     public void setOverlayID(short ore){
-        this.overlay = (Floor)content.block(ore);
+        tiles.overlays[index] = content.block(ore).id;
     }
 
     public void setOverlay(Block block){
-        this.overlay = (Floor)block;
+        tiles.overlays[index] = block.id;
     }
 
     public void clearOverlay(){
@@ -259,24 +267,28 @@ public class Tile implements Position, TargetTrait{
     }
 
     public boolean passable(){
-        return isLinked() || !((floor.solid && (block == Blocks.air || block.solidifes)) || (block.solid && (!block.destructible && !block.update)));
+        Block block = block();
+        return isLinked() || !((floor().solid && (block == Blocks.air || block.solidifes)) || (block.solid && (!block.destructible && !block.update)));
     }
 
     /** Whether this block was placed by a player/unit. */
     public boolean synthetic(){
+        Block block = block();
         return block.update || block.destructible;
     }
 
     public boolean solid(){
-        return block.solid || block.isSolidFor(this) || (isLinked() && link() != this && link().solid());
+        Block block = block();
+        return block.solid || block.isSolidFor(this) || (block instanceof BlockPart && link() != this && link().solid());
     }
 
     public boolean breakable(){
+        Block block = block();
         return !isLinked() ? (block.destructible || block.breakable || block.update) : link().breakable();
     }
 
     public Tile link(){
-        return block.linked(this);
+        return block().linked(this);
     }
 
     public boolean isEnemyCheat(){
@@ -284,7 +296,7 @@ public class Tile implements Position, TargetTrait{
     }
 
     public boolean isLinked(){
-        return block instanceof BlockPart;
+        return block() instanceof BlockPart;
     }
 
     /**
@@ -292,6 +304,7 @@ public class Tile implements Position, TargetTrait{
      * This array contains all linked tiles, including this tile itself.
      */
     public void getLinkedTiles(Cons<Tile> cons){
+        Block block = block();
         if(block.isMultiblock()){
             int size = block.size;
             int offsetx = -(size - 1) / 2;
@@ -368,19 +381,19 @@ public class Tile implements Position, TargetTrait{
 
     // ▲ ▲ ▼ ▼ ◀ ▶ ◀ ▶ B A
     public @Nullable Tile front(){
-        return getNearbyLink((rotation + 4) % 4);
+        return getNearbyLink((rotation() + 4) % 4);
     }
 
     public @Nullable Tile right(){
-        return getNearbyLink((rotation + 3) % 4);
+        return getNearbyLink((rotation() + 3) % 4);
     }
 
     public @Nullable Tile back(){
-        return getNearbyLink((rotation + 2) % 4);
+        return getNearbyLink((rotation() + 2) % 4);
     }
 
     public @Nullable Tile left(){
-        return getNearbyLink((rotation + 1) % 4);
+        return getNearbyLink((rotation() + 1) % 4);
     }
 
     public boolean interactable(Team team){
@@ -388,55 +401,12 @@ public class Tile implements Position, TargetTrait{
     }
 
     public @Nullable Item drop(){
-        return overlay == Blocks.air || overlay.itemDrop == null ? floor.itemDrop : overlay.itemDrop;
+        Floor overlay = overlay();
+        return overlay == Blocks.air || overlay.itemDrop == null ? floor().itemDrop : overlay.itemDrop;
     }
 
     public void updateOcclusion(){
-        cost = 1;
-        boolean occluded = false;
-
-        //check for occlusion
-        for(int i = 0; i < 8; i++){
-            Point2 point = Geometry.d8[i];
-            Tile tile = world.tile(x + point.x, y + point.y);
-            if(tile != null && tile.floor.isLiquid){
-                cost += 4;
-            }
-            if(tile != null && tile.solid()){
-                occluded = true;
-                break;
-            }
-        }
-
-        //+24
-
-        if(occluded){
-            cost += 2;
-        }
-
-        //+26
-
-        if(link().synthetic() && link().solid()){
-            cost += Mathf.clamp(link().block.health / 10f, 0, 20);
-        }
-
-        //+46
-
-        if(floor.isLiquid){
-            cost += 10;
-        }
-
-        //+56
-
-        if(floor.drownTime > 0){
-            cost += 70;
-        }
-
-        //+126
-
-        if(cost < 0){
-            cost = Byte.MAX_VALUE;
-        }
+        tiles.updateOcclusion(index);
     }
 
     protected void preChanged(){
@@ -444,11 +414,14 @@ public class Tile implements Position, TargetTrait{
         if(entity != null){
             entity.removeFromProximity();
         }
-        team = 0;
+        tiles.teams[index] = 0;
     }
 
     protected void changed(){
         if(entity != null){
+            if(entity.isSleeping()){
+                TileEntity.sleepingEntities--;
+            }
             entity.remove();
             entity = null;
         }
@@ -515,7 +488,7 @@ public class Tile implements Position, TargetTrait{
 
     @Override
     public String toString(){
-        return floor.name + ":" + block.name + ":" + overlay + "[" + x + "," + y + "] " + "entity=" + (entity == null ? "null" : (entity.getClass())) + ":" + getTeam();
+        return floor().name + ":" + block().name + ":" + overlay() + "[" + x + "," + y + "] " + "entity=" + (entity == null ? "null" : (entity.getClass())) + ":" + getTeam();
     }
 
     //remote utility methods
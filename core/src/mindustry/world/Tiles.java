@@ -0,0 +1,266 @@
+package mindustry.world;
+
+import arc.math.*;
+import arc.math.geom.*;
+import arc.util.ArcAnnotate.*;
+import mindustry.content.*;
+import mindustry.game.*;
+import mindustry.type.*;
+import mindustry.world.blocks.*;
+
+import static mindustry.Vars.*;
+
+/**
+ * The tiles of a map, stored as flat arrays indexed by {@code x + y * width}.
+ * Block, floor and overlay are stored as content IDs, so a cell costs a few bytes and no references.
+ * <p>
+ * {@link Tile} objects are views of one cell. They are created when a tile is first requested and cached,
+ * so a position always returns the same tile; tiles with entities always have one.
+ * Code that goes over every cell of a map should use the index methods, which read the arrays without creating views.
+ */
+public class Tiles{
+    public final int width, height;
+
+    final short[] floors, overlays, blocks;
+    final byte[] teams, rotations, costs;
+    final Tile[] views;
+
+    public Tiles(int width, int height){
+        this.width = width;
+        this.height = height;
+        int size = width * height;
+        floors = new short[size];
+        overlays = new short[size];
+        blocks = new short[size];
+        teams = new byte[size];
+        rotations = new byte[size];
+        costs = new byte[size];
+        views = new Tile[size];
+
+        for(int i = 0; i < size; i++){
+            costs[i] = 1;
+        }
+    }
+
+    /** Creates the view of a tile. Override to use a different kind of tile. */
+    protected Tile newTile(int x, int y){
+        return new Tile(this, x, y);
+    }
+
+    public int index(int x, int y){
+        return x + y * width;
+    }
+
+    public boolean in(int x, int y){
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /** @return the tile at this position, or null if it is out of bounds. */
+    public @Nullable Tile get(int x, int y){
+        return in(x, y) ? getn(x, y) : null;
+    }
+
+    /** @return the tile at this position, without checking bounds. */
+    public Tile getn(int x, int y){
+        int index = x + y * width;
+        Tile tile = views[index];
+        if(tile == null){
+            synchronized(this){
+                tile = views[index];
+                if(tile == null){
+                    views[index] = tile = newTile(x, y);
+                }
+            }
+        }
+        return tile;
+    }
+
+    /** @return the tile at this index. */
+    public Tile geti(int index){
+        Tile tile = views[index];
+        return tile != null ? tile : getn(index % width, index / width);
+    }
+
+    /** @return the tile at this index if it was already created, otherwise null. Tiles with entities are never null. */
+    public @Nullable Tile cached(int index){
+        return views[index];
+    }
+
+    /** Sets the content of a tile and resets its team, rotation and entity. Used when creating maps. */
+    public void create(int x, int y, int floorID, int overlayID, int wallID){
+        int index = index(x, y);
+        floors[index] = id(content.block(floorID));
+        overlays[index] = id(content.block(overlayID));
+        blocks[index] = id(content.block(wallID));
+        teams[index] = 0;
+        rotations[index] = 0;
+        costs[index] = 1;
+
+        //update entity and create it if needed
+        if(views[index] != null || block(index).hasEntity()){
+            geti(index).changed();
+        }
+    }
+
+    /** @return the ID of this block, or air if it is null. */
+    private static short id(Block block){
+        return block == null ? 0 : block.id;
+    }
+
+    public short floorID(int index){
+        return floors[index];
+    }
+
+    public short overlayID(int index){
+        return overlays[index];
+    }
+
+    public short blockID(int index){
+        return blocks[index];
+    }
+
+    public byte teamID(int index){
+        return teams[index];
+    }
+
+    public byte rotation(int index){
+        return rotations[index];
+    }
+
+    public void rotation(int index, int rotation){
+        rotations[index] = (byte)rotation;
+    }
+
+    public byte cost(int index){
+        return costs[index];
+    }
+
+    public Floor floor(int index){
+        return (Floor)content.blocks().get(floors[index]);
+    }
+
+    public Floor overlay(int index){
+        return (Floor)content.blocks().get(overlays[index]);
+    }
+
+    public Block block(int index){
+        return content.blocks().get(blocks[index]);
+    }
+
+    /** Same as {@link Tile#getTeam()}. */
+    public Team getTeam(int index){
+        return needsView(index) ? geti(index).getTeam() : Team.get(teams[index]);
+    }
+
+    /** Same as {@link Tile#solid()}. */
+    public boolean solid(int index){
+        return needsView(index) ? geti(index).solid() : block(index).solid;
+    }
+
+    /** Same as {@link Tile#drop()}. */
+    public @Nullable Item drop(int index){
+        Floor overlay = overlay(index);
+        return overlay == Blocks.air || overlay.itemDrop == null ? floor(index).itemDrop : overlay.itemDrop;
+    }
+
+    /** Same as {@link Tile#setFloor(Floor)}; resets the overlay. */
+    public void setFloor(int index, Floor floor){
+        floors[index] = floor.id;
+        overlays[index] = 0;
+    }
+
+    public void setOverlay(int index, Block overlay){
+        overlays[index] = overlay.id;
+    }
+
+    /**
+     * Sets the block of a tile while a map is loading.
+     * Blocks that have no entity are only written to the arrays if the tile has no view yet.
+     */
+    public void setBlock(int index, Block block){
+        if(views[index] != null || block.hasEntity()){
+            geti(index).setBlock(block);
+        }else{
+            blocks[index] = block.id;
+            teams[index] = 0;
+            rotations[index] = 0;
+        }
+    }
+
+    /** Copies a tile from another tile array, moving its entity to the tile in this one. */
+    public void copy(int x, int y, Tiles from, int fromX, int fromY){
+        int index = index(x, y), other = from.index(fromX, fromY);
+        floors[index] = from.floors[other];
+        overlays[index] = from.overlays[other];
+        blocks[index] = from.blocks[other];
+        teams[index] = from.teams[other];
+        rotations[index] = from.rotations[other];
+        costs[index] = from.costs[other];
+
+        Tile view = from.views[other];
+        if(view != null && view.entity != null){
+            Tile tile = geti(index);
+            tile.entity = view.entity;
+            tile.entity.tile = tile;
+            view.entity = null;
+        }
+    }
+
+    /** Recomputes the traversal cost of a tile from its neighbours, like {@link Tile#updateOcclusion()}. */
+    public void updateOcclusion(int index){
+        int x = index % width, y = index / width;
+        int cost = 1;
+        boolean occluded = false;
+
+        //check for occlusion
+        for(int i = 0; i < 8; i++){
+            Point2 point = Geometry.d8[i];
+            int nx = x + point.x, ny = y + point.y;
+            if(!in(nx, ny)) continue;
+
+            int other = nx + ny * width;
+            if(floor(other).isLiquid){
+                cost += 4;
+            }
+            if(solid(other)){
+                occluded = true;
+                break;
+            }
+        }
+
+        if(occluded){
+            cost += 2;
+        }
+
+        if(needsView(index)){
+            Tile link = geti(index).link();
+            if(link.synthetic() && link.solid()){
+                cost += Mathf.clamp(link.block().health / 10f, 0, 20);
+            }
+        }else{
+            Block block = block(index);
+            if((block.update || block.destructible) && block.solid){
+                cost += Mathf.clamp(block.health / 10f, 0, 20);
+            }
+        }
+
+        Floor floor = floor(index);
+        if(floor.isLiquid){
+            cost += 10;
+        }
+
+        if(floor.drownTime > 0){
+            cost += 70;
+        }
+
+        costs[index] = (byte)Math.min(cost, Byte.MAX_VALUE);
+    }
+
+    /**
+     * @return whether the state of a tile depends on more than its arrays: it has a view, which may have an entity,
+     * or it is part of a multiblock, which reads its linked tile.
+     */
+    private boolean needsView(int index){
+        return views[index] != null || block(index) instanceof BlockPart;
+    }
+}
@@ -8,8 +8,11 @@ public interface WorldContext{
     /** Create the tile array.*/
     void resize(int width, int height);
 
-    /** This should create a tile and put it into the tile array, then return it. */
-    Tile create(int x, int y, int floorID, int overlayID, int wallID);
+    /** Return the tile array, for reading and writing tiles by index. */
+    Tiles tiles();
+
+    /** This should create a tile in the tile array. */
+    void create(int x, int y, int floorID, int overlayID, int wallID);
 
     /** Returns whether the world is already generating.*/
     boolean isGenerating();
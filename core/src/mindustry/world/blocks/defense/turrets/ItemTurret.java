@@ -114,6 +114,8 @@ public class ItemTurret extends CooledTurret{
         TurretEntity entity = tile.ent();
         if(entity == null) return;
 
+        entity.noSleep();
+
         if(item == Items.pyratite){
             Events.fire(Trigger.flameAmmo);
         }
@@ -12,6 +12,7 @@ import arc.math.Angles;
 import arc.math.Mathf;
 import arc.math.geom.Vec2;
 import arc.util.Time;
+import mindustry.ai.TargetScheduler.Ticket;
 import mindustry.content.Fx;
 import mindustry.entities.*;
 import mindustry.entities.Effects.Effect;
@@ -23,8 +24,10 @@ import mindustry.gen.*;
 import mindustry.graphics.*;
 import mindustry.world.Block;
 import mindustry.world.Tile;
+import mindustry.world.consumers.ConsumeType;
 import mindustry.world.meta.*;
 
+import static mindustry.Vars.targeting;
 import static mindustry.Vars.tilesize;
 
 public abstract class Turret extends Block{
@@ -150,9 +153,16 @@ public abstract class Turret extends Block{
         entity.recoil = Mathf.lerpDelta(entity.recoil, 0f, restitution);
         entity.heat = Mathf.lerpDelta(entity.heat, 0f, cooldown);
 
+        //turrets without ammo or power are woken up by receiving either
+        if((!hasAmmo(tile) || (consumes.has(ConsumeType.power) && Mathf.zero(entity.power.status))) && entity.recoil < 0.01f && entity.heat < 0.01f){
+            entity.sleep();
+        }else{
+            entity.noSleep();
+        }
+
         if(hasAmmo(tile)){
 
-            if(entity.timer.get(timerTarget, targetInterval)){
+            if(targeting.poll(entity.targetTicket, targetInterval, entity.target != null)){
                 findTarget(tile);
             }
 
@@ -192,11 +202,7 @@ public abstract class Turret extends Block{
     protected void findTarget(Tile tile){
         TurretEntity entity = tile.ent();
 
-        if(targetAir && !targetGround){
-            entity.target = Units.closestEnemy(tile.getTeam(), tile.drawx(), tile.drawy(), range, e -> !e.isDead() && e.isFlying());
-        }else{
-            entity.target = Units.closestTarget(tile.getTeam(), tile.drawx(), tile.drawy(), range, e -> !e.isDead() && (!e.isFlying() || targetAir) && (e.isFlying() || targetGround));
-        }
+        entity.target = Units.closestTarget(tile.getTeam(), tile.drawx(), tile.drawy(), range, targetAir, targetGround);
     }
 
     protected void turnToTarget(Tile tile, float targetRot){
@@ -320,5 +326,6 @@ public abstract class Turret extends Block{
         public float heat;
         public int shots;
         public TargetTrait target;
+        public Ticket targetTicket = new Ticket();
     }
 }
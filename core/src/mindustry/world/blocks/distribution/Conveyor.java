@@ -94,11 +94,50 @@ public class Conveyor extends Block implements Autotiler{
         entity.blendsclx = bits[1];
         entity.blendscly = bits[2];
 
+        ConveyorEntity lastPrev = entity.prevc, lastNext = entity.nextc;
+
         if(tile.front() != null && tile.front().entity != null){
             entity.next = tile.front().entity;
             entity.nextc = entity.next instanceof ConveyorEntity && entity.next.getTeam() == tile.getTeam() ? (ConveyorEntity)entity.next : null;
             entity.aligned = entity.nextc != null && tile.rotation() == entity.next.tile.rotation();
+        }else{
+            entity.next = null;
+            entity.nextc = null;
+            entity.aligned = false;
+        }
+
+        Tile back = tile.back();
+        entity.prevc = back != null && back.entity instanceof ConveyorEntity && back.getTeam() == tile.getTeam() && back.rotation() == tile.rotation() ? (ConveyorEntity)back.entity : null;
+
+        relink(entity);
+        //lines that this conveyor was previously a part of may have been split
+        if(lastPrev != null && lastPrev != entity.prevc && !lastPrev.isDead()) relink(lastPrev);
+        if(lastNext != null && lastNext != entity.nextc && !lastNext.isDead()) relink(lastNext);
+    }
+
+    /** @return whether this conveyor is part of the same line as the conveyor in front of it. */
+    static boolean linked(ConveyorEntity e){
+        return e.aligned && e.nextc != null && e.nextc.prevc == e && !e.nextc.isDead();
+    }
+
+    /** @return the conveyor behind this one in its line, or null if this is the last one. */
+    static @Nullable ConveyorEntity previous(ConveyorEntity e){
+        return e.prevc != null && linked(e.prevc) && !e.prevc.isDead() ? e.prevc : null;
+    }
+
+    /** Finds the head of the line that this conveyor belongs to, and assigns it to all conveyors in the line. Only the head is updated. */
+    static void relink(ConveyorEntity entity){
+        ConveyorEntity head = entity;
+        while(linked(head)){
+            head = head.nextc;
+        }
+
+        for(ConveyorEntity e = head; e != null; e = previous(e)){
+            e.head = head;
+            if(e != head) e.sleepNow();
         }
+
+        head.noSleep();
     }
 
     @Override
@@ -170,13 +209,49 @@ public class Conveyor extends Block implements Autotiler{
     @Override
     public void update(Tile tile){
         ConveyorEntity e = tile.ent();
+
+        //conveyors in the middle of a line are updated by its head; this one was woken up after its head was removed
+        if(e.head != e){
+            relink(e);
+            return;
+        }
+
+        boolean moving = false;
+
+        //update the whole line at once, front to back, so space freed up downstream is used in the same frame
+        for(ConveyorEntity m = e; m != null; m = previous(m)){
+            if(m != e){
+                //members are not updated by themselves, so their overdrive has to be handled here
+                m.timeScaleDuration -= Time.delta();
+                if(m.timeScaleDuration <= 0f){
+                    m.timeScale = 1f;
+                }
+
+                if(m.head != e){
+                    m.head = e;
+                    m.sleepNow();
+                }
+            }
+
+            ((Conveyor)m.block).updateItems(m.tile, m);
+            moving |= m.len > 0;
+        }
+
+        //skip updates if possible
+        if(moving){
+            e.noSleep();
+        }else{
+            e.sleep();
+        }
+    }
+
+    /** Moves the items of a single conveyor. */
+    protected void updateItems(Tile tile, ConveyorEntity e){
         e.minitem = 1f;
         e.mid = 0;
 
-        //skip updates if possible
         if(e.len == 0){
             e.clogHeat = 0f;
-            e.sleep();
             return;
         }
 
@@ -210,8 +285,6 @@ public class Conveyor extends Block implements Autotiler{
         }else{
             e.clogHeat = 0f;
         }
-
-        e.noSleep();
     }
 
     @Override
@@ -322,6 +395,10 @@ public class Conveyor extends Block implements Autotiler{
         @Nullable ConveyorEntity nextc;
         //whether the next conveyor's rotation == tile rotation
         boolean aligned;
+        //conveyor behind this one with the same rotation
+        @Nullable ConveyorEntity prevc;
+        //conveyor at the front of the line this conveyor is in, which updates all of it
+        @Nullable ConveyorEntity head;
 
         int lastInserted, mid;
         float minitem = 1;
@@ -341,6 +418,16 @@ public class Conveyor extends Block implements Autotiler{
             len++;
         }
 
+        @Override
+        public void noSleep(){
+            //conveyors in a line are updated by the head, so that is what needs to be woken up
+            if(head != null && head != this && !head.isDead()){
+                head.noSleep();
+            }else{
+                super.noSleep();
+            }
+        }
+
         final void remove(int o){
             for(int i = o; i < len - 1; i++){
                 ids[i] = ids[i + 1];
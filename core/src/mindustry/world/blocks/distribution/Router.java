@@ -30,7 +30,10 @@ public class Router extends Block{
             entity.items.clear();
         }
 
-        if(entity.lastItem != null){
+        if(entity.lastItem == null){
+            entity.sleep();
+        }else{
+            entity.noSleep();
             entity.time += 1f / speed * Time.delta();
             Tile target = getTileTarget(tile, entity.lastItem, entity.lastInput, false);
 
@@ -53,6 +56,7 @@ public class Router extends Block{
     @Override
     public void handleItem(Item item, Tile tile, Tile source){
         RouterEntity entity = tile.ent();
+        entity.noSleep();
         entity.items.add(item, 1);
         entity.lastItem = item;
         entity.time = 0f;
@@ -4,6 +4,7 @@ import arc.*;
 import arc.struct.*;
 import arc.math.*;
 import arc.util.*;
+import mindustry.entities.type.*;
 import mindustry.world.*;
 import mindustry.world.consumers.*;
 
@@ -12,12 +13,24 @@ public class PowerGraph{
     private final static Array<Tile> outArray1 = new Array<>();
     private final static Array<Tile> outArray2 = new Array<>();
     private final static IntSet closedSet = new IntSet();
+    /** Maps positions of tiles visited while splitting a graph to the search that found them. */
+    private final static IntIntMap visited = new IntIntMap();
+    private final static Array<Tile> roots = new Array<>();
 
     private final ObjectSet<Tile> producers = new ObjectSet<>();
     private final ObjectSet<Tile> consumers = new ObjectSet<>();
     private final ObjectSet<Tile> batteries = new ObjectSet<>();
     private final ObjectSet<Tile> all = new ObjectSet<>();
 
+    /** Dense copies of the sets above with per-tile constants, used for updating. Rebuilt when the members of this graph change. */
+    private Tile[] producerTiles = {}, consumerTiles = {}, batteryTiles = {};
+    private ConsumePower[] consumerPower = {};
+    private boolean[] consumerChecksOthers = {}, consumerValid = {}, batteryHasPower = {};
+    private float[] consumerRequests = {}, batteryCapacities = {};
+    private boolean dirty;
+    /** Whether producers or batteries were added or removed since power was last distributed. */
+    private boolean sourcesChanged;
+
     private final WindowedMean powerBalance = new WindowedMean(60);
     private float lastPowerProduced, lastPowerNeeded, lastUsageFraction;
 
@@ -61,8 +74,9 @@ public class PowerGraph{
     }
 
     public float getPowerProduced(){
+        rebuild();
         float powerProduced = 0f;
-        for(Tile producer : producers){
+        for(Tile producer : producerTiles){
             if(producer.entity == null) continue;
             powerProduced += producer.block().getPowerProduction(producer) * producer.entity.delta();
         }
@@ -70,119 +84,145 @@ public class PowerGraph{
     }
 
     public float getPowerNeeded(){
+        rebuild();
         float powerNeeded = 0f;
-        for(Tile consumer : consumers){
-            Consumers consumes = consumer.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
-                if(otherConsumersAreValid(consumer, consumePower)){
-                    powerNeeded += consumePower.requestedPower(consumer.entity) * consumer.entity.delta();
-                }
+        for(int i = 0; i < consumerTiles.length; i++){
+            Tile consumer = consumerTiles[i];
+            ConsumePower consumePower = consumerPower[i];
+            if(consumePower != null && (!consumerChecksOthers[i] || otherConsumersAreValid(consumer, consumePower))){
+                powerNeeded += consumePower.requestedPower(consumer.entity) * consumer.entity.delta();
             }
         }
         return powerNeeded;
     }
 
     public float getBatteryStored(){
+        rebuild();
         float totalAccumulator = 0f;
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                totalAccumulator += battery.entity.power.status * consumes.getPower().capacity;
-            }
+        for(int i = 0; i < batteryTiles.length; i++){
+            totalAccumulator += batteryTiles[i].entity.power.status * batteryCapacities[i];
         }
         return totalAccumulator;
     }
 
     public float getBatteryCapacity(){
+        rebuild();
         float totalCapacity = 0f;
-        for(Tile battery : batteries){
-            if(battery.block().consumes.hasPower()){
-                ConsumePower power = battery.block().consumes.getPower();
-                totalCapacity += (1f - battery.entity.power.status) * power.capacity;
-            }
+        for(int i = 0; i < batteryTiles.length; i++){
+            totalCapacity += (1f - batteryTiles[i].entity.power.status) * batteryCapacities[i];
         }
         return totalCapacity;
     }
 
     public float getTotalBatteryCapacity(){
+        rebuild();
         float totalCapacity = 0f;
-        for(Tile battery : batteries){
-            if(battery.block().consumes.hasPower()){
-                totalCapacity += battery.block().consumes.getPower().capacity;
-            }
+        for(float capacity : batteryCapacities){
+            totalCapacity += capacity;
         }
         return totalCapacity;
     }
 
     public float useBatteries(float needed){
-        float stored = getBatteryStored();
+        rebuild();
+        return useBatteries(needed, getBatteryStored());
+    }
+
+    private float useBatteries(float needed, float stored){
         if(Mathf.equal(stored, 0f)) return 0f;
 
         float used = Math.min(stored, needed);
         float consumedPowerPercentage = Math.min(1.0f, needed / stored);
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                battery.entity.power.status *= (1f-consumedPowerPercentage);
+        for(int i = 0; i < batteryTiles.length; i++){
+            if(batteryHasPower[i]){
+                batteryTiles[i].entity.power.status *= (1f-consumedPowerPercentage);
             }
         }
         return used;
     }
 
     public float chargeBatteries(float excess){
-        float capacity = getBatteryCapacity();
+        rebuild();
+        return chargeBatteries(excess, getBatteryCapacity());
+    }
+
+    private float chargeBatteries(float excess, float capacity){
         //how much of the missing in each battery % is charged
         float chargedPercent = Math.min(excess/capacity, 1f);
         if(Mathf.equal(capacity, 0f)) return 0f;
 
-        for(Tile battery : batteries){
-            Consumers consumes = battery.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
-                if(consumePower.capacity > 0f){
-                    battery.entity.power.status += (1f-battery.entity.power.status) * chargedPercent;
-                }
+        for(int i = 0; i < batteryTiles.length; i++){
+            if(batteryCapacities[i] > 0f){
+                TileEntity entity = batteryTiles[i].entity;
+                entity.power.status += (1f-entity.power.status) * chargedPercent;
             }
         }
         return Math.min(excess, capacity);
     }
 
     public void distributePower(float needed, float produced){
+        rebuild();
+        for(int i = 0; i < consumerTiles.length; i++){
+            Tile consumer = consumerTiles[i];
+            ConsumePower consumePower = consumerPower[i];
+            if(consumePower != null){
+                consumerRequests[i] = consumePower.requestedPower(consumer.entity) * consumer.entity.delta();
+                consumerValid[i] = !consumerChecksOthers[i] || otherConsumersAreValid(consumer, consumePower);
+            }
+        }
+        distributeRequested(needed, produced);
+    }
+
+    /** Distributes power using the requests and validity of each consumer computed earlier in this update. */
+    private void distributeRequested(float needed, float produced){
         //distribute even if not needed. this is because some might be requiring power but not using it; it updates consumers
         float coverage = Mathf.zero(needed) && Mathf.zero(produced) ? 0f : Mathf.zero(needed) ? 1f : Math.min(1, produced / needed);
-        for(Tile consumer : consumers){
-            Consumers consumes = consumer.block().consumes;
-            if(consumes.hasPower()){
-                ConsumePower consumePower = consumes.getPower();
-                if(consumePower.buffered){
-                    if(!Mathf.zero(consumePower.capacity)){
-                        // Add an equal percentage of power to all buffers, based on the global power coverage in this graph
-                        float maximumRate = consumePower.requestedPower(consumer.entity) * coverage * consumer.entity.delta();
-                        consumer.entity.power.status = Mathf.clamp(consumer.entity.power.status + maximumRate / consumePower.capacity);
-                    }
-                }else{
-                    //valid consumers get power as usual
-                    if(otherConsumersAreValid(consumer, consumePower)){
-                        consumer.entity.power.status = coverage;
-                    }else{ //invalid consumers get an estimate, if they were to activate
-                        consumer.entity.power.status = Math.min(1, produced / (needed + consumePower.usage * consumer.entity.delta()));
-                        //just in case
-                        if(Float.isNaN(consumer.entity.power.status)){
-                            consumer.entity.power.status = 0f;
-                        }
+        boolean sourcesChanged = this.sourcesChanged;
+        this.sourcesChanged = false;
+
+        for(int i = 0; i < consumerTiles.length; i++){
+            ConsumePower consumePower = consumerPower[i];
+            if(consumePower == null) continue;
+
+            TileEntity entity = consumerTiles[i].entity;
+            float lastStatus = entity.power.status;
+            if(consumePower.buffered){
+                if(!Mathf.zero(consumePower.capacity)){
+                    // Add an equal percentage of power to all buffers, based on the global power coverage in this graph
+                    float maximumRate = consumerRequests[i] * coverage;
+                    entity.power.status = Mathf.clamp(entity.power.status + maximumRate / consumePower.capacity);
+                }
+            }else{
+                //valid consumers get power as usual
+                if(consumerValid[i]){
+                    entity.power.status = coverage;
+                }else{ //invalid consumers get an estimate, if they were to activate
+                    entity.power.status = Math.min(1, produced / (needed + consumePower.usage * entity.delta()));
+                    //just in case
+                    if(Float.isNaN(entity.power.status)){
+                        entity.power.status = 0f;
                     }
                 }
             }
+
+            //consumers waiting for power are woken up when they gain or lose all of it, or when the sources of this graph change.
+            //other changes do not matter to them; the estimate given to invalid consumers changes with delta every frame
+            if(entity.isSleeping() && (sourcesChanged || Mathf.zero(lastStatus) != Mathf.zero(entity.power.status))){
+                entity.noSleep();
+            }
         }
     }
 
     public void update(){
         if(Core.graphics.getFrameId() == lastFrameUpdated){
             return;
-        }else if(!consumers.isEmpty() && consumers.first().isEnemyCheat()){
+        }
+
+        rebuild();
+
+        if(consumerTiles.length > 0 && consumerTiles[0].isEnemyCheat()){
             //when cheating, just set status to 1
-            for(Tile tile : consumers){
+            for(Tile tile : consumerTiles){
                 tile.entity.power.status = 1f;
             }
 
@@ -192,26 +232,52 @@ public class PowerGraph{
 
         lastFrameUpdated = Core.graphics.getFrameId();
 
-        float powerNeeded = getPowerNeeded();
-        float powerProduced = getPowerProduced();
+        //gather production, requests and battery state in one pass over each array
+        float powerProduced = 0f, powerNeeded = 0f, batteryStored = 0f, batteryCapacity = 0f;
+
+        for(Tile producer : producerTiles){
+            if(producer.entity == null) continue;
+            powerProduced += producer.block().getPowerProduction(producer) * producer.entity.delta();
+        }
+
+        for(int i = 0; i < consumerTiles.length; i++){
+            ConsumePower consumePower = consumerPower[i];
+            if(consumePower == null) continue;
+
+            Tile consumer = consumerTiles[i];
+            float requested = consumePower.requestedPower(consumer.entity) * consumer.entity.delta();
+            boolean valid = !consumerChecksOthers[i] || otherConsumersAreValid(consumer, consumePower);
+            consumerRequests[i] = requested;
+            consumerValid[i] = valid;
+            if(valid){
+                powerNeeded += requested;
+            }
+        }
+
+        for(int i = 0; i < batteryTiles.length; i++){
+            float status = batteryTiles[i].entity.power.status;
+            batteryStored += status * batteryCapacities[i];
+            batteryCapacity += (1f - status) * batteryCapacities[i];
+        }
+
         float rawProduced = powerProduced;
 
         lastPowerNeeded = powerNeeded;
         lastPowerProduced = powerProduced;
 
-        if(!(consumers.size == 0 && producers.size == 0 && batteries.size == 0)){
+        if(!(consumerTiles.length == 0 && producerTiles.length == 0 && batteryTiles.length == 0)){
 
             if(!Mathf.equal(powerNeeded, powerProduced)){
                 if(powerNeeded > powerProduced){
-                    float powerBatteryUsed = useBatteries(powerNeeded - powerProduced);
+                    float powerBatteryUsed = useBatteries(powerNeeded - powerProduced, batteryStored);
                     powerProduced += powerBatteryUsed;
                     lastPowerProduced += powerBatteryUsed;
                 }else if(powerProduced > powerNeeded){
-                    powerProduced -= chargeBatteries(powerProduced - powerNeeded);
+                    powerProduced -= chargeBatteries(powerProduced - powerNeeded, batteryCapacity);
                 }
             }
 
-            distributePower(powerNeeded, powerProduced);
+            distributeRequested(powerNeeded, powerProduced);
         }
 
         powerBalance.addValue((lastPowerProduced - lastPowerNeeded) / Time.delta());
@@ -223,7 +289,59 @@ public class PowerGraph{
         lastUsageFraction = Mathf.zero(rawProduced) ? 1f : Mathf.clamp(powerNeeded / rawProduced);
     }
 
+    /** Rebuilds the dense arrays and per-tile constants used for updating, if the members of this graph have changed. */
+    private void rebuild(){
+        if(!dirty) return;
+        dirty = false;
+
+        producerTiles = new Tile[producers.size];
+        int i = 0;
+        for(Tile tile : producers){
+            producerTiles[i++] = tile;
+        }
+
+        consumerTiles = new Tile[consumers.size];
+        consumerPower = new ConsumePower[consumers.size];
+        consumerChecksOthers = new boolean[consumers.size];
+        consumerValid = new boolean[consumers.size];
+        consumerRequests = new float[consumers.size];
+        i = 0;
+        for(Tile tile : consumers){
+            Consumers consumes = tile.block().consumes;
+            consumerTiles[i] = tile;
+            consumerPower[i] = consumes.hasPower() ? consumes.getPower() : null;
+            //only check other consumers if there are any that can be invalid
+            for(Consume cons : consumes.all()){
+                if(cons != consumerPower[i] && !cons.isOptional()){
+                    consumerChecksOthers[i] = true;
+                    break;
+                }
+            }
+            i++;
+        }
+
+        batteryTiles = new Tile[batteries.size];
+        batteryCapacities = new float[batteries.size];
+        batteryHasPower = new boolean[batteries.size];
+        i = 0;
+        for(Tile tile : batteries){
+            Consumers consumes = tile.block().consumes;
+            batteryTiles[i] = tile;
+            batteryHasPower[i] = consumes.hasPower();
+            batteryCapacities[i] = consumes.hasPower() ? consumes.getPower().capacity : 0f;
+            i++;
+        }
+    }
+
+    /** Merges another graph with this one. The tiles of the smaller graph are moved, so the graph that remains is not necessarily this one. */
     public void add(PowerGraph graph){
+        if(graph == this) return;
+
+        if(graph.all.size > all.size){
+            graph.add(this);
+            return;
+        }
+
         for(Tile tile : graph.all){
             add(tile);
         }
@@ -233,14 +351,18 @@ public class PowerGraph{
         if(tile.entity == null || tile.entity.power == null) return;
         tile.entity.power.graph = this;
         all.add(tile);
+        dirty = true;
 
         if(tile.block().outputsPower && tile.block().consumesPower && !tile.block().consumes.getPower().buffered){
             producers.add(tile);
             consumers.add(tile);
+            sourcesChanged = true;
         }else if(tile.block().outputsPower && tile.block().consumesPower){
             batteries.add(tile);
+            sourcesChanged = true;
         }else if(tile.block().outputsPower){
             producers.add(tile);
+            sourcesChanged = true;
         }else if(tile.block().consumesPower){
             consumers.add(tile);
         }
@@ -263,50 +385,142 @@ public class PowerGraph{
     }
 
     private void removeSingle(Tile tile){
+        dirty = true;
         all.remove(tile);
-        producers.remove(tile);
+        if(producers.remove(tile) | batteries.remove(tile)){
+            sourcesChanged = true;
+        }
         consumers.remove(tile);
-        batteries.remove(tile);
     }
 
     public void remove(Tile tile){
         removeSingle(tile);
-        //begin by clearing the closed set
-        closedSet.clear();
 
-        //go through all the connections of this tile
+        //find the distinct branches of this graph that were connected through this tile
+        roots.clear();
         for(Tile other : tile.block().getPowerConnections(tile, outArray1)){
-            //a graph has already been assigned to this tile from a previous call, skip it
-            if(other.entity.power.graph != this) continue;
+            if(other.entity.power.graph == this && !roots.contains(other, true)){
+                roots.add(other);
+            }
+        }
 
-            //create graph for this branch
-            PowerGraph graph = new PowerGraph();
-            graph.add(other);
-            //add to queue for BFS
-            queue.clear();
-            queue.addLast(other);
-            while(queue.size > 0){
-                //get child from queue
-                Tile child = queue.removeFirst();
-                //remove it from this graph
-                removeSingle(child);
-                //add it to the new branch graph
-                graph.add(child);
-                //go through connections
+        split(roots, tile);
+    }
+
+    /** Splits this graph if the two tiles are no longer connected, after a link between them has been removed. */
+    public void unlinked(Tile tile, Tile other){
+        roots.clear();
+        roots.add(tile);
+        if(other != tile) roots.add(other);
+
+        split(roots, null);
+    }
+
+    /**
+     * Moves the parts of this graph that are no longer connected to each other into new graphs.
+     * A search is started from each root, and all searches advance in lockstep; searches that reach each other are merged,
+     * and a search that runs out of tiles has found a separate graph. Once only one search is left, its remaining tiles stay in this graph,
+     * so only the smaller parts are ever traversed fully.
+     * @param removed tile that is no longer part of this graph and must not be traversed, or null
+     */
+    private void split(Array<Tile> roots, Tile removed){
+        int count = roots.size;
+        if(count <= 1) return;
+
+        int[] parents = new int[count];
+        boolean[] done = new boolean[count];
+        Array<Queue<Tile>> queues = new Array<>(count);
+        Array<Array<Tile>> members = new Array<>(count);
+        visited.clear();
+
+        for(int i = 0; i < count; i++){
+            Tile root = roots.get(i);
+            parents[i] = i;
+            queues.add(new Queue<>());
+            members.add(new Array<>());
+            queues.get(i).addLast(root);
+            members.get(i).add(root);
+            visited.put(root.pos(), i);
+        }
+
+        int active = count;
+
+        while(active > 1){
+            for(int i = 0; i < count && active > 1; i++){
+                if(parents[i] != i || done[i]) continue;
+
+                if(queues.get(i).size == 0){
+                    //everything reachable from this search has been found, so it is a separate graph
+                    done[i] = true;
+                    active--;
+                    continue;
+                }
+
+                Tile child = queues.get(i).removeFirst();
                 for(Tile next : child.block().getPowerConnections(child, outArray2)){
-                    //make sure it hasn't looped back, and that the new graph being assigned hasn't already been assigned
-                    //also skip closed tiles
-                    if(next != tile && next.entity.power.graph != graph && !closedSet.contains(next.pos())){
-                        queue.addLast(next);
-                        closedSet.add(next.pos());
+                    if(next == removed || next.entity.power.graph != this) continue;
+
+                    int other = visited.get(next.pos(), -1);
+                    if(other == -1){
+                        visited.put(next.pos(), i);
+                        queues.get(i).addLast(next);
+                        members.get(i).add(next);
+                    }else{
+                        other = find(parents, other);
+                        if(other != i){
+                            //the searches met, so they are part of the same graph
+                            mergeSearch(parents, queues, members, i, other);
+                            active--;
+                        }
                     }
                 }
             }
+        }
+
+        //the search that is still running keeps this graph; if every search finished, the largest one does
+        int kept = -1;
+        for(int i = 0; i < count; i++){
+            if(parents[i] == i && (kept == -1 || (!done[i] && done[kept]) || (done[i] == done[kept] && members.get(i).size > members.get(kept).size))){
+                kept = i;
+            }
+        }
+
+        for(int i = 0; i < count; i++){
+            if(parents[i] != i || i == kept) continue;
+
+            PowerGraph graph = new PowerGraph();
+            for(Tile tile : members.get(i)){
+                removeSingle(tile);
+                graph.add(tile);
+            }
             //update the graph once so direct consumers without any connected producer lose their power
             graph.update();
         }
     }
 
+    /** Merges search b into search a, copying the data of the smaller search into the larger one. */
+    private static void mergeSearch(int[] parents, Array<Queue<Tile>> queues, Array<Array<Tile>> members, int a, int b){
+        if(members.get(b).size > members.get(a).size){
+            queues.swap(a, b);
+            members.swap(a, b);
+        }
+
+        Queue<Tile> queue = queues.get(a);
+        for(Tile tile : queues.get(b)){
+            queue.addLast(tile);
+        }
+        members.get(a).addAll(members.get(b));
+        parents[b] = a;
+    }
+
+    private static int find(int[] parents, int i){
+        while(parents[i] != i){
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
     private boolean otherConsumersAreValid(Tile tile, Consume consumePower){
         for(Consume cons : tile.block().consumes.all()){
             if(cons != consumePower && !cons.isOptional() && !cons.valid(tile.ent())){
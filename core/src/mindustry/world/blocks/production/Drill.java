@@ -242,7 +242,11 @@ public class Drill extends Block{
 
         if(entity.dominantItem == null){
             countOre(tile);
-            if(returnItem == null) return;
+            if(returnItem == null){
+                //nothing to mine here until the surroundings change
+                entity.sleep();
+                return;
+            }
             entity.dominantItem = returnItem;
             entity.dominantItems = returnCount;
         }
@@ -273,9 +277,18 @@ public class Drill extends Block{
         }else{
             entity.lastDrillSpeed = 0f;
             entity.warmup = Mathf.lerpDelta(entity.warmup, 0f, warmupSpeed);
+
+            //without power or liquid and nothing to dump, wait to be woken up by input
+            if(!entity.cons.valid() && entity.items.total() == 0 && entity.warmup < 0.01f){
+                entity.sleep();
+            }else{
+                entity.noSleep();
+            }
             return;
         }
 
+        entity.noSleep();
+
         if(entity.dominantItems > 0 && entity.progress >= drillTime + hardnessDrillMultiplier * entity.dominantItem.hardness && tile.entity.items.total() < itemCapacity){
 
             offloadNear(tile, entity.dominantItem);
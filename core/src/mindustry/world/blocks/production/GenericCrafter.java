@@ -127,6 +127,14 @@ public class GenericCrafter extends Block{
         if(outputLiquid != null){
             tryDumpLiquid(tile, outputLiquid.liquid);
         }
+
+        //sleep while waiting for input with nothing left to output; receiving items, liquids or power wakes this up again
+        if(!entity.cons.valid() && entity.warmup < 0.01f && (outputItem == null || !entity.items.has(outputItem.item)) &&
+            (outputLiquid == null || entity.liquids.get(outputLiquid.liquid) < 0.01f)){
+            entity.sleep();
+        }else{
+            entity.noSleep();
+        }
     }
 
     @Override
@@ -2,6 +2,7 @@ package mindustry.world.blocks.storage;
 
 import arc.util.ArcAnnotate.*;
 import mindustry.entities.type.TileEntity;
+import mindustry.entities.type.Unit;
 import mindustry.type.Item;
 import mindustry.world.Block;
 import mindustry.world.Tile;
@@ -20,6 +21,27 @@ public abstract class StorageBlock extends Block{
         return entity.linkedCore != null ? entity.linkedCore.block().acceptItem(item, entity.linkedCore, source) : tile.entity.items.get(item) < getMaximumAccepted(tile, item);
     }
 
+    @Override
+    public void handleItem(Item item, Tile tile, Tile source){
+        super.handleItem(item, tile, source);
+        wakeUnloaders(tile);
+    }
+
+    @Override
+    public void handleStack(Item item, int amount, Tile tile, Unit source){
+        super.handleStack(item, amount, tile, source);
+        wakeUnloaders(tile);
+    }
+
+    /** Wakes up adjacent unloaders, which sleep while there is nothing to unload. */
+    protected void wakeUnloaders(Tile tile){
+        for(Tile other : tile.entity.proximity()){
+            if(other.block() instanceof Unloader){
+                other.entity.noSleep();
+            }
+        }
+    }
+
     @Override
     public int getMaximumAccepted(Tile tile, Item item){
         return itemCapacity;
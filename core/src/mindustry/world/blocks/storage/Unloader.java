@@ -56,6 +56,7 @@ public class Unloader extends Block{
     @Override
     public void configured(Tile tile, Player player, int value){
         tile.entity.items.clear();
+        tile.entity.noSleep();
         tile.<UnloaderEntity>ent().sortItem = content.item(value);
     }
 
@@ -75,6 +76,29 @@ public class Unloader extends Block{
         if(entity.items.total() > 0){
             tryDump(tile);
         }
+
+        if(idle(tile)){
+            entity.sleep();
+        }else{
+            entity.noSleep();
+        }
+    }
+
+    /** @return whether there is nothing to unload, and the adjacent blocks will wake this unloader up once there is. */
+    private boolean idle(Tile tile){
+        UnloaderEntity entity = tile.ent();
+        if(entity.items.total() > 0) return false;
+
+        for(Tile other : tile.entity.proximity()){
+            if(!other.interactable(tile.getTeam()) || !other.block().unloadable || !other.block().hasItems) continue;
+
+            //only storage that is not linked to a core wakes up unloaders when receiving items
+            if(!(other.entity instanceof StorageBlockEntity) || ((StorageBlockEntity)other.entity).linkedCore != null) return false;
+
+            if((entity.sortItem == null && other.entity.items.total() > 0) || hasItem(other, entity.sortItem)) return false;
+        }
+
+        return true;
     }
 
     /**
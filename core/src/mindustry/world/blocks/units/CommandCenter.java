@@ -8,6 +8,7 @@ import arc.scene.ui.*;
 import arc.scene.ui.layout.*;
 import arc.struct.*;
 import arc.util.*;
+import mindustry.ai.*;
 import mindustry.content.*;
 import mindustry.entities.*;
 import mindustry.entities.Effects.*;
@@ -42,7 +43,7 @@ public class CommandCenter extends Block{
     @Override
     public void placed(Tile tile){
         super.placed(tile);
-        ObjectSet<Tile> set = indexer.getAllied(tile.getTeam(), BlockFlag.comandCenter);
+        TileSet set = indexer.getAllied(tile.getTeam(), BlockFlag.comandCenter);
 
         if(set.size > 0){
             CommandCenterEntity entity = tile.ent();
@@ -55,7 +56,7 @@ public class CommandCenter extends Block{
     public void removed(Tile tile){
         super.removed(tile);
 
-        ObjectSet<Tile> set = indexer.getAllied(tile.getTeam(), BlockFlag.comandCenter);
+        TileSet set = indexer.getAllied(tile.getTeam(), BlockFlag.comandCenter);
 
         if(set.size == 1){
             Units.each(tile.getTeam(), u -> u.onCommand(UnitCommand.all[0]));
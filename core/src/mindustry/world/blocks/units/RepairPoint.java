@@ -128,8 +128,7 @@ public class RepairPoint extends Block{
 
         if(entity.timer.get(timerTarget, 20)){
             rect.setSize(repairRadius * 2).setCenter(tile.drawx(), tile.drawy());
-            entity.target = Units.closest(tile.getTeam(), tile.drawx(), tile.drawy(), repairRadius,
-            unit -> unit.health < unit.maxHealth());
+            entity.target = Units.closestDamaged(tile.getTeam(), tile.drawx(), tile.drawy(), repairRadius);
         }
     }
 
@@ -9,15 +9,18 @@ import arc.util.*;
 import arc.util.Timer;
 import arc.util.CommandHandler.*;
 import arc.util.Timer.*;
+import arc.util.async.*;
 import arc.util.serialization.*;
 import arc.util.serialization.JsonValue.*;
 import mindustry.*;
+import mindustry.ai.Pathfinder.*;
 import mindustry.core.GameState.*;
 import mindustry.core.*;
 import mindustry.entities.*;
 import mindustry.entities.type.*;
 import mindustry.game.*;
 import mindustry.game.EventType.*;
+import mindustry.game.Teams.*;
 import mindustry.gen.*;
 import mindustry.io.*;
 import mindustry.maps.Map;
@@ -53,6 +56,11 @@ public class ServerControl implements ApplicationListener{
     private Gamemode lastMode = Gamemode.survival;
     private @Nullable Map nextMapOverride;
 
+    /** Compresses and writes autosaves in the background. */
+    private final AsyncExecutor autosaveExecutor = new AsyncExecutor(1);
+    private volatile boolean autosaving;
+    private long lastAutosave;
+
     private Thread socketThread;
     private ServerSocket serverSocket;
     private PrintWriter socketOutput;
@@ -164,6 +172,8 @@ public class ServerControl implements ApplicationListener{
         });
 
         Events.on(PlayEvent.class, e -> {
+            lastAutosave = Time.millis();
+
             try{
                 JsonValue value = JsonIO.json().fromJson(null, Core.settings.getString("globalrules"));
                 JsonIO.json().readFields(state.rules, value);
@@ -197,6 +207,7 @@ public class ServerControl implements ApplicationListener{
         handler.register("exit", "Exit the server application.", arg -> {
             info("Shutting down server.");
             net.dispose();
+            netServer.admins.flush();
             Core.app.exit();
         });
 
@@ -293,6 +304,17 @@ public class ServerControl implements ApplicationListener{
                 }
 
                 info("  &ly{0} FPS, {1} MB used.", Core.graphics.getFramesPerSecond(), Core.app.getJavaHeap() / 1024 / 1024);
+                info("  &ly{0} tile entities awake, {1} sleeping.", tileGroup.size(), TileEntity.sleepingEntities);
+                info("  &ly{0} entities waiting to retarget, {1} retargeted last frame.", targeting.queueDepth(), targeting.lastGranted());
+
+                for(TeamData data : state.teams.getActive()){
+                    for(PathTarget target : PathTarget.all){
+                        float time = pathfinder.convergenceTime(data.team, target);
+                        if(time >= 0){
+                            info("  &lyPathfinding for {0}/{1} converged in {2}ms.", data.team.name, target.name(), Strings.fixed(time, 1));
+                        }
+                    }
+                }
 
                 if(playerGroup.size() > 0){
                     info("  &lyPlayers: {0}", playerGroup.size());
@@ -491,7 +513,7 @@ public class ServerControl implements ApplicationListener{
             }
         });
 
-        handler.register("subnet-ban", "[add/remove] [address]", "Ban a subnet. This simply rejects all connections with IPs starting with some string.", arg -> {
+        handler.register("subnet-ban", "[add/remove] [address]", "Ban a subnet. This rejects all connections with IPs in a CIDR range (e.g. 10.0.0.0/8), or starting with some string.", arg -> {
             if(arg.length == 0){
                 Log.info("Subnets banned: &lc{0}", netServer.admins.getSubnetBans().isEmpty() ? "<none>" : "");
                 for(String subnet : netServer.admins.getSubnetBans()){
@@ -665,6 +687,7 @@ public class ServerControl implements ApplicationListener{
             
             if(info != null){
                 info.lastKicked = 0;
+                netServer.admins.save();
                 info("Pardoned player: {0}", info.lastName);
             }else{
                 err("That ID can't be found.");
@@ -931,6 +954,59 @@ public class ServerControl implements ApplicationListener{
         }
     }
 
+    @Override
+    public void update(){
+        if(Config.autosave.bool() && state.is(State.playing) && !autosaving && Time.timeSinceMillis(lastAutosave) > Config.autosaveSpacing.num() * 1000L){
+            autosave();
+        }
+    }
+
+    /** Captures the game state on the main thread, then compresses and writes it on a background thread, rotating older autosaves. */
+    private void autosave(){
+        lastAutosave = Time.millis();
+        autosaving = true;
+
+        long start = Time.nanos();
+        byte[] data = SaveIO.capture();
+        float captureTime = Time.timeSinceNanos(start) / 1000000f;
+        int amount = Math.max(Config.autosaveAmount.num(), 1);
+
+        autosaveExecutor.submit(() -> {
+            try{
+                long writeStart = Time.nanos();
+
+                //write to a temporary file first, so a failed write neither corrupts nor rotates away the last autosave
+                Fi file = autosaveFile(0), temp = file.sibling(file.name() + ".tmp");
+                SaveIO.write(temp, data);
+
+                //shift older autosaves back by one, deleting the oldest
+                for(int i = amount - 1; i >= 0; i--){
+                    Fi other = autosaveFile(i);
+                    if(!other.exists()) continue;
+
+                    if(i == amount - 1){
+                        other.delete();
+                    }else{
+                        other.moveTo(autosaveFile(i + 1));
+                    }
+                }
+
+                temp.moveTo(file);
+                float writeTime = Time.timeSinceNanos(writeStart) / 1000000f;
+
+                Core.app.post(() -> info("&lcAutosaved to &ly{0}&lc. Capture: &ly{1}ms&lc, write: &ly{2}ms&lc.", file.name(), Strings.fixed(captureTime, 1), Strings.fixed(writeTime, 1)));
+            }catch(Throwable t){
+                Core.app.post(() -> err("Failed to autosave: {0}", Strings.parseException(t, true)));
+            }finally{
+                autosaving = false;
+            }
+        });
+    }
+
+    private Fi autosaveFile(int index){
+        return saveDirectory.child("autosave-" + index + "." + saveExtension);
+    }
+
     private void logToFile(String text){
         if(currentLogFile != null && currentLogFile.length() > maxLogLength){
             String date = DateTimeFormatter.ofPattern("MM-dd-yyyy | HH:mm:ss").format(LocalDateTime.now());
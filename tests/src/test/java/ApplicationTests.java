@@ -1,24 +1,47 @@
 import arc.*;
 import arc.backend.headless.*;
+import arc.files.*;
+import arc.func.*;
+import arc.graphics.*;
+import arc.math.*;
+import arc.math.geom.QuadTree.*;
 import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
 import mindustry.*;
+import mindustry.ai.*;
+import mindustry.ai.Pathfinder.*;
+import mindustry.ai.TargetScheduler.*;
 import mindustry.content.*;
 import mindustry.core.*;
 import mindustry.core.GameState.*;
 import mindustry.ctype.*;
+import mindustry.entities.*;
 import mindustry.entities.traits.BuilderTrait.*;
 import mindustry.entities.type.*;
 import mindustry.entities.type.base.*;
+import mindustry.game.EventType.*;
 import mindustry.game.*;
 import mindustry.io.*;
 import mindustry.maps.*;
+import mindustry.maps.filters.*;
+import mindustry.net.*;
+import mindustry.net.Administration.*;
+import mindustry.net.ArcNetProvider.*;
+import mindustry.net.EntityDeltas.*;
 import mindustry.net.Net;
+import mindustry.net.Packets.*;
 import mindustry.type.*;
 import mindustry.world.*;
 import mindustry.world.blocks.*;
+import mindustry.world.blocks.storage.*;
+import mindustry.world.blocks.storage.CoreBlock.*;
 import org.junit.jupiter.api.*;
+import power.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
 
 import static mindustry.Vars.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -110,17 +133,224 @@ public class ApplicationTests{
 
     @Test
     void createMap(){
-        Tile[][] tiles = world.createTiles(8, 8);
+        Tiles tiles = world.createTiles(8, 8);
 
         world.beginMapLoad();
-        for(int x = 0; x < tiles.length; x++){
-            for(int y = 0; y < tiles[0].length; y++){
-                tiles[x][y] = new Tile(x, y);
+        for(int x = 0; x < tiles.width; x++){
+            for(int y = 0; y < tiles.height; y++){
+                tiles.create(x, y, 0, 0, 0);
             }
         }
         world.endMapLoad();
     }
 
+    @Test
+    void mapIndex(){
+        Fi dir = Core.settings.getDataDirectory().child("test-maps/");
+        dir.deleteDirectory();
+
+        int amount = 200;
+        for(int i = 0; i < amount; i++){
+            testMap.file.copyTo(dir.child("map" + i + "." + mapExtension));
+        }
+
+        Fi previous = customMapDirectory;
+        customMapDirectory = dir;
+        try{
+            long cold = Time.nanos();
+            maps.reload();
+            cold = Time.timeSinceNanos(cold);
+            assertEquals(amount, maps.customMaps().size);
+
+            long warm = Time.nanos();
+            maps.reload();
+            warm = Time.timeSinceNanos(warm);
+            assertEquals(amount, maps.customMaps().size);
+
+            Map map = maps.customMaps().find(m -> m.file.name().equals("map1." + mapExtension));
+            assertEquals(testMap.name(), map.name());
+            assertEquals(testMap.width, map.width);
+            assertEquals(testMap.height, map.height);
+            assertEquals(testMap.tags, map.tags);
+
+            //changed files are read again
+            Map other = maps.loadInternalMap("frozenForest");
+            other.file.copyTo(map.file);
+            maps.reload();
+            assertEquals(other.name(), maps.customMaps().find(m -> m.file.name().equals("map1." + mapExtension)).name());
+
+            Log.info("{0} maps: {1}ms without index, {2}ms with index", amount, cold / 1000000f, warm / 1000000f);
+        }finally{
+            customMapDirectory = previous;
+            maps.reload();
+            dir.deleteDirectory();
+        }
+    }
+
+    @Test
+    void mapIndexLongTags(){
+        Fi file = Core.settings.getDataDirectory().child("index-test." + mapExtension), indexFile = Core.settings.getDataDirectory().child("map-index-test.dat");
+        testMap.file.copyTo(file);
+        indexFile.delete();
+
+        //rules of maps with many custom waves can be longer than writeUTF allows
+        StringMap tags = new StringMap(testMap.tags);
+        tags.put("rules", new String(new char[70000]).replace('\0', 'a'));
+
+        MapIndex index = new MapIndex(indexFile);
+        index.load();
+        index.put(new Map(file, testMap.width, testMap.height, tags, true));
+        index.save();
+
+        MapIndex loaded = new MapIndex(indexFile);
+        loaded.load();
+        Map map = loaded.get(file, true);
+        assertNotNull(map);
+        assertEquals(tags, map.tags);
+
+        file.delete();
+        indexFile.delete();
+    }
+
+    @Test
+    void parallelFilters(){
+        int size = 512;
+        Array<GenerateFilter> filters = Array.with(
+            new TerrainFilter(), new NoiseFilter(), new RiverNoiseFilter(), new DistortFilter(), new MedianFilter(),
+            new OreFilter(), new OreMedianFilter(), new BlendFilter(), new MirrorFilter(), new ClearFilter()
+        );
+        filters.each(GenerateFilter::randomize);
+
+        Block[] floors = {Blocks.stone, Blocks.sand, Blocks.ice, Blocks.water, Blocks.darksand};
+        Block[] blocks = {Blocks.air, Blocks.air, Blocks.rocks, Blocks.sandRocks, Blocks.copperWall};
+        Block[] overlays = {Blocks.air, Blocks.oreCopper, Blocks.oreLead};
+        Rand rand = new Rand(7);
+
+        FilterPipeline serial = new FilterPipeline(size, size), parallel = new FilterPipeline(size, size);
+        serial.parallel = false;
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                Block floor = floors[rand.nextInt(floors.length)], block = blocks[rand.nextInt(blocks.length)], overlay = overlays[rand.nextInt(overlays.length)];
+                serial.set(x, y, floor, block, overlay);
+                parallel.set(x, y, floor, block, overlay);
+            }
+        }
+
+        long serialTime = Time.nanos();
+        serial.apply(filters);
+        serialTime = Time.timeSinceNanos(serialTime);
+
+        long parallelTime = Time.nanos();
+        parallel.apply(filters);
+        parallelTime = Time.timeSinceNanos(parallelTime);
+
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                assertSame(serial.floor(x, y), parallel.floor(x, y), "Floor at " + x + ", " + y);
+                assertSame(serial.block(x, y), parallel.block(x, y), "Block at " + x + ", " + y);
+                assertSame(serial.overlay(x, y), parallel.overlay(x, y), "Overlay at " + x + ", " + y);
+            }
+        }
+
+        Log.info("{0} filters on {1}x{1} tiles: {2}ms serial, {3}ms parallel", filters.size, size, serialTime / 1000000f, parallelTime / 1000000f);
+    }
+
+    @Test
+    void tileMemory(){
+        int size = 1000;
+        long before = usedMemory();
+        Tiles tiles = new Tiles(size, size);
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                tiles.create(x, y, Blocks.stone.id, Blocks.oreCopper.id, 0);
+            }
+        }
+        long arrayBytes = usedMemory() - before;
+
+        //creating every view is the worst case, as only tiles that are used get one
+        before = usedMemory();
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                tiles.getn(x, y);
+            }
+        }
+        long viewBytes = usedMemory() - before;
+
+        //tiles used to be objects with references to their content
+        LegacyTile[][] legacy = new LegacyTile[size][size];
+        before = usedMemory();
+        for(int x = 0; x < size; x++){
+            for(int y = 0; y < size; y++){
+                legacy[x][y] = new LegacyTile(x, y, Blocks.stone, Blocks.oreCopper, Blocks.air);
+            }
+        }
+        long legacyBytes = usedMemory() - before;
+
+        Tile tile = tiles.getn(size - 1, size - 1);
+        assertSame(tile, tiles.get(size - 1, size - 1));
+        assertSame(tile, tiles.geti(tiles.index(size - 1, size - 1)));
+        assertNull(tiles.get(size, 0));
+        assertSame(Blocks.stone, tile.floor());
+        assertSame(Blocks.oreCopper, tile.overlay());
+        assertSame(Blocks.air, tile.block());
+        assertSame(Items.copper, tile.drop());
+
+        //views read and write the arrays
+        tile.rotation(3);
+        assertEquals(3, tiles.rotation(tiles.index(size - 1, size - 1)));
+        tiles.setFloor(tiles.index(size - 1, size - 1), (Floor)Blocks.sand);
+        assertSame(Blocks.sand, tile.floor());
+        assertSame(Blocks.air, tile.overlay());
+        assertNotNull(legacy[size - 1][size - 1]);
+
+        Log.info("{0}x{0} tiles: {1} bytes per tile in arrays, {2} more per created view, {3} bytes per tile as objects with content references",
+            size, arrayBytes / (float)(size * size), viewBytes / (float)(size * size), legacyBytes / (float)(size * size));
+    }
+
+    @Test
+    void tileViews(){
+        world.loadMap(testMap);
+        Tiles tiles = world.getTiles();
+
+        //loading a map and indexing it reads the arrays, so only tiles that are used get views
+        int views = 0;
+        for(int i = 0; i < tiles.width * tiles.height; i++){
+            Tile tile = tiles.cached(i);
+            if(tile != null){
+                views++;
+                assertSame(tile, world.tile(i % tiles.width, i / tiles.width));
+            }else{
+                assertFalse(tiles.block(i).hasEntity(), "Tile with an entity has no view: " + tiles.block(i));
+            }
+        }
+
+        assertTrue(views < tiles.width * tiles.height / 2, views + " views for " + tiles.width * tiles.height + " tiles");
+    }
+
+    static long usedMemory(){
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    /** Field layout of tiles before they were stored in arrays, for comparing memory usage. */
+    static class LegacyTile{
+        byte cost = 1;
+        TileEntity entity;
+        short x, y;
+        Block block, floor, overlay;
+        byte rotation, team;
+
+        LegacyTile(int x, int y, Block floor, Block overlay, Block block){
+            this.x = (short)x;
+            this.y = (short)y;
+            this.floor = floor;
+            this.overlay = overlay;
+            this.block = block;
+        }
+    }
+
     @Test
     void multiblock(){
         createMap();
@@ -200,6 +430,80 @@ public class ApplicationTests{
         SaveIO.save(saveDirectory.child("0.msav"));
     }
 
+    @Test
+    void networkMapSections() throws IOException{
+        world.loadMap(testMap);
+        Tile core = state.teams.playerCores().first().tile;
+        core.entity.items.clear();
+        core.entity.items.add(Items.copper, 123);
+
+        int version = world.version();
+        ByteArrayOutputStream tiles = new ByteArrayOutputStream(), entities = new ByteArrayOutputStream();
+        SaveIO.getSaveWriter().writeMapTiles(new DataOutputStream(tiles));
+        SaveIO.getSaveWriter().writeTileEntities(new DataOutputStream(entities));
+
+        //tile entity state does not change the world version, so the tile section stays cached
+        core.entity.items.add(Items.lead, 10);
+        assertEquals(version, world.version());
+
+        short[] blocks = new short[world.width() * world.height()];
+        for(int i = 0; i < blocks.length; i++){
+            blocks[i] = world.rawTile(i % world.width(), i / world.width()).blockID();
+        }
+
+        resetWorld();
+        SaveIO.getSaveWriter().readMap(new DataInputStream(new ByteArrayInputStream(tiles.toByteArray())), new DataInputStream(new ByteArrayInputStream(entities.toByteArray())), world.context);
+
+        for(int i = 0; i < blocks.length; i++){
+            assertEquals(blocks[i], world.rawTile(i % world.width(), i / world.width()).blockID());
+        }
+        Tile read = world.tile(core.x, core.y);
+        assertEquals(123, read.entity.items.get(Items.copper));
+        assertEquals(0, read.entity.items.get(Items.lead));
+
+        read.setBlock(Blocks.air);
+        assertNotEquals(version, world.version());
+    }
+
+    @Test
+    void backgroundSave() throws InterruptedException{
+        world.loadMap(testMap);
+        state.set(State.playing);
+        state.wave = 5;
+        CoreEntity core = state.teams.playerCores().first();
+        core.items.clear();
+        core.items.add(Items.copper, 100);
+
+        byte[] data = SaveIO.capture();
+
+        Fi file = saveDirectory.child("background.msav");
+        Throwable[] error = {null};
+        Thread writer = new Thread(() -> {
+            try{
+                SaveIO.write(file, data);
+            }catch(Throwable t){
+                error[0] = t;
+            }
+        });
+        writer.start();
+
+        //the game keeps running while the captured state is written
+        for(int i = 0; i < 100; i++){
+            core.items.add(Items.copper, 1);
+            state.wave++;
+            updateTiles(1);
+        }
+        writer.join();
+
+        assertNull(error[0]);
+        assertTrue(SaveIO.isSaveValid(file));
+
+        resetWorld();
+        SaveIO.load(file);
+        assertEquals(5, state.wave);
+        assertEquals(100, state.teams.playerCores().first().items.get(Items.copper));
+    }
+
     @Test
     void load(){
         world.loadMap(testMap);
@@ -214,6 +518,435 @@ public class ApplicationTests{
         assertTrue(state.teams.playerCores().size > 0);
     }
 
+    @Test
+    void streamingMapPreview(){
+        MapPreview preview = assertDoesNotThrow(() -> MapIO.readPreview(testMap.file));
+
+        //build the expected preview from loaded tiles
+        SaveIO.load(testMap.file);
+        int width = world.width(), height = world.height(), black = Color.rgba8888(Color.black);
+        assertEquals(width, preview.width);
+        assertEquals(height, preview.height);
+
+        int spawns = 0;
+        IntSet teams = new IntSet();
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                Tile tile = world.rawTile(x, y);
+                int floor = tile.overlay() != Blocks.air ? MapIO.colorFor(Blocks.air, Blocks.air, tile.overlay(), Team.derelict) : MapIO.colorFor(tile.floor(), Blocks.air, Blocks.air, Team.derelict);
+                int wall = MapIO.colorFor(Blocks.air, tile.block(), Blocks.air, tile.getTeam());
+                Tile above = world.tile(x, y + 1);
+                boolean shaded = above != null && MapIO.colorFor(Blocks.air, above.block(), Blocks.air, above.getTeam()) != black;
+
+                //walls shade the floor below them with half-transparent black
+                int expected = wall != black ? wall : !shaded ? floor : Color.rgba8888(Tmp.c1.set(floor).lerp(Color.black, 0.5f).a(1f));
+                int actual = preview.pixels[x + (height - 1 - y) * width];
+
+                if(wall != black || !shaded){
+                    assertEquals(expected, actual, "Pixel at " + x + ", " + y);
+                }else{
+                    //blending rounds differently
+                    Tmp.c2.set(actual);
+                    assertEquals(Tmp.c1.r, Tmp.c2.r, 2f / 255f, "Pixel at " + x + ", " + y);
+                    assertEquals(Tmp.c1.g, Tmp.c2.g, 2f / 255f, "Pixel at " + x + ", " + y);
+                    assertEquals(Tmp.c1.b, Tmp.c2.b, 2f / 255f, "Pixel at " + x + ", " + y);
+                    assertEquals(1f, Tmp.c2.a, "Pixel at " + x + ", " + y);
+                }
+
+                if(tile.overlay() == Blocks.spawn) spawns++;
+                if(tile.block() instanceof CoreBlock) teams.add(tile.getTeamID());
+            }
+        }
+
+        assertEquals(spawns, preview.spawns);
+        assertEquals(teams, preview.teams);
+        assertTrue(teams.size > 0);
+    }
+
+    @Test
+    void saveIndex(){
+        world.loadMap(testMap);
+        state.wave = 12;
+        Fi save = saveDirectory.child("index-test.msav"), indexFile = saveDirectory.child("index-test.dat");
+        SaveIO.save(save);
+        indexFile.delete();
+
+        SaveIndex index = new SaveIndex(indexFile);
+        index.load();
+        assertNull(index.get(save));
+
+        SaveMeta written = SaveIO.getMeta(save);
+        //tag values longer than writeUTF allows must not prevent the index from being written
+        written.tags.put("long", new String(new char[70000]).replace('\0', 'a'));
+        index.put(save, written);
+        index.save();
+
+        SaveIndex loaded = new SaveIndex(indexFile);
+        loaded.load();
+        SaveIndex.Entry entry = loaded.get(save);
+        assertNotNull(entry);
+        assertNull(entry.zone);
+        assertEquals(Gamemode.bestFit(written.rules), entry.mode);
+        assertEquals(70000, entry.tags.get("long").length());
+
+        SaveMeta meta = new SaveMeta(entry.tags), read = SaveIO.getMeta(save);
+        assertEquals(12, meta.wave);
+        assertEquals(read.timestamp, meta.timestamp);
+        assertEquals(read.map, meta.map);
+        assertEquals(read.rules.waves, meta.rules.waves);
+
+        //changed saves are not returned
+        SaveIO.save(save);
+        assertTrue(save.file().setLastModified(save.lastModified() + 2000));
+        assertNull(loaded.get(save));
+
+        save.delete();
+        indexFile.delete();
+    }
+
+    @Test
+    void tileSetClosest(){
+        world.loadMap(testMap);
+
+        TileSet set = new TileSet(world.width(), world.height(), 16);
+        Array<Tile> tiles = new Array<>();
+        Rand rand = new Rand(0);
+
+        for(int i = 0; i < 100; i++){
+            Tile tile = world.tile(rand.random(world.width() - 1), rand.random(world.height() - 1));
+            if(set.add(tile)){
+                tiles.add(tile);
+            }
+        }
+
+        for(int i = 0; i < 30; i++){
+            Tile removed = tiles.removeIndex(rand.random(tiles.size - 1));
+            assertTrue(set.remove(removed));
+        }
+
+        assertEquals(tiles.size, set.size);
+        int iterated = 0;
+        for(Tile tile : set){
+            assertTrue(tiles.contains(tile, true));
+            iterated++;
+        }
+        assertEquals(tiles.size, iterated);
+
+        for(int i = 0; i < 100; i++){
+            float x = rand.random(world.unitWidth()), y = rand.random(world.unitHeight());
+            float expected = Float.MAX_VALUE;
+            for(Tile tile : tiles){
+                expected = Math.min(expected, Mathf.dst2(x, y, tile.worldx(), tile.worldy()));
+            }
+
+            Tile closest = set.findClosest(x, y);
+            assertEquals(expected, Mathf.dst2(x, y, closest.worldx(), closest.worldy()), 0.01f);
+        }
+    }
+
+    @Test
+    void targetBench(){
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        Rand rand = new Rand(0);
+        for(int i = 0; i < 1000; i++){
+            BaseUnit unit = (i % 2 == 0 ? UnitTypes.dagger : UnitTypes.wraith).create(Team.crux);
+            unit.set(rand.nextFloat() * world.unitWidth(), rand.nextFloat() * world.unitHeight());
+            unit.add();
+        }
+        unitGroup.updateEvents();
+        collisions.updatePhysics(unitGroup);
+        collisions.updatePhysics(playerGroup);
+        Units.targets.rebuild();
+
+        float[] turrets = new float[300 * 2];
+        for(int i = 0; i < turrets.length; i++){
+            turrets[i] = rand.nextFloat() * (i % 2 == 0 ? world.unitWidth() : world.unitHeight());
+        }
+
+        float range = 220f;
+        long indexTime = 0, lambdaTime = 0;
+
+        for(int frame = 0; frame < 20; frame++){
+            for(int i = 0; i < turrets.length; i += 2){
+                float x = turrets[i], y = turrets[i + 1];
+                boolean air = i % 4 == 0;
+
+                long start = Time.nanos();
+                Unit indexed = Units.targets.closestEnemy(Team.sharded, x, y, range, air, true);
+                indexTime += Time.timeSinceNanos(start);
+
+                start = Time.nanos();
+                Unit expected = Units.closestEnemy(Team.sharded, x, y, range, e -> !e.isDead() && (!e.isFlying() || air));
+                lambdaTime += Time.timeSinceNanos(start);
+
+                assertSame(expected, indexed);
+            }
+        }
+
+        Log.info("Target index: {0}ms, lambda queries: {1}ms", indexTime / 1000000f, lambdaTime / 1000000f);
+    }
+
+    @Test
+    void parallelUnitQueries() throws InterruptedException{
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        Rand rand = new Rand(1);
+        for(int i = 0; i < 500; i++){
+            BaseUnit unit = (i % 2 == 0 ? UnitTypes.dagger : UnitTypes.wraith).create(i % 3 == 0 ? Team.sharded : Team.crux);
+            unit.set(rand.nextFloat() * world.unitWidth(), rand.nextFloat() * world.unitHeight());
+            unit.add();
+        }
+        unitGroup.updateEvents();
+        collisions.updatePhysics(unitGroup);
+        collisions.updatePhysics(playerGroup);
+
+        int queries = 400;
+        float range = 120f;
+        float[] points = new float[queries * 2];
+        for(int i = 0; i < points.length; i++){
+            points[i] = rand.nextFloat() * (i % 2 == 0 ? world.unitWidth() : world.unitHeight());
+        }
+
+        //expected results, found by checking every unit
+        Unit[] expected = new Unit[queries];
+        int[] expectedAllies = new int[queries];
+        for(int i = 0; i < queries; i++){
+            float x = points[i * 2], y = points[i * 2 + 1], closest = range * range;
+            for(BaseUnit unit : unitGroup.all()){
+                float dst = Mathf.dst2(x, y, unit.x, unit.y);
+                if(unit.getTeam() == Team.crux && dst < closest){
+                    expected[i] = unit;
+                    closest = dst;
+                }
+                if(unit.getTeam() == Team.sharded && unit.withinDst(x, y, range)){
+                    expectedAllies[i]++;
+                }
+            }
+        }
+
+        Unit[] found = new Unit[queries];
+        int[] foundAllies = new int[queries];
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++){
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                UnitQuery query = UnitQuery.get();
+                for(int i = offset; i < queries; i += threads.length){
+                    float x = points[i * 2], y = points[i * 2 + 1];
+                    found[i] = query.closestEnemy(Team.sharded, x, y, range, true, true);
+                    foundAllies[i] = query.nearby(Team.sharded, x, y, range).size;
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+
+        for(int i = 0; i < queries; i++){
+            assertSame(expected[i], found[i]);
+            assertEquals(expectedAllies[i], foundAllies[i]);
+        }
+    }
+
+    @Test
+    void playerDatabase(){
+        Fi file = Core.settings.getDataDirectory().child("test-players.dat");
+        file.delete();
+
+        Administration admins = new Administration(file);
+        for(int i = 0; i < 3000; i++){
+            admins.updatePlayerJoined("uuid" + i, "10.0." + (i / 256) + "." + (i % 256), "[red]Player" + i);
+        }
+        //join again, so that the file contains replaced records and is compacted
+        for(int i = 0; i < 3000; i++){
+            admins.updatePlayerJoined("uuid" + i, "10.0." + (i / 256) + "." + (i % 256), "Renamed" + i);
+        }
+        admins.banPlayerID("uuid5");
+        admins.banPlayerIP("10.0.0.7");
+        admins.adminPlayer("uuid9", "usid");
+        admins.flush();
+
+        Administration loaded = new Administration(file);
+        assertEquals(2, loaded.getInfo("uuid10").timesJoined);
+        assertEquals("Renamed10", loaded.getInfo("uuid10").lastName);
+        assertTrue(loaded.isIDBanned("uuid5"));
+        assertTrue(loaded.isIDBanned("uuid7"));
+        assertTrue(loaded.isIPBanned("10.0.0.7"));
+        assertFalse(loaded.isIDBanned("uuid8"));
+        assertTrue(loaded.isAdmin("uuid9", "usid"));
+
+        assertSame(loaded.getInfo("uuid300"), loaded.findByIP("10.0.1.44"));
+        assertTrue(loaded.findByName("[red]Player42").contains(loaded.getInfo("uuid42")));
+        assertTrue(loaded.findByName("renamed42").contains(loaded.getInfo("uuid42")));
+        assertEquals(11, loaded.searchNames("Player42").size);
+        assertEquals(1, loaded.searchNames("renamed2999").size);
+
+        file.delete();
+    }
+
+    @Test
+    void playerStoreTruncated() throws IOException{
+        Fi file = Core.settings.getDataDirectory().child("test-store.dat");
+
+        //the file ends in the middle of the length of a key, the middle of a key, and the middle of a value
+        for(byte[] tail : new byte[][]{{0}, {0, 5, 'u', 'u'}, {0, 1, 'u', 0, 0, 0, 8, 1, 2}}){
+            file.delete();
+
+            PlayerStore store = new PlayerStore(file);
+            store.load();
+            ObjectMap<String, byte[]> records = new ObjectMap<>();
+            records.put("a", new byte[]{1});
+            records.put("b", new byte[]{2, 3});
+            store.write(records);
+            store.flush();
+
+            try(OutputStream out = file.write(true)){
+                out.write(tail);
+            }
+
+            PlayerStore reloaded = new PlayerStore(file);
+            ObjectMap<String, byte[]> read = reloaded.load();
+            assertEquals(2, read.size);
+            assertArrayEquals(new byte[]{2, 3}, read.get("b"));
+
+            //records appended after the torn one must still be readable
+            ObjectMap<String, byte[]> appended = new ObjectMap<>();
+            appended.put("c", new byte[]{4});
+            reloaded.write(appended);
+            reloaded.flush();
+
+            read = new PlayerStore(file).load();
+            assertEquals(3, read.size);
+            assertArrayEquals(new byte[]{1}, read.get("a"));
+            assertArrayEquals(new byte[]{4}, read.get("c"));
+        }
+
+        file.delete();
+    }
+
+    @Test
+    void banMatcherFlood() throws IOException{
+        Rand rand = new Rand(2);
+        Array<String> ips = new Array<>(), subnets = new Array<>();
+        for(int i = 0; i < 25000; i++){
+            ips.add(rand.nextInt(256) + "." + rand.nextInt(256) + "." + rand.nextInt(256) + "." + rand.nextInt(256));
+        }
+        for(int i = 0; i < 25000; i++){
+            switch(i % 3){
+                case 0: subnets.add(rand.nextInt(256) + "." + rand.nextInt(256) + "."); break;
+                case 1: subnets.add(rand.nextInt(256) + "." + rand.nextInt(256) + "." + rand.nextInt(256) + ".0/" + (16 + rand.nextInt(17))); break;
+                default: subnets.add(Integer.toHexString(0x2000 + rand.nextInt(0x100)) + ":db8::/" + (16 + rand.nextInt(49))); break;
+            }
+        }
+
+        long start = Time.nanos();
+        BanMatcher matcher = new BanMatcher();
+        matcher.rebuild(ips, subnets);
+        float buildTime = Time.timeSinceNanos(start) / 1000000f;
+
+        //connections from random addresses, with some from banned IPs and subnets
+        String[] connections = new String[100000];
+        for(int i = 0; i < connections.length; i++){
+            switch(i % 4){
+                case 0: connections[i] = ips.random(); break;
+                case 1: connections[i] = Integer.toHexString(0x2000 + rand.nextInt(0x100)) + ":db8:" + Integer.toHexString(rand.nextInt(0x10000)) + "::" + Integer.toHexString(rand.nextInt(0x10000)); break;
+                default: connections[i] = rand.nextInt(256) + "." + rand.nextInt(256) + "." + rand.nextInt(256) + "." + rand.nextInt(256); break;
+            }
+        }
+
+        boolean[] banned = new boolean[connections.length];
+        start = Time.nanos();
+        for(int i = 0; i < connections.length; i++){
+            banned[i] = matcher.isBanned(connections[i]) || matcher.isSubnetBanned(connections[i]);
+        }
+        float matchTime = Time.timeSinceNanos(start) / 1000000f;
+
+        //compare against a linear search over every ban, for a subset of connections
+        byte[][] ranges = new byte[subnets.size][];
+        int[] bits = new int[subnets.size];
+        for(int i = 0; i < subnets.size; i++){
+            String subnet = subnets.get(i);
+            int slash = subnet.indexOf('/');
+            if(slash != -1){
+                ranges[i] = InetAddress.getByName(subnet.substring(0, slash)).getAddress();
+                bits[i] = Integer.parseInt(subnet.substring(slash + 1));
+            }
+        }
+
+        start = Time.nanos();
+        int checked = 0, bannedCount = 0;
+        for(int i = 0; i < connections.length; i += 50){
+            String ip = connections[i];
+            byte[] address = InetAddress.getByName(ip).getAddress();
+            boolean expected = ips.contains(ip, false);
+
+            for(int j = 0; j < subnets.size && !expected; j++){
+                if(ranges[j] == null){
+                    expected = ip.startsWith(subnets.get(j));
+                }else{
+                    expected = ranges[j].length == address.length;
+                    for(int b = 0; b < bits[j] && expected; b++){
+                        expected = ((ranges[j][b / 8] ^ address[b / 8]) & (0x80 >> (b % 8))) == 0;
+                    }
+                }
+            }
+
+            assertEquals(expected, banned[i], "Wrong result for " + ip);
+            checked++;
+            if(expected) bannedCount++;
+        }
+        float linearTime = Time.timeSinceNanos(start) / 1000000f;
+
+        assertTrue(bannedCount > 0 && bannedCount < checked);
+        Log.info("Ban matcher with {0} bans: build {1}ms, {2} connections in {3}ms; linear search of {4} connections: {5}ms",
+            ips.size + subnets.size, buildTime, connections.length, matchTime, checked, linearTime);
+    }
+
+    @Test
+    void staggeredRetargeting(){
+        TargetScheduler scheduler = new TargetScheduler();
+        Ticket[] tickets = new Ticket[400];
+        int[] retargets = new int[tickets.length];
+        for(int i = 0; i < tickets.length; i++){
+            tickets[i] = new Ticket();
+        }
+
+        int maxPerFrame = 0;
+        boolean lostServed = false;
+        for(int frame = 0; frame < 200; frame++){
+            Time.update();
+            scheduler.update();
+
+            int granted = 0;
+            for(int i = 0; i < tickets.length; i++){
+                //the last entity loses its target on one frame, and must not wait behind the rest of the queue
+                boolean lost = frame == 100 && i == tickets.length - 1;
+                boolean retarget = scheduler.poll(tickets[i], 20f, !lost);
+                if(retarget){
+                    granted++;
+                    retargets[i]++;
+                }
+
+                if((frame == 100 || frame == 101) && i == tickets.length - 1){
+                    lostServed |= retarget;
+                }
+            }
+
+            maxPerFrame = Math.max(maxPerFrame, granted);
+        }
+
+        assertTrue(lostServed, "Entity that lost its target was not retargeted first.");
+        //entities that were all created at once must not all retarget on the same frames
+        assertTrue(maxPerFrame <= scheduler.budget, "Too many retargets in one frame: " + maxPerFrame);
+        for(int count : retargets){
+            assertTrue(count >= 5, "Entity was starved of retargets.");
+        }
+    }
+
     @Test
     void conveyorCrash(){
         world.loadMap(testMap);
@@ -267,6 +1000,850 @@ public class ApplicationTests{
         assertTrue(items[0] > 0);
     }
 
+    @Test
+    void sleepingBlocksWake(){
+        Graphics graphics = Core.graphics;
+        //power graphs only update once per frame
+        Core.graphics = new FakeGraphics();
+
+        try{
+            Tiles tiles = world.createTiles(30, 10);
+
+            world.beginMapLoad();
+            for(int x = 0; x < tiles.width; x++){
+                for(int y = 0; y < tiles.height; y++){
+                    tiles.create(x, y, Blocks.stone.id, 0, 0);
+                }
+            }
+            for(int x = 10; x < 13; x++){
+                for(int y = 1; y < 4; y++){
+                    tiles.setOverlay(tiles.index(x, y), Blocks.oreCopper);
+                }
+            }
+            world.endMapLoad();
+            state.set(State.playing);
+
+            Tile press = place(1, 1, Blocks.graphitePress);
+            Tile router = place(4, 1, Blocks.router);
+            Tile container = place(7, 1, Blocks.container);
+            Tile unloader = place(7, 3, Blocks.unloader);
+            Tile drill = place(11, 2, Blocks.laserDrill);
+            Tile generator = place(13, 2, Blocks.combustionGenerator);
+            Tile turret = place(16, 1, Blocks.duo);
+            Tile smelter = place(19, 1, Blocks.siliconSmelter);
+            place(21, 1, Blocks.solarPanel);
+
+            Array<Tile> idle = Array.with(press, router, unloader, drill, turret, smelter);
+            int sleeping = TileEntity.sleepingEntities;
+
+            updateTiles(70);
+            for(Tile tile : idle){
+                assertTrue(tile.entity.isSleeping(), tile.block() + " should sleep while idle.");
+            }
+            assertEquals(sleeping + idle.size, TileEntity.sleepingEntities);
+
+            //the estimated power of an invalid consumer changes with its delta, which must not wake it up
+            for(int i = 0; i < 10; i++){
+                smelter.entity.timeScale = i % 2 + 1f;
+                updateTiles(1);
+                assertTrue(smelter.entity.power.status > 0f);
+                assertTrue(smelter.entity.isSleeping(), "Smelter was woken up by a change in estimated power.");
+            }
+
+            press.block().handleItem(Items.coal, press, null);
+            router.block().handleItem(Items.copper, router, null);
+            container.block().handleItem(Items.copper, container, null);
+            turret.block().handleItem(Items.copper, turret, null);
+            smelter.block().handleItem(Items.coal, smelter, null);
+            drill.block().handleLiquid(drill, null, Liquids.water, 1f);
+
+            for(Tile tile : idle){
+                assertFalse(tile.entity.isSleeping(), tile.block() + " should wake up on input.");
+            }
+            assertEquals(sleeping, TileEntity.sleepingEntities);
+
+            //without power, the drill falls asleep again and waits for the generator
+            updateTiles(70);
+            assertTrue(drill.entity.isSleeping());
+            assertTrue(Mathf.zero(drill.entity.power.status));
+
+            generator.block().handleItem(Items.coal, generator, null);
+            updateTiles(2);
+            assertFalse(drill.entity.isSleeping(), "Drill should wake up when it gains power.");
+        }finally{
+            Core.graphics = graphics;
+        }
+    }
+
+    @Test
+    void sleepingEntitiesCount(){
+        createMap();
+        state.set(State.playing);
+        int sleeping = TileEntity.sleepingEntities;
+
+        Tile tile = place(1, 1, Blocks.router);
+        updateTiles(70);
+        assertTrue(tile.entity.isSleeping());
+        assertEquals(sleeping + 1, TileEntity.sleepingEntities);
+
+        //replacing a sleeping entity removes it from the count
+        TileEntity removed = tile.entity;
+        tile.setBlock(Blocks.conveyor);
+        assertEquals(sleeping, TileEntity.sleepingEntities);
+
+        //waking up a removed entity must neither count it again nor add it back
+        removed.noSleep();
+        tileGroup.updateEvents();
+        assertEquals(sleeping, TileEntity.sleepingEntities);
+        assertFalse(tileGroup.all().contains(removed, true));
+
+        //replacing an awake entity does not change the count
+        tile.setBlock(Blocks.router);
+        assertFalse(tile.entity.isSleeping());
+        tile.setBlock(Blocks.air);
+        assertEquals(sleeping, TileEntity.sleepingEntities);
+
+        tile = place(1, 1, Blocks.router);
+        updateTiles(70);
+        assertEquals(sleeping + 1, TileEntity.sleepingEntities);
+        tile.setBlock(Blocks.air);
+        assertEquals(sleeping, TileEntity.sleepingEntities);
+    }
+
+    Tile place(int x, int y, Block block){
+        Tile tile = world.tile(x, y);
+        tile.setBlock(block, Team.sharded);
+        return tile;
+    }
+
+    void updateTiles(int frames){
+        for(int i = 0; i < frames; i++){
+            Time.update();
+            tileGroup.update();
+        }
+    }
+
+    @Test
+    void conveyorLine(){
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        Array<Tile> line = conveyorLine(10);
+        Tile sink = world.tile(11, 0);
+        place(0, 0, Blocks.itemSource).configureAny(Items.copper.id);
+
+        updateTiles(600);
+        assertTrue(sink.entity.items.total() > 0, "No items reached the end of the line.");
+        //only the front of a line is updated
+        for(Tile tile : line){
+            assertEquals(tile != line.peek(), tile.entity.isSleeping());
+        }
+
+        //removing a conveyor in the middle splits the line in two
+        line.get(4).setBlock(Blocks.air);
+        updateTiles(600);
+
+        int delivered = sink.entity.items.total();
+        updateTiles(100);
+        assertEquals(delivered, sink.entity.items.total(), "Items reached the end of the line after it was split.");
+        for(int i = 0; i < 4; i++){
+            assertTrue(line.get(i).entity.items.total() > 0, "Items did not pile up in front of the gap.");
+        }
+        for(int i = 5; i < line.size; i++){
+            assertEquals(0, line.get(i).entity.items.total(), "Items were left behind the gap.");
+            assertTrue(line.get(i).entity.isSleeping());
+        }
+        assertFalse(line.get(3).entity.isSleeping(), "The new front of the line is not updated.");
+
+        //filling the gap joins the line again
+        place(5, 0, Blocks.conveyor);
+        updateTiles(600);
+        assertTrue(sink.entity.items.total() > delivered, "No items passed the filled gap.");
+    }
+
+    @Test
+    void conveyorWake(){
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        Array<Tile> line = conveyorLine(10);
+        Tile sink = world.tile(11, 0);
+
+        updateTiles(70);
+        for(Tile tile : line){
+            assertTrue(tile.entity.isSleeping());
+        }
+
+        //inserting an item from the side of a sleeping line wakes up its front
+        Tile middle = line.get(5);
+        middle.block().handleItem(Items.copper, middle, world.tile(middle.x, middle.y + 1));
+        assertFalse(line.peek().entity.isSleeping());
+
+        updateTiles(600);
+        assertEquals(1, sink.entity.items.total());
+        for(Tile tile : line){
+            assertTrue(tile.entity.isSleeping());
+        }
+    }
+
+    @Test
+    void conveyorSave(){
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        Array<Tile> line = conveyorLine(10);
+        line.first().block().handleStack(Items.copper, 3, line.first(), null);
+        updateTiles(40);
+
+        int[] items = new int[line.size];
+        for(int i = 0; i < line.size; i++){
+            items[i] = line.get(i).entity.items.total();
+        }
+
+        Fi file = saveDirectory.child("conveyors.msav");
+        SaveIO.save(file);
+        resetWorld();
+        SaveIO.load(file);
+        state.set(State.playing);
+
+        for(int i = 0; i < line.size; i++){
+            Tile tile = world.tile(line.get(i).x, line.get(i).y);
+            assertEquals(Blocks.conveyor, tile.block());
+            assertEquals(items[i], tile.entity.items.total(), "Items differ at conveyor " + i);
+        }
+
+        updateTiles(600);
+        assertEquals(3, world.tile(11, 0).entity.items.total(), "Loaded line did not deliver its items.");
+    }
+
+    /** Places a line of conveyors moving right along the bottom of the map, ending in a container. */
+    Array<Tile> conveyorLine(int length){
+        Array<Tile> line = new Array<>();
+        for(int i = 0; i < length; i++){
+            line.add(place(i + 1, 0, Blocks.conveyor));
+        }
+        place(length + 1, 0, Blocks.container);
+        return line;
+    }
+
+    @Test
+    void pathfinderRepair(){
+        world.loadMap(testMap);
+        pathfinder.stop();
+
+        Team team = state.rules.waveTeam;
+        Rand rand = new Rand(0);
+
+        for(int i = 0; i < 500; i++){
+            Tile tile = world.tile(rand.nextInt(world.width()), rand.nextInt(world.height()));
+            if(tile.block() == Blocks.air || tile.block() == Blocks.copperWall){
+                tile.setBlock(rand.nextFloat() < 0.3f ? Blocks.air : Blocks.copperWall, rand.nextBoolean() ? Team.derelict : Team.sharded);
+                pathfinder.updateTile(tile);
+            }
+
+            //let several edits queue up before repairing
+            if(rand.nextFloat() < 0.2f){
+                pathfinder.flush();
+            }
+        }
+        pathfinder.flush();
+
+        int[][] repaired = new int[world.width()][world.height()];
+        for(int x = 0; x < world.width(); x++){
+            for(int y = 0; y < world.height(); y++){
+                repaired[x][y] = pathfinder.debugValue(team, x, y);
+            }
+        }
+
+        //recalculate everything from scratch
+        Events.fire(new WorldLoadEvent());
+        pathfinder.stop();
+
+        for(int x = 0; x < world.width(); x++){
+            for(int y = 0; y < world.height(); y++){
+                assertEquals(pathfinder.debugValue(team, x, y), repaired[x][y], "Repaired weight differs at " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void pathfinderTargets(){
+        Tiles tiles = world.createTiles(50, 50);
+
+        world.beginMapLoad();
+        for(int x = 0; x < tiles.width; x++){
+            for(int y = 0; y < tiles.height; y++){
+                tiles.create(x, y, Blocks.stone.id, 0, 0);
+            }
+        }
+        tiles.getn(10, 10).setBlock(Blocks.coreShard, Team.sharded);
+        world.endMapLoad();
+        pathfinder.stop();
+
+        Team team = state.rules.waveTeam;
+        Tile core = world.tile(40, 40);
+        pathfinder.flush();
+        assertEquals(0, pathfinder.debugValue(team, 10, 10));
+        assertNotEquals(0, pathfinder.debugValue(team, 40, 40));
+
+        //walls do not change targets, but cores do when they are placed and removed
+        world.tile(30, 30).setBlock(Blocks.copperWall, Team.sharded);
+        Events.fire(new TileChangeEvent(world.tile(30, 30)));
+        core.setBlock(Blocks.coreShard, Team.sharded);
+        Events.fire(new TileChangeEvent(core));
+        pathfinder.flush();
+        assertEquals(0, pathfinder.debugValue(team, 40, 40));
+
+        core.setBlock(Blocks.air);
+        Events.fire(new TileChangeEvent(core));
+        pathfinder.flush();
+        assertNotEquals(0, pathfinder.debugValue(team, 40, 40));
+        assertEquals(0, pathfinder.debugValue(team, 10, 10));
+    }
+
+    @Test
+    void concurrentPathfinding() throws InterruptedException{
+        Team[] teams = {Team.sharded, Team.crux};
+        Rand rand = new Rand(0);
+
+        Config.pathfinderThreads.set(4);
+        try{
+            Tiles tiles = world.createTiles(150, 150);
+
+            world.beginMapLoad();
+            for(int x = 0; x < tiles.width; x++){
+                for(int y = 0; y < tiles.height; y++){
+                    tiles.create(x, y, Blocks.stone.id, 0, rand.chance(0.2) ? Blocks.rocks.id : 0);
+                }
+            }
+            tiles.getn(20, 20).setBlock(Blocks.coreShard, Team.sharded);
+            tiles.getn(30, 120).setBlock(Blocks.commandCenter, Team.sharded);
+            tiles.getn(130, 130).setBlock(Blocks.coreShard, Team.crux);
+            tiles.getn(120, 30).setBlock(Blocks.commandCenter, Team.crux);
+            world.endMapLoad();
+        }finally{
+            Config.pathfinderThreads.set(1);
+        }
+
+        //fields of different teams are updated concurrently, while tiles keep changing
+        for(Team team : teams){
+            for(PathTarget target : PathTarget.all){
+                pathfinder.getTargetTile(world.tile(0, 0), team, target);
+            }
+        }
+
+        for(int i = 0; i < 300; i++){
+            Tile tile = world.tile(rand.random(40, 110), rand.random(40, 110));
+            if(tile.block() == Blocks.air || tile.block() == Blocks.copperWall){
+                tile.setBlock(rand.chance(0.5) ? Blocks.air : Blocks.copperWall, rand.nextBoolean() ? Team.derelict : Team.sharded);
+                pathfinder.updateTile(tile);
+            }
+            if(i % 10 == 0){
+                Thread.sleep(1);
+            }
+        }
+
+        long start = Time.millis();
+        while(!pathfinder.changesApplied()){
+            assertTrue(Time.timeSinceMillis(start) < 10000, "Tile changes were not applied.");
+            Thread.sleep(5);
+        }
+        pathfinder.stop();
+        pathfinder.flush();
+
+        int[][][] concurrent = new int[teams.length * PathTarget.all.length][world.width()][world.height()];
+        for(int i = 0; i < concurrent.length; i++){
+            for(int x = 0; x < world.width(); x++){
+                for(int y = 0; y < world.height(); y++){
+                    concurrent[i][x][y] = pathfinder.debugValue(teams[i / PathTarget.all.length], PathTarget.all[i % PathTarget.all.length], x, y);
+                }
+            }
+        }
+
+        //calculate every field again from scratch, on one thread
+        Events.fire(new WorldLoadEvent());
+        pathfinder.stop();
+        for(Team team : teams){
+            for(PathTarget target : PathTarget.all){
+                pathfinder.getTargetTile(world.tile(0, 0), team, target);
+            }
+        }
+        pathfinder.flush();
+
+        for(int i = 0; i < concurrent.length; i++){
+            Team team = teams[i / PathTarget.all.length];
+            PathTarget target = PathTarget.all[i % PathTarget.all.length];
+            for(int x = 0; x < world.width(); x++){
+                for(int y = 0; y < world.height(); y++){
+                    assertEquals(pathfinder.debugValue(team, target, x, y), concurrent[i][x][y], "Weight of " + team + " " + target + " differs at " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void pathfinderBench(){
+        for(int size : new int[]{250, 1000}){
+            Tiles tiles = world.createTiles(size, size);
+
+            world.beginMapLoad();
+            for(int x = 0; x < tiles.width; x++){
+                for(int y = 0; y < tiles.height; y++){
+                    tiles.create(x, y, Blocks.stone.id, 0, 0);
+                }
+            }
+            tiles.getn(size / 2, size / 2).setBlock(Blocks.commandCenter, Team.sharded);
+            world.endMapLoad();
+            pathfinder.stop();
+
+            //request a new field and flood the whole map
+            pathfinder.getTargetTile(world.tile(0, 0), Team.sharded, PathTarget.rallyPoints);
+
+            Time.mark();
+            pathfinder.flush();
+            float elapsed = Time.elapsed();
+
+            Log.info("{0}x{0}: {1}ms to flood, {2} nodes/s", size, elapsed, (int)(size * size / (elapsed / 1000f)));
+            assertNotEquals(world.tile(0, 0), pathfinder.getTargetTile(world.tile(0, 0), Team.sharded, PathTarget.rallyPoints));
+        }
+    }
+
+    @Test
+    void hierarchicalFirstQuery(){
+        Config.clusteredPathfindingArea.set(1);
+        try{
+            Tiles tiles = world.createTiles(200, 200);
+
+            world.beginMapLoad();
+            for(int x = 0; x < tiles.width; x++){
+                for(int y = 0; y < tiles.height; y++){
+                    tiles.create(x, y, Blocks.stone.id, 0, 0);
+                }
+            }
+            tiles.getn(20, 20).setBlock(Blocks.commandCenter, Team.sharded);
+            world.endMapLoad();
+        }finally{
+            Config.clusteredPathfindingArea.set(0);
+        }
+        pathfinder.stop();
+
+        Tile start = world.tile(180, 170), target = world.tile(20, 20);
+
+        //create the field; no cluster has been requested by a unit yet, so none of them are refined
+        pathfinder.getTargetTile(start, Team.sharded, PathTarget.rallyPoints);
+        pathfinder.flush();
+
+        Tile next = pathfinder.getTargetTile(start, Team.sharded, PathTarget.rallyPoints);
+        assertNotEquals(start, next, "Unit did not move on the first query of an unrefined cluster.");
+        assertTrue(next.dst(target) < start.dst(target), "Unit moved away from the target.");
+
+        //the refined cluster leads the same way
+        pathfinder.flush();
+        next = pathfinder.getTargetTile(start, Team.sharded, PathTarget.rallyPoints);
+        assertNotEquals(start, next);
+        assertTrue(next.dst(target) < start.dst(target));
+    }
+
+    @Test
+    void spatialGrid(){
+        class Box implements QuadTreeObject{
+            float x, y, size;
+
+            @Override
+            public void hitbox(Rect out){
+                out.setSize(size).setCenter(x, y);
+            }
+        }
+
+        float bounds = 2000f;
+        Rand rand = new Rand(0);
+        Array<Box> boxes = new Array<>();
+        for(int i = 0; i < 3000; i++){
+            Box box = new Box();
+            box.size = rand.nextFloat() * 20f + 2f;
+            boxes.add(box);
+        }
+
+        SpatialGrid<Box> grid = new SpatialGrid<>(32f);
+        grid.resize(0, 0, bounds, bounds);
+        QuadTree<Box> tree = new QuadTree<>(new Rect(0, 0, bounds, bounds));
+        Array<Box> gridOut = new Array<>(), treeOut = new Array<>();
+        Rect rect = new Rect();
+        long gridTime = 0, treeTime = 0;
+
+        for(int frame = 0; frame < 100; frame++){
+            for(Box box : boxes){
+                box.x = Mathf.clamp(box.x + rand.nextFloat() * 40f - 20f + (frame == 0 ? rand.nextFloat() * bounds : 0f), 0, bounds);
+                box.y = Mathf.clamp(box.y + rand.nextFloat() * 40f - 20f + (frame == 0 ? rand.nextFloat() * bounds : 0f), 0, bounds);
+            }
+
+            //remove some boxes every frame
+            int present = boxes.size - rand.nextInt(100);
+
+            long start = Time.nanos();
+            grid.begin();
+            for(int i = 0; i < present; i++){
+                grid.insert(boxes.get(i));
+            }
+            grid.end();
+            gridTime += Time.timeSinceNanos(start);
+
+            start = Time.nanos();
+            tree.clear();
+            for(int i = 0; i < present; i++){
+                tree.insert(boxes.get(i));
+            }
+            treeTime += Time.timeSinceNanos(start);
+
+            for(int i = 0; i < 200; i++){
+                rect.setSize(rand.nextFloat() * 300f).setCenter(rand.nextFloat() * bounds, rand.nextFloat() * bounds);
+
+                gridOut.clear();
+                treeOut.clear();
+
+                start = Time.nanos();
+                grid.intersect(rect, gridOut);
+                gridTime += Time.timeSinceNanos(start);
+
+                start = Time.nanos();
+                tree.getIntersect(treeOut, rect);
+                treeTime += Time.timeSinceNanos(start);
+
+                assertEquals(treeOut.size, gridOut.size);
+                for(Box box : treeOut){
+                    assertTrue(gridOut.contains(box, true));
+                }
+            }
+        }
+
+        Log.info("Grid: {0}ms, QuadTree: {1}ms", gridTime / 1000000f, treeTime / 1000000f);
+    }
+
+    @Test
+    void entityDeltas() throws IOException{
+        Rand rand = new Rand(0);
+        Encoder encoder = new Encoder();
+        Decoder decoder = new Decoder();
+        int entityCount = 50, stateSize = 16;
+        byte[][] states = new byte[entityCount][stateSize];
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        long fullSize = 0, deltaSize = 0;
+
+        for(int frame = 0; frame < 500; frame++){
+            //change a few bytes of some entities
+            for(byte[] state : states){
+                if(rand.nextFloat() < 0.5f){
+                    state[rand.nextInt(stateSize)] = (byte)rand.nextInt(256);
+                }
+            }
+
+            packet.reset();
+            DataOutputStream out = new DataOutputStream(packet);
+            int seq = encoder.begin(), sent = 0;
+            for(int i = 0; i < entityCount; i++){
+                if(encoder.write(out, seq, i, (byte)0, states[i], stateSize, true)){
+                    sent++;
+                }
+            }
+            fullSize += entityCount * (stateSize + 5);
+            deltaSize += packet.size();
+
+            //drop some packets and acks
+            if(rand.nextFloat() < 0.2f) continue;
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.toByteArray()));
+            boolean complete = true;
+            for(int i = 0; i < sent; i++){
+                int id = in.readInt();
+                in.readByte();
+                DataInput state = decoder.read(in, seq, id);
+                if(state == null){
+                    complete = false;
+                    continue;
+                }
+
+                byte[] read = new byte[stateSize];
+                state.readFully(read);
+                assertArrayEquals(states[id], read);
+            }
+            assertEquals(0, in.available());
+
+            if(complete) decoder.received(seq);
+            if(decoder.hasAcks() && rand.nextFloat() >= 0.2f){
+                encoder.ack(decoder.latest(), decoder.pollAcks());
+            }
+            if(decoder.hasMissing()){
+                encoder.missing(decoder.pollMissing());
+            }
+        }
+
+        Log.info("Full: {0} bytes, delta: {1} bytes", fullSize, deltaSize);
+        assertTrue(deltaSize < fullSize);
+    }
+
+    @Test
+    void entityDeltasLossyAcks() throws IOException{
+        Rand rand = new Rand(1);
+        Encoder encoder = new Encoder();
+        Decoder decoder = new Decoder();
+        int entityCount = 10, stateSize = 8;
+        byte[][] states = new byte[entityCount][stateSize];
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        int failures = 0, lastFailure = -1;
+
+        for(int frame = 0; frame < 400; frame++){
+            //every entity changes in every packet, so the client history fills up quickly
+            for(byte[] state : states){
+                state[rand.nextInt(stateSize)] = (byte)rand.nextInt(256);
+            }
+
+            //the client forgets an entity, e.g. after a desync; it must be recovered through a missing baseline report
+            if(frame == 300){
+                decoder.remove(0);
+            }
+
+            packet.reset();
+            DataOutputStream out = new DataOutputStream(packet);
+            int seq = encoder.begin(), sent = 0;
+            for(int i = 0; i < entityCount; i++){
+                if(encoder.write(out, seq, i, (byte)0, states[i], stateSize, true)){
+                    sent++;
+                }
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.toByteArray()));
+            boolean complete = true;
+            for(int i = 0; i < sent; i++){
+                int id = in.readInt();
+                in.readByte();
+                DataInput state = decoder.read(in, seq, id);
+                if(state == null){
+                    complete = false;
+                    failures++;
+                    lastFailure = frame;
+                    continue;
+                }
+
+                byte[] read = new byte[stateSize];
+                state.readFully(read);
+                assertArrayEquals(states[id], read);
+            }
+
+            if(complete) decoder.received(seq);
+            //acks are lost for a long stretch, then most of them are lost
+            boolean acked = frame < 5 || (frame > 100 && frame % 10 == 0);
+            if(decoder.hasAcks()){
+                byte[] acks = decoder.pollAcks();
+                if(acked) encoder.ack(decoder.latest(), acks);
+            }
+            if(decoder.hasMissing()){
+                encoder.missing(decoder.pollMissing());
+            }
+        }
+
+        //only the forgotten entity fails, and only until the report reaches the server
+        assertEquals(300, lastFailure);
+        assertEquals(1, failures);
+    }
+
+    @Test
+    void entityDeltasRevert() throws IOException{
+        Encoder encoder = new Encoder();
+        Decoder decoder = new Decoder();
+        byte[] a = {1, 2, 3, 4}, b = {1, 2, 5, 4};
+        //the entity changes, then goes back to the acknowledged state while the ack of the change is lost
+        byte[][] states = {a, b, a, a};
+        byte[] client = null;
+
+        for(int frame = 0; frame < states.length; frame++){
+            ByteArrayOutputStream packet = new ByteArrayOutputStream();
+            int seq = encoder.begin();
+            boolean written = encoder.write(new DataOutputStream(packet), seq, 0, (byte)0, states[frame], a.length, true);
+
+            //the client has the newer state, so going back to the baseline must be sent once
+            assertEquals(frame != 3, written);
+
+            if(written){
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.toByteArray()));
+                in.readInt();
+                in.readByte();
+                client = new byte[a.length];
+                decoder.read(in, seq, 0).readFully(client);
+                decoder.received(seq);
+            }
+
+            //only the first ack arrives
+            byte[] acks = decoder.pollAcks();
+            if(frame == 0) encoder.ack(decoder.latest(), acks);
+
+            assertArrayEquals(states[frame], client);
+        }
+    }
+
+    @Test
+    void entitySnapshotsWithoutDeltas() throws IOException{
+        Encoder encoder = new Encoder();
+        Decoder decoder = new Decoder();
+        byte[] state = {1, 2, 3, 4};
+
+        for(int frame = 0; frame < 3; frame++){
+            ByteArrayOutputStream packet = new ByteArrayOutputStream();
+            //unchanged states are still sent in full
+            assertTrue(encoder.write(new DataOutputStream(packet), EntityDeltas.unsequenced, 0, (byte)0, state, state.length, false));
+            assertEquals(state.length + 8, packet.size());
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.toByteArray()));
+            in.readInt();
+            in.readByte();
+            byte[] read = new byte[state.length];
+            decoder.read(in, EntityDeltas.unsequenced, 0).readFully(read);
+            assertArrayEquals(state, read);
+
+            //nothing is kept or acknowledged
+            decoder.received(EntityDeltas.unsequenced);
+            assertFalse(decoder.hasAcks());
+        }
+    }
+
+    @Test
+    void entityInterest() throws IOException{
+        world.loadMap(testMap);
+        state.set(State.playing);
+
+        Net last = net;
+        int[] removals = {0};
+        net = new Net(new Net.NetProvider(){
+            @Override
+            public void connectClient(String ip, int port, Runnable success){}
+
+            @Override
+            public void sendClient(Object object, Net.SendMode mode){}
+
+            @Override
+            public void disconnectClient(){}
+
+            @Override
+            public void discoverServers(Cons<Host> callback, Runnable done){}
+
+            @Override
+            public void pingHost(String address, int port, Cons<Host> valid, Cons<Exception> failed){}
+
+            @Override
+            public void hostServer(int port){}
+
+            @Override
+            public Iterable<? extends NetConnection> getConnections(){
+                return new Array<>();
+            }
+
+            @Override
+            public void closeServer(){}
+        });
+
+        try{
+            net.host(0);
+
+            NetConnection con = new NetConnection("test"){
+                @Override
+                public void send(Object object, Net.SendMode mode){
+                    //snapshots are unreliable, so only removals are sent over TCP
+                    if(mode == Net.SendMode.tcp){
+                        removals[0]++;
+                    }
+                }
+
+                @Override
+                public void close(){}
+            };
+
+            Player player = new Player();
+            player.con = con;
+            con.viewX = con.viewY = 100f;
+            con.viewWidth = con.viewHeight = 200f;
+
+            BaseUnit unit = UnitTypes.dagger.create(Team.crux);
+            unit.set(100f, 100f);
+            unit.add();
+            unitGroup.updateEvents();
+
+            netServer.writeEntitySnapshot(player);
+            assertTrue(con.syncedEntities.containsKey(unit.getID()));
+            assertEquals(0, removals[0]);
+
+            //moving far out of view removes the unit from the client
+            unit.set(100f + tilesize * 200f, 100f);
+            netServer.writeEntitySnapshot(player);
+            assertFalse(con.syncedEntities.containsKey(unit.getID()));
+            assertEquals(1, removals[0]);
+
+            //it is not sent while it stays away, not even with the periodic syncs of entities outside the view
+            for(int i = 0; i < 10; i++){
+                netServer.writeEntitySnapshot(player);
+            }
+            assertFalse(con.syncedEntities.containsKey(unit.getID()));
+            assertEquals(1, removals[0]);
+
+            //coming back into view sends it again
+            unit.set(100f, 100f);
+            netServer.writeEntitySnapshot(player);
+            assertTrue(con.syncedEntities.containsKey(unit.getID()));
+            assertEquals(1, removals[0]);
+        }finally{
+            net.closeServer();
+            net = last;
+        }
+    }
+
+    @Test
+    void broadcastBench(){
+        PacketSerializer serializer = new PacketSerializer();
+        ByteBuffer data = ByteBuffer.allocate(128);
+        for(int i = 0; i < 100; i++){
+            data.put((byte)i);
+        }
+
+        for(int count : new int[]{10, 50, 100}){
+            //each buffer stands in for the write buffer of a connection
+            Array<ByteBuffer> outputs = new Array<>();
+            for(int i = 0; i < count; i++){
+                outputs.add(ByteBuffer.allocateDirect(4096));
+            }
+
+            long separate = 0, once = 0;
+            for(int iteration = 0; iteration < 2000; iteration++){
+                InvokePacket packet = new InvokePacket();
+                packet.type = 1;
+                packet.writeBuffer = data;
+                packet.writeLength = 100;
+
+                long start = Time.nanos();
+                for(ByteBuffer out : outputs){
+                    out.clear();
+                    serializer.write(out, packet);
+                }
+                separate += Time.timeSinceNanos(start);
+
+                ByteBuffer expected = ByteBuffer.allocate(4096);
+                serializer.write(expected, packet);
+                expected.flip();
+
+                start = Time.nanos();
+                Object encoded = net.encode(packet);
+                for(ByteBuffer out : outputs){
+                    out.clear();
+                    serializer.write(out, encoded);
+                }
+                once += Time.timeSinceNanos(start);
+
+                ByteBuffer result = outputs.first();
+                result.flip();
+                assertEquals(expected, result);
+            }
+
+            Log.info("{0} connections: serialized per connection: {1}ms, serialized once: {2}ms", count, separate / 1000000f, once / 1000000f);
+        }
+    }
+
     @Test
     void load77Save(){
         resetWorld();
@@ -390,28 +1967,28 @@ public class ApplicationTests{
 
     @Test
     void allBlockTest(){
-        Tile[][] tiles = world.createTiles(256*2 + 20, 10);
+        Tiles tiles = world.createTiles(256*2 + 20, 10);
 
         world.beginMapLoad();
-        for(int x = 0; x < tiles.length; x++){
-            for(int y = 0; y < tiles[0].length; y++){
-                tiles[x][y] = new Tile(x, y, Blocks.stone.id, (byte)0, (byte)0);
+        for(int x = 0; x < tiles.width; x++){
+            for(int y = 0; y < tiles.height; y++){
+                tiles.create(x, y, Blocks.stone.id, 0, 0);
             }
         }
         int i = 0;
 
-        for(int x = 5; x < tiles.length && i < content.blocks().size; ){
+        for(int x = 5; x < tiles.width && i < content.blocks().size; ){
             Block block = content.block(i++);
             if(block.isBuildable()){
                 x += block.size;
-                tiles[x][5].setBlock(block);
+                tiles.getn(x, 5).setBlock(block);
                 x += block.size;
             }
         }
         world.endMapLoad();
 
-        for(int x = 0; x < tiles.length; x++){
-            for(int y = 0; y < tiles[0].length; y++){
+        for(int x = 0; x < tiles.width; x++){
+            for(int y = 0; y < tiles.height; y++){
                 Tile tile = world.tile(x, y);
                 if(tile.entity != null){
                     try{
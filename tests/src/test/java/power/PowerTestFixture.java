@@ -77,13 +77,15 @@ public class PowerTestFixture{
             // Since this part shall not be part of the test and would require more work anyway, we manually set the block and floor
             // through reflections and then simulate part of what the changed() method does.
 
-            Field field = Tile.class.getDeclaredField("block");
+            // A tile created on its own is the only tile of its own tile array.
+            Field field = Tile.class.getDeclaredField("tiles");
             field.setAccessible(true);
-            field.set(tile, block);
+            Tiles tiles = (Tiles)field.get(tile);
+            tiles.setFloor(0, (Floor)Blocks.sand);
 
-            field = Tile.class.getDeclaredField("floor");
+            field = Tiles.class.getDeclaredField("blocks");
             field.setAccessible(true);
-            field.set(tile, Blocks.sand);
+            ((short[])field.get(tiles))[0] = block.id;
 
             // Simulate the "changed" method. Calling it through reflections would require half the game to be initialized.
             tile.entity = block.newEntity().init(tile, false);
@@ -2,6 +2,7 @@ package power;
 
 import arc.*;
 import arc.math.*;
+import arc.struct.*;
 import arc.util.*;
 import mindustry.*;
 import mindustry.core.*;
@@ -115,6 +116,146 @@ public class PowerTests extends PowerTestFixture{
             }
         }
 
+        /** Updates a graph with 5000 nodes, checking the results and logging how long updating takes. */
+        @Test
+        void largeGraphUpdate(){
+            PowerGenerator producer = createFakeProducerBlock(1f);
+            Block consumer = createFakeDirectConsumer(1f);
+            Battery battery = createFakeBattery(100f);
+            PowerGraph powerGraph = new PowerGraph();
+            Array<Tile> consumers = new Array<>();
+
+            for(int i = 0; i < 5000; i++){
+                Tile tile = createFakeTile(i % 100, i / 100, i % 3 == 0 ? producer : i % 3 == 1 ? consumer : battery);
+                if(i % 3 == 0) tile.<PowerGenerator.GeneratorEntity>ent().productionEfficiency = 1f;
+                if(i % 3 == 1) consumers.add(tile);
+                powerGraph.add(tile);
+            }
+
+            assertEquals(consumers.size * Time.delta(), powerGraph.getPowerNeeded(), 0.01f);
+
+            int updates = 1000;
+            long start = Time.nanos();
+            for(int i = 0; i < updates; i++){
+                powerGraph.update();
+            }
+            Log.info("Updated a graph with 5000 nodes in {0}ms on average.", Strings.fixed(Time.timeSinceNanos(start) / 1000000f / updates, 3));
+
+            for(Tile tile : consumers){
+                assertEquals(1f, tile.entity.power.status, Mathf.FLOAT_ROUNDING_ERROR);
+            }
+        }
+
+        /** Unlinking the only connection between two parts of a graph leaves one graph for each part, with the right members. */
+        @Test
+        void unlinkingBridgeSplitsGraph(){
+            Battery battery = createFakeBattery(100f);
+            Tile producer = createFakeTile(0, 0, createFakeProducerBlock(1f));
+            producer.<PowerGenerator.GeneratorEntity>ent().productionEfficiency = 1f;
+
+            Array<Tile> left = Array.with(producer), right = new Array<>();
+            for(int i = 1; i < 3; i++){
+                left.add(createFakeTile(i, 0, battery));
+            }
+            for(int i = 3; i < 8; i++){
+                right.add(createFakeTile(i, 0, battery));
+            }
+            right.add(createFakeTile(8, 0, createFakeDirectConsumer(1f)));
+
+            Array<Tile> line = new Array<>();
+            line.addAll(left);
+            line.addAll(right);
+            PowerGraph graph = connectLine(line);
+
+            //the last tile on the left and the first tile on the right form the bridge
+            disconnect(left.peek(), right.first());
+            graph.unlinked(left.peek(), right.first());
+
+            PowerGraph leftGraph = left.first().entity.power.graph, rightGraph = right.first().entity.power.graph;
+            assertNotSame(leftGraph, rightGraph);
+            for(Tile tile : left){
+                assertSame(leftGraph, tile.entity.power.graph);
+            }
+            for(Tile tile : right){
+                assertSame(rightGraph, tile.entity.power.graph);
+            }
+
+            assertEquals(200f, leftGraph.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(500f, rightGraph.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(Time.delta(), leftGraph.getPowerProduced(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(0f, rightGraph.getPowerProduced(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(0f, leftGraph.getPowerNeeded(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(Time.delta(), rightGraph.getPowerNeeded(), Mathf.FLOAT_ROUNDING_ERROR);
+        }
+
+        /** Unlinking a connection that is part of a loop must not split the graph. */
+        @Test
+        void unlinkingRedundantLinkKeepsGraph(){
+            Battery battery = createFakeBattery(100f);
+            Tile producer = createFakeTile(0, 0, createFakeProducerBlock(1f));
+            producer.<PowerGenerator.GeneratorEntity>ent().productionEfficiency = 1f;
+
+            Array<Tile> loop = Array.with(producer);
+            for(int i = 1; i < 6; i++){
+                loop.add(createFakeTile(i, 0, battery));
+            }
+            PowerGraph graph = connectLine(loop);
+            connect(loop.peek(), loop.first());
+
+            disconnect(loop.get(2), loop.get(3));
+            graph.unlinked(loop.get(2), loop.get(3));
+
+            for(Tile tile : loop){
+                assertSame(graph, tile.entity.power.graph);
+            }
+            assertEquals(500f, graph.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(Time.delta(), graph.getPowerProduced(), Mathf.FLOAT_ROUNDING_ERROR);
+        }
+
+        /** Merging two graphs moves every tile to the same graph and keeps the power stored in their batteries. */
+        @Test
+        void mergeKeepsGraphsConsistent(){
+            Battery small = createFakeBattery(100f), large = createFakeBattery(50f);
+            PowerGraph first = new PowerGraph(), second = new PowerGraph();
+            Array<Tile> tiles = new Array<>();
+
+            for(int i = 0; i < 3; i++){
+                Tile tile = createFakeTile(i, 0, small);
+                tile.entity.power.status = 0.5f;
+                first.add(tile);
+                tiles.add(tile);
+            }
+            for(int i = 0; i < 5; i++){
+                Tile tile = createFakeTile(i, 1, large);
+                tile.entity.power.status = 1f;
+                second.add(tile);
+                tiles.add(tile);
+            }
+
+            assertEquals(150f, first.getBatteryStored(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(250f, second.getBatteryStored(), Mathf.FLOAT_ROUNDING_ERROR);
+
+            //merging a graph with itself does nothing
+            first.add(first);
+            assertEquals(150f, first.getBatteryStored(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(300f, first.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+
+            //the tiles of the smaller graph are moved into the larger one
+            first.add(second);
+            for(Tile tile : tiles){
+                assertSame(second, tile.entity.power.graph);
+            }
+            assertEquals(400f, second.getBatteryStored(), Mathf.FLOAT_ROUNDING_ERROR);
+            assertEquals(550f, second.getTotalBatteryCapacity(), Mathf.FLOAT_ROUNDING_ERROR);
+
+            //with nothing producing or consuming, updating does not change the stored power
+            second.update();
+            assertEquals(400f, second.getBatteryStored(), Mathf.FLOAT_ROUNDING_ERROR);
+            for(Tile tile : tiles){
+                assertEquals(tile.block() == small ? 0.5f : 1f, tile.entity.power.status, Mathf.FLOAT_ROUNDING_ERROR);
+            }
+        }
+
         /** Makes sure a direct consumer stops working after power production is set to zero. */
         @Test
         void directConsumptionStopsWithNoPower(){
@@ -139,5 +280,26 @@ public class PowerTests extends PowerTestFixture{
                 assertFalse(consumePower.valid(consumerTile.ent()));
             }
         }
+
+        /** Connects each tile to the next one, and puts all of them in one graph. */
+        PowerGraph connectLine(Array<Tile> tiles){
+            PowerGraph graph = new PowerGraph();
+            for(int i = 0; i < tiles.size; i++){
+                if(i > 0) connect(tiles.get(i - 1), tiles.get(i));
+                graph.add(tiles.get(i));
+            }
+            return graph;
+        }
+
+        /** Connects two tiles as if they were placed next to each other. */
+        void connect(Tile a, Tile b){
+            a.entity.proximity().add(b);
+            b.entity.proximity().add(a);
+        }
+
+        void disconnect(Tile a, Tile b){
+            a.entity.proximity().remove(b, true);
+            b.entity.proximity().remove(a, true);
+        }
     }
 }